@@ -0,0 +1,215 @@
+package com.github.protobufx.spring.gateway.grpc.filter;
+
+import com.google.api.AnnotationsProto;
+import com.google.api.HttpRule;
+import com.google.common.io.ByteStreams;
+import com.google.protobuf.DescriptorProtos;
+import com.google.protobuf.DescriptorProtos.DescriptorProto;
+import com.google.protobuf.DescriptorProtos.FieldDescriptorProto;
+import com.google.protobuf.DynamicMessage;
+import com.google.protobuf.ExtensionRegistry;
+import com.google.protobuf.util.JsonFormat;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+
+/**
+ * The schemas and payloads shared by the benchmarks:
+ * - the example echo.proto, from the descriptor set of the gateway tests
+ * - a synthetic schema with many HTTP-annotated methods, deeply nested messages and repeated fields
+ */
+final class BenchmarkSchemas {
+    static final String SYNTHETIC_PACKAGE = "bench.v1";
+    static final String SYNTHETIC_SERVICE = SYNTHETIC_PACKAGE + ".SyntheticService";
+
+    private BenchmarkSchemas() {
+    }
+
+    static FileDescriptorIndex echoIndex() {
+        try (InputStream inputStream = BenchmarkSchemas.class.getResourceAsStream("/descriptors.pb")) {
+            ExtensionRegistry extensionRegistry = ExtensionRegistry.newInstance();
+            extensionRegistry.add(AnnotationsProto.http);
+            return new FileDescriptorIndex(DescriptorProtos.FileDescriptorSet.parseFrom(ByteStreams.toByteArray(inputStream), extensionRegistry));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static FileDescriptorIndex syntheticIndex(int methods, int depth) {
+        return new FileDescriptorIndex(DescriptorProtos.FileDescriptorSet.newBuilder()
+                .addFile(syntheticFile(methods, depth))
+                .build());
+    }
+
+    /**
+     * A file with {@code methods} methods, each bound to {@code POST /bench.v1.SyntheticService/Method<i>},
+     * {@code GET /v1/parents/{parent}/resources<i>/{id}} and {@code POST /v1/parents/{parent}/resources<i>},
+     * whose request and response hold repeated items and a chain of {@code depth} nested messages.
+     */
+    static DescriptorProtos.FileDescriptorProto syntheticFile(int methods, int depth) {
+        DescriptorProtos.FileDescriptorProto.Builder file = DescriptorProtos.FileDescriptorProto.newBuilder()
+                .setName("bench/v1/synthetic.proto")
+                .setPackage(SYNTHETIC_PACKAGE)
+                .setSyntax("proto3");
+
+        file.addEnumType(DescriptorProtos.EnumDescriptorProto.newBuilder()
+                .setName("Status")
+                .addValue(DescriptorProtos.EnumValueDescriptorProto.newBuilder().setName("STATUS_UNSPECIFIED").setNumber(0))
+                .addValue(DescriptorProtos.EnumValueDescriptorProto.newBuilder().setName("ACTIVE").setNumber(1))
+                .addValue(DescriptorProtos.EnumValueDescriptorProto.newBuilder().setName("ARCHIVED").setNumber(2)));
+
+        file.addMessageType(DescriptorProto.newBuilder()
+                .setName("Item")
+                .addField(field("id", 1, FieldDescriptorProto.Type.TYPE_STRING))
+                .addField(field("count", 2, FieldDescriptorProto.Type.TYPE_INT64))
+                .addField(field("score", 3, FieldDescriptorProto.Type.TYPE_DOUBLE))
+                .addField(field("active", 4, FieldDescriptorProto.Type.TYPE_BOOL))
+                .addField(field("tags", 5, FieldDescriptorProto.Type.TYPE_STRING).setLabel(FieldDescriptorProto.Label.LABEL_REPEATED))
+                .addField(field("status", 6, FieldDescriptorProto.Type.TYPE_ENUM).setTypeName(".bench.v1.Status"))
+                .addField(field("display_name", 7, FieldDescriptorProto.Type.TYPE_STRING)));
+
+        for (int level = 0; level < depth; level++) {
+            DescriptorProto.Builder node = DescriptorProto.newBuilder()
+                    .setName("Node" + level)
+                    .addField(field("name", 1, FieldDescriptorProto.Type.TYPE_STRING))
+                    .addField(field("level", 2, FieldDescriptorProto.Type.TYPE_INT32));
+            if (level + 1 < depth) {
+                node.addField(field("child", 3, FieldDescriptorProto.Type.TYPE_MESSAGE).setTypeName(".bench.v1.Node" + (level + 1)));
+            }
+            file.addMessageType(node);
+        }
+
+        DescriptorProto.Builder request = DescriptorProto.newBuilder()
+                .setName("SyntheticRequest")
+                .addField(field("parent", 1, FieldDescriptorProto.Type.TYPE_STRING))
+                .addField(field("id", 2, FieldDescriptorProto.Type.TYPE_STRING))
+                .addField(field("page_size", 3, FieldDescriptorProto.Type.TYPE_INT32))
+                .addField(field("filter", 4, FieldDescriptorProto.Type.TYPE_STRING))
+                .addField(field("status", 5, FieldDescriptorProto.Type.TYPE_ENUM).setTypeName(".bench.v1.Status"))
+                .addField(field("items", 6, FieldDescriptorProto.Type.TYPE_MESSAGE)
+                        .setTypeName(".bench.v1.Item").setLabel(FieldDescriptorProto.Label.LABEL_REPEATED));
+        DescriptorProto.Builder response = DescriptorProto.newBuilder()
+                .setName("SyntheticResponse")
+                .addField(field("items", 1, FieldDescriptorProto.Type.TYPE_MESSAGE)
+                        .setTypeName(".bench.v1.Item").setLabel(FieldDescriptorProto.Label.LABEL_REPEATED))
+                .addField(field("next_page_token", 2, FieldDescriptorProto.Type.TYPE_STRING));
+        if (depth > 0) {
+            request.addField(field("root", 7, FieldDescriptorProto.Type.TYPE_MESSAGE).setTypeName(".bench.v1.Node0"));
+            response.addField(field("root", 3, FieldDescriptorProto.Type.TYPE_MESSAGE).setTypeName(".bench.v1.Node0"));
+        }
+        file.addMessageType(request).addMessageType(response);
+
+        DescriptorProtos.ServiceDescriptorProto.Builder service = DescriptorProtos.ServiceDescriptorProto.newBuilder()
+                .setName("SyntheticService");
+        for (int i = 0; i < methods; i++) {
+            HttpRule httpRule = HttpRule.newBuilder()
+                    .setPost("/" + SYNTHETIC_SERVICE + "/Method" + i)
+                    .setBody("*")
+                    .addAdditionalBindings(HttpRule.newBuilder()
+                            .setGet("/v1/parents/{parent}/resources" + i + "/{id}"))
+                    .addAdditionalBindings(HttpRule.newBuilder()
+                            .setPost("/v1/parents/{parent}/resources" + i)
+                            .setBody("*"))
+                    .build();
+            service.addMethod(DescriptorProtos.MethodDescriptorProto.newBuilder()
+                    .setName("Method" + i)
+                    .setInputType(".bench.v1.SyntheticRequest")
+                    .setOutputType(".bench.v1.SyntheticResponse")
+                    .setOptions(DescriptorProtos.MethodOptions.newBuilder().setExtension(AnnotationsProto.http, httpRule)));
+        }
+        return file.addService(service).build();
+    }
+
+    /**
+     * A set of {@code files} files, where file {@code i} depends on the files {@code i - 1}, {@code i / 2} and
+     * {@code i / 3}, so that most files are shared by many paths of the dependency graph.
+     * Every tenth file also has an HTTP-annotated service.
+     */
+    static DescriptorProtos.FileDescriptorSet dependencyGraphFileSet(int files) {
+        DescriptorProtos.FileDescriptorSet.Builder fileSet = DescriptorProtos.FileDescriptorSet.newBuilder();
+        for (int i = 0; i < files; i++) {
+            DescriptorProtos.FileDescriptorProto.Builder file = DescriptorProtos.FileDescriptorProto.newBuilder()
+                    .setName("bench/graph/file" + i + ".proto")
+                    .setPackage("bench.graph")
+                    .setSyntax("proto3");
+            DescriptorProto.Builder message = DescriptorProto.newBuilder()
+                    .setName("Message" + i)
+                    .addField(field("id", 1, FieldDescriptorProto.Type.TYPE_STRING))
+                    .addField(field("count", 2, FieldDescriptorProto.Type.TYPE_INT64));
+            int number = 3;
+            for (int dependency : new int[]{i - 1, i / 2, i / 3}) {
+                String dependencyName = "bench/graph/file" + dependency + ".proto";
+                if (dependency < 0 || dependency == i || file.getDependencyList().contains(dependencyName)) {
+                    continue;
+                }
+                file.addDependency(dependencyName);
+                message.addField(field("message" + dependency, number++, FieldDescriptorProto.Type.TYPE_MESSAGE)
+                        .setTypeName(".bench.graph.Message" + dependency));
+            }
+            file.addMessageType(message);
+            if (i % 10 == 0) {
+                file.addService(DescriptorProtos.ServiceDescriptorProto.newBuilder()
+                        .setName("Service" + i)
+                        .addMethod(DescriptorProtos.MethodDescriptorProto.newBuilder()
+                                .setName("Get")
+                                .setInputType(".bench.graph.Message" + i)
+                                .setOutputType(".bench.graph.Message" + i)
+                                .setOptions(DescriptorProtos.MethodOptions.newBuilder().setExtension(AnnotationsProto.http,
+                                        HttpRule.newBuilder().setGet("/v1/messages" + i + "/{id}").build()))));
+            }
+            fileSet.addFile(file);
+        }
+        return fileSet.build();
+    }
+
+    /**
+     * A JSON message of the synthetic schema with {@code items} items and a {@code depth} levels deep tree.
+     */
+    static String syntheticJson(int items, int depth) {
+        StringBuilder json = new StringBuilder("{\"parent\": \"p1\", \"pageSize\": 50, \"filter\": \"status = ACTIVE\", \"items\": [");
+        for (int i = 0; i < items; i++) {
+            json.append(i == 0 ? "" : ", ")
+                    .append("{\"id\": \"item-").append(i)
+                    .append("\", \"count\": \"").append(i * 1000L)
+                    .append("\", \"score\": ").append(i / 7.0)
+                    .append(", \"active\": ").append(i % 2 == 0)
+                    .append(", \"tags\": [\"a\", \"b\", \"c\"], \"status\": \"ACTIVE\", \"displayName\": \"Item number ").append(i)
+                    .append("\"}");
+        }
+        json.append("]");
+        if (depth > 0) {
+            json.append(", \"root\": ");
+            for (int level = 0; level < depth; level++) {
+                json.append("{\"name\": \"node-").append(level).append("\", \"level\": ").append(level);
+                json.append(level + 1 < depth ? ", \"child\": " : "");
+            }
+            for (int level = 0; level < depth; level++) {
+                json.append("}");
+            }
+        }
+        return json.append("}").toString();
+    }
+
+    /**
+     * The synthetic response message parsed from {@link #syntheticJson}, ignoring the request-only fields.
+     */
+    static DynamicMessage syntheticResponse(FileDescriptorIndex index, int items, int depth) {
+        HttpRuleMethodDescriptor methodDescriptor = index.get("GET", "/v1/parents/p1/resources0/r1");
+        DynamicMessage.Builder builder = DynamicMessage.newBuilder(methodDescriptor.getOutputType());
+        try {
+            JsonFormat.parser().ignoringUnknownFields().merge(syntheticJson(items, depth), builder);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return builder.build();
+    }
+
+    private static FieldDescriptorProto.Builder field(String name, int number, FieldDescriptorProto.Type type) {
+        return FieldDescriptorProto.newBuilder()
+                .setName(name)
+                .setNumber(number)
+                .setType(type)
+                .setLabel(FieldDescriptorProto.Label.LABEL_OPTIONAL);
+    }
+}
@@ -0,0 +1,57 @@
+package com.github.protobufx.spring.gateway.grpc.filter;
+
+import com.google.protobuf.DescriptorProtos;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures indexing a descriptor set of 2,000 files sharing their dependencies,
+ * linked on the calling thread or in parallel, and re-indexed from a previous index of the same files.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class FileDescriptorIndexBenchmark {
+
+    @Param({"2000"})
+    int files;
+
+    DescriptorProtos.FileDescriptorSet fileSet;
+    FileDescriptorIndex previous;
+
+    @Setup
+    public void setup() {
+        fileSet = BenchmarkSchemas.dependencyGraphFileSet(files);
+        previous = new FileDescriptorIndex(fileSet);
+    }
+
+    @Benchmark
+    public FileDescriptorIndex sequential() {
+        return new FileDescriptorIndex(fileSet);
+    }
+
+    @Benchmark
+    public FileDescriptorIndex parallel() {
+        return new FileDescriptorIndex(fileSet, null, ForkJoinPool.commonPool());
+    }
+
+    @Benchmark
+    public FileDescriptorIndex unchanged() {
+        return new FileDescriptorIndex(fileSet, previous);
+    }
+}
@@ -0,0 +1,160 @@
+package com.github.protobufx.spring.gateway.grpc.filter;
+
+import com.google.protobuf.DynamicMessage;
+import com.google.protobuf.util.JsonFormat;
+import io.grpc.HandlerRegistry;
+import io.grpc.ManagedChannel;
+import io.grpc.MethodDescriptor;
+import io.grpc.Server;
+import io.grpc.ServerMethodDefinition;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.ServerCalls;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpMethod;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures a whole exchange through the filter: route lookup, request transcoding, a unary call to
+ * an in-process gRPC server answering a canned response, and response transcoding.
+ * The mock exchange is created in every operation, so compare results of the same benchmark only.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FilterBenchmark {
+    static final String HOST = "http://localhost:8080";
+
+    @Param({"echoGet", "syntheticPost"})
+    String request;
+
+    @Param({"jsonFormat", "streaming", "wire"})
+    String transcoding;
+
+    @Param({"100"})
+    int items;
+
+    FileDescriptorIndex index;
+    HttpMethod method;
+    String path;
+    String body;
+    Route route;
+    Server server;
+    ManagedChannel channel;
+    GatewayFilter filter;
+    GatewayFilterChain chain = exchange -> Mono.empty();
+
+    @Setup
+    public void setup() throws Exception {
+        String responseJson;
+        if (request.equals("echoGet")) {
+            index = BenchmarkSchemas.echoIndex();
+            method = HttpMethod.GET;
+            path = "/sounds/123?waveIds=10&waveIds=20&type=VOICE";
+            responseJson = "{\"soundId\": \"123\", \"waves\": [{\"waveId\": \"10\", \"value\": \"v1\"}, {\"waveId\": \"20\"}], \"type\": \"VOICE\"}";
+        } else {
+            int depth = 8;
+            index = BenchmarkSchemas.syntheticIndex(1000, depth);
+            method = HttpMethod.POST;
+            path = "/v1/parents/p1/resources999";
+            body = BenchmarkSchemas.syntheticJson(items, depth);
+            responseJson = body;
+        }
+        HttpRuleMethodDescriptor methodDescriptor = index.get(method.name(), path.split("\\?")[0]);
+        DynamicMessage.Builder response = DynamicMessage.newBuilder(methodDescriptor.getOutputType());
+        JsonFormat.parser().ignoringUnknownFields().merge(responseJson, response);
+
+        String serverName = InProcessServerBuilder.generateName();
+        server = InProcessServerBuilder.forName(serverName)
+                .directExecutor()
+                .fallbackHandlerRegistry(new CannedResponseRegistry(response.build().toByteArray()))
+                .build()
+                .start();
+        channel = InProcessChannelBuilder.forName(serverName)
+                .directExecutor()
+                .build();
+        route = Route.async()
+                .id("benchmark")
+                .uri(HOST)
+                .predicate(exchange -> true)
+                .build();
+
+        HttpRuleJsonToGrpcGatewayFilterFactory.Config config = new HttpRuleJsonToGrpcGatewayFilterFactory.Config();
+        config.setStreamingJsonParsing(!transcoding.equals("jsonFormat"));
+        config.setStreamingJsonPrinting(!transcoding.equals("jsonFormat"));
+        config.setWireJsonPrinting(transcoding.equals("wire"));
+        filter = new HttpRuleJsonToGrpcGatewayFilterFactory(
+                target -> channel,
+                (serviceId, httpMethod, requestPath) -> Optional.ofNullable(index.get(httpMethod, requestPath))
+        ).apply(config);
+    }
+
+    @TearDown
+    public void tearDown() throws InterruptedException {
+        channel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+        server.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    @Benchmark
+    public int exchange() {
+        MockServerHttpRequest.BodyBuilder requestBuilder = MockServerHttpRequest.method(method, HOST + path);
+        MockServerWebExchange exchange = MockServerWebExchange.from(body != null ? requestBuilder.body(body) : requestBuilder.build());
+        exchange.getAttributes().put(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR, route);
+        filter.filter(exchange, chain).block();
+        // the response buffers may be pooled, release them like the server would after writing them
+        DataBuffer responseBody = DataBufferUtils.join(exchange.getResponse().getBody()).block();
+        int size = responseBody.readableByteCount();
+        DataBufferUtils.release(responseBody);
+        return size;
+    }
+
+    /**
+     * Answers every unary method with the same serialized response, whatever the request.
+     */
+    static class CannedResponseRegistry extends HandlerRegistry {
+        final byte[] response;
+
+        CannedResponseRegistry(byte[] response) {
+            this.response = response;
+        }
+
+        @Override
+        public ServerMethodDefinition<?, ?> lookupMethod(String methodName, String authority) {
+            MethodDescriptor<byte[], byte[]> methodDescriptor = MethodDescriptor.<byte[], byte[]>newBuilder()
+                    .setType(MethodDescriptor.MethodType.UNARY)
+                    .setFullMethodName(methodName)
+                    .setRequestMarshaller(HttpRuleJsonToGrpcGatewayFilterFactory.ByteArrayMarshaller.INSTANCE)
+                    .setResponseMarshaller(HttpRuleJsonToGrpcGatewayFilterFactory.ByteArrayMarshaller.INSTANCE)
+                    .build();
+            return ServerMethodDefinition.create(methodDescriptor, ServerCalls.asyncUnaryCall((request, responseObserver) -> {
+                responseObserver.onNext(response);
+                responseObserver.onCompleted();
+            }));
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.github.protobufx.spring.gateway.grpc.filter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.protobuf.DynamicMessage;
+import com.google.protobuf.util.JsonFormat;
+import io.grpc.MethodDescriptor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the per-request work done on an {@link HttpRuleMethodDescriptor} for a templated rule.
+ * Run with {@code -prof gc} and compare {@code gc.alloc.rate.norm} across revisions.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HttpRuleMethodDescriptorBenchmark {
+    static final String PATH = "/sounds/123/waves/456";
+
+    HttpRuleMethodDescriptor descriptor;
+    JsonFormat.Parser parser;
+    ObjectMapper objectMapper;
+
+    @Setup
+    public void setup() {
+        descriptor = BenchmarkSchemas.echoIndex().get("GET", PATH);
+        parser = JsonFormat.parser().ignoringUnknownFields();
+        objectMapper = new ObjectMapper();
+    }
+
+    @Benchmark
+    public DynamicMessage bindPathVariables() {
+        HttpRuleMethodDescriptor.DynamicMessageBuilder builder =
+                new HttpRuleMethodDescriptor.DynamicMessageBuilder(descriptor.getInputType(), parser, objectMapper);
+        if (descriptor.containsPathVariable()) {
+            descriptor.bindPathVariables(PATH, builder);
+        }
+        return builder.build();
+    }
+
+    @Benchmark
+    public MethodDescriptor<DynamicMessage, DynamicMessage> methodDescriptor() {
+        return descriptor.toDynamicMessageMethodDescriptor();
+    }
+}
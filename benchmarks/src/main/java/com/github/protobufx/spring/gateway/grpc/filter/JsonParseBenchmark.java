@@ -0,0 +1,91 @@
+package com.github.protobufx.spring.gateway.grpc.filter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.protobuf.DynamicMessage;
+import com.google.protobuf.util.JsonFormat;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the JSON to protobuf side of a request of the synthetic schema:
+ * the request body parsed by {@link JsonFormat} and by {@link StreamingJsonParser},
+ * and the path variables and query parameters bound by {@link HttpRuleMethodDescriptor.DynamicMessageBuilder}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonParseBenchmark {
+    static final String PATH = "/v1/parents/p1/resources0/r1";
+
+    @Param({"1", "100"})
+    int items;
+
+    @Param({"8"})
+    int depth;
+
+    HttpRuleMethodDescriptor descriptor;
+    byte[] body;
+    MultiValueMap<String, String> queryParams;
+    JsonFormat.Parser parser;
+    StreamingJsonParser streamingParser;
+    ObjectMapper objectMapper;
+
+    @Setup
+    public void setup() {
+        descriptor = BenchmarkSchemas.syntheticIndex(1, depth).get("GET", PATH);
+        body = BenchmarkSchemas.syntheticJson(items, depth).getBytes(StandardCharsets.UTF_8);
+        queryParams = new LinkedMultiValueMap<>();
+        queryParams.put("pageSize", List.of("50"));
+        queryParams.put("filter", List.of("status = ACTIVE"));
+        queryParams.put("status", List.of("ACTIVE"));
+        queryParams.put("root.child.name", List.of("node-1"));
+        parser = JsonFormat.parser().ignoringUnknownFields();
+        streamingParser = new StreamingJsonParser(parser, true);
+        objectMapper = new ObjectMapper();
+    }
+
+    @Benchmark
+    public DynamicMessage jsonFormat() {
+        HttpRuleMethodDescriptor.DynamicMessageBuilder builder = newBuilder(null);
+        builder.setFields("*", new ByteArrayInputStream(body));
+        return builder.build();
+    }
+
+    @Benchmark
+    public DynamicMessage streamingParser() {
+        HttpRuleMethodDescriptor.DynamicMessageBuilder builder = newBuilder(streamingParser);
+        builder.setFields("*", new ByteArrayInputStream(body));
+        return builder.build();
+    }
+
+    @Benchmark
+    public DynamicMessage pathVariablesAndQueryParams() {
+        HttpRuleMethodDescriptor.DynamicMessageBuilder builder = newBuilder(streamingParser);
+        descriptor.bindPathVariables(PATH, builder);
+        builder.setFields(queryParams);
+        return builder.build();
+    }
+
+    private HttpRuleMethodDescriptor.DynamicMessageBuilder newBuilder(StreamingJsonParser streamingParser) {
+        return new HttpRuleMethodDescriptor.DynamicMessageBuilder(descriptor.getInputType(), parser, objectMapper, streamingParser);
+    }
+}
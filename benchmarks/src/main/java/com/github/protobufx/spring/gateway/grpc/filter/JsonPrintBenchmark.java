@@ -0,0 +1,95 @@
+package com.github.protobufx.spring.gateway.grpc.filter;
+
+import com.google.protobuf.Descriptors;
+import com.google.protobuf.DynamicMessage;
+import com.google.protobuf.util.JsonFormat;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the protobuf to JSON side of a response of the synthetic schema:
+ * {@link JsonFormat} into a byte array, and {@link StreamingJsonPrinter} and {@link WireJsonPrinter}
+ * into pooled chunks, as the filter does.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonPrintBenchmark {
+    static final int CHUNK_SIZE = 8 * 1024;
+
+    @Param({"1", "100"})
+    int items;
+
+    @Param({"8"})
+    int depth;
+
+    @Param({"false", "true"})
+    boolean prettyPrinting;
+
+    Descriptors.Descriptor type;
+    DynamicMessage message;
+    byte[] wireMessage;
+    JsonFormat.Printer jsonFormatPrinter;
+    StreamingJsonPrinter streamingPrinter;
+    WireJsonPrinter wirePrinter;
+    ByteBufAllocator allocator;
+
+    @Setup
+    public void setup() {
+        message = BenchmarkSchemas.syntheticResponse(BenchmarkSchemas.syntheticIndex(1, depth), items, depth);
+        type = message.getDescriptorForType();
+        wireMessage = message.toByteArray();
+        JsonFormat.Printer printer = JsonFormat.printer().includingDefaultValueFields();
+        jsonFormatPrinter = prettyPrinting ? printer : printer.omittingInsignificantWhitespace();
+        streamingPrinter = new StreamingJsonPrinter(jsonFormatPrinter, true, prettyPrinting);
+        wirePrinter = new WireJsonPrinter(streamingPrinter);
+        allocator = PooledByteBufAllocator.DEFAULT;
+    }
+
+    @Benchmark
+    public byte[] jsonFormat() throws IOException {
+        return jsonFormatPrinter.print(message).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public int streamingPrinter() throws IOException {
+        int[] size = new int[1];
+        try (ChunkedByteBufOutputStream outputStream = new ChunkedByteBufOutputStream(allocator, CHUNK_SIZE, chunk -> release(chunk, size))) {
+            streamingPrinter.print(message, outputStream);
+        }
+        return size[0];
+    }
+
+    @Benchmark
+    public int wirePrinter() throws IOException {
+        int[] size = new int[1];
+        try (ChunkedByteBufOutputStream outputStream = new ChunkedByteBufOutputStream(allocator, CHUNK_SIZE, chunk -> release(chunk, size))) {
+            wirePrinter.print(type, wireMessage, outputStream);
+        }
+        return size[0];
+    }
+
+    private static void release(ByteBuf chunk, int[] size) {
+        size[0] += chunk.readableBytes();
+        chunk.release();
+    }
+}
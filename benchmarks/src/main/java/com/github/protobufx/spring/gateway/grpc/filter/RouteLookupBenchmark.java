@@ -0,0 +1,64 @@
+package com.github.protobufx.spring.gateway.grpc.filter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link FileDescriptorIndex#get} for the echo schema and for a schema of 1k annotated methods,
+ * where the requested route is the last one registered.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RouteLookupBenchmark {
+
+    @Param({"echo", "synthetic1k"})
+    String schema;
+
+    FileDescriptorIndex index;
+    String templatePath;
+    String fullNamePath;
+
+    @Setup
+    public void setup() {
+        if (schema.equals("echo")) {
+            index = BenchmarkSchemas.echoIndex();
+            templatePath = "/sounds/123/waves/456";
+            fullNamePath = "/example.echo.v1.EchoService/GetWave";
+        } else {
+            int methods = 1000;
+            index = BenchmarkSchemas.syntheticIndex(methods, 8);
+            templatePath = "/v1/parents/p1/resources" + (methods - 1) + "/r1";
+            fullNamePath = "/" + BenchmarkSchemas.SYNTHETIC_SERVICE + "/Method" + (methods - 1);
+        }
+    }
+
+    @Benchmark
+    public HttpRuleMethodDescriptor templatePath() {
+        return index.get("GET", templatePath);
+    }
+
+    @Benchmark
+    public HttpRuleMethodDescriptor fullNamePath() {
+        return index.get("POST", fullNamePath);
+    }
+
+    @Benchmark
+    public HttpRuleMethodDescriptor notFound() {
+        return index.get("GET", "/v2/unknown/path/123");
+    }
+}
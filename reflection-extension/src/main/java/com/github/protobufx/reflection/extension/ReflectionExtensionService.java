@@ -1,5 +1,8 @@
 package com.github.protobufx.reflection.extension;
 
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.protobuf.ByteString;
 import com.google.protobuf.DescriptorProtos;
 import com.google.protobuf.Descriptors;
 import com.github.protobufx.reflection.extension.v1alpha.ReflectServerDescriptorRequest;
@@ -9,28 +12,154 @@ import io.grpc.InternalServer;
 import io.grpc.Server;
 import io.grpc.ServerServiceDefinition;
 import io.grpc.protobuf.ProtoFileDescriptorSupplier;
+import io.grpc.stub.ServerCallStreamObserver;
 import io.grpc.stub.StreamObserver;
 
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkState;
-import static java.util.stream.Collectors.toList;
+import static java.nio.charset.StandardCharsets.UTF_8;
 
+/**
+ * Serves all the files of the server, which are serialized once and then kept until the services of the server change.
+ * The serialized files are streamed in responses of at most {@code maxResponseSize} bytes.
+ */
 public class ReflectionExtensionService extends ServerReflectionExtensionGrpc.ServerReflectionExtensionImplBase {
+    static final int DEFAULT_MAX_RESPONSE_SIZE = 1024 * 1024;
+
+    final int maxResponseSize;
+    volatile Snapshot snapshot;
+
+    public ReflectionExtensionService() {
+        this(DEFAULT_MAX_RESPONSE_SIZE);
+    }
+
+    /**
+     * @param maxResponseSize the maximum size of the serialized files in a single response
+     */
+    public ReflectionExtensionService(int maxResponseSize) {
+        checkArgument(maxResponseSize > 0, "maxResponseSize must be positive");
+        this.maxResponseSize = maxResponseSize;
+    }
 
     @Override
     public void reflectServerDescriptor(ReflectServerDescriptorRequest request, StreamObserver<ReflectServerDescriptorResponse> responseObserver) {
         Server server = InternalServer.SERVER_CONTEXT_KEY.get();
-        FileDescriptorIndex index = new FileDescriptorIndex(server.getServices());
-        responseObserver.onNext(ReflectServerDescriptorResponse.newBuilder()
-                .setFileDescriptorSet(DescriptorProtos.FileDescriptorSet.newBuilder()
-                        .addAllFile(index.fileDescriptorsByName.values().stream()
-                                .map(Descriptors.FileDescriptor::toProto)
-                                .collect(toList()))
-                        .build()
-                        .toByteString())
-                .build());
-        responseObserver.onCompleted();
+        Snapshot current = snapshot(server.getServices());
+
+        if (current.version.equals(request.getKnownVersion())) {
+            responseObserver.onNext(ReflectServerDescriptorResponse.newBuilder()
+                    .setVersion(current.version)
+                    .setNotModified(true)
+                    .build());
+            responseObserver.onCompleted();
+            return;
+        }
+        ByteString fileDescriptorSet = request.getKnownFileHashesCount() == 0
+                ? current.fileDescriptorSet
+                : current.changedFiles(request.getKnownFileHashesMap());
+        sendInParts(fileDescriptorSet, current, (ServerCallStreamObserver<ReflectServerDescriptorResponse>) responseObserver);
+    }
+
+    Snapshot snapshot(List<ServerServiceDefinition> services) {
+        Snapshot current = snapshot;
+        // the services are compared by content, since a server may return new definitions of the same services
+        List<Map.Entry<String, Descriptors.FileDescriptor>> serviceFiles = serviceFiles(services);
+        if (current == null || !current.serviceFiles.equals(serviceFiles)) {
+            current = new Snapshot(services, serviceFiles);
+            snapshot = current;
+        }
+        return current;
+    }
+
+    /**
+     * @return the name of every service with its file, or null if the service has no proto file
+     */
+    static List<Map.Entry<String, Descriptors.FileDescriptor>> serviceFiles(List<ServerServiceDefinition> services) {
+        List<Map.Entry<String, Descriptors.FileDescriptor>> serviceFiles = new ArrayList<>(services.size());
+        for (ServerServiceDefinition service : services) {
+            io.grpc.ServiceDescriptor serviceDescriptor = service.getServiceDescriptor();
+            Descriptors.FileDescriptor fileDescriptor = serviceDescriptor.getSchemaDescriptor() instanceof ProtoFileDescriptorSupplier
+                    ? ((ProtoFileDescriptorSupplier) serviceDescriptor.getSchemaDescriptor()).getFileDescriptor()
+                    : null;
+            serviceFiles.add(new AbstractMap.SimpleImmutableEntry<>(serviceDescriptor.getName(), fileDescriptor));
+        }
+        return serviceFiles;
+    }
+
+    /**
+     * Sends the serialized files in parts as the client is ready to receive them,
+     * with the version and the hashes in the last part.
+     */
+    void sendInParts(ByteString fileDescriptorSet, Snapshot current, ServerCallStreamObserver<ReflectServerDescriptorResponse> responseObserver) {
+        int parts = Math.max(1, (fileDescriptorSet.size() + maxResponseSize - 1) / maxResponseSize);
+        AtomicInteger sent = new AtomicInteger();
+        responseObserver.setOnCancelHandler(() -> sent.set(parts));
+        Runnable sendReadyParts = () -> {
+            while (sent.get() < parts && responseObserver.isReady()) {
+                int part = sent.getAndIncrement();
+                // the parts are views of the serialized files, the client concatenates them again
+                ReflectServerDescriptorResponse.Builder response = ReflectServerDescriptorResponse.newBuilder()
+                        .setFileDescriptorSet(fileDescriptorSet.substring(part * maxResponseSize,
+                                Math.min(fileDescriptorSet.size(), (part + 1) * maxResponseSize)));
+                if (part == parts - 1) {
+                    response.setVersion(current.version).putAllFileHashes(current.fileHashes);
+                }
+                responseObserver.onNext(response.build());
+                if (part == parts - 1) {
+                    responseObserver.onCompleted();
+                }
+            }
+        };
+        responseObserver.setOnReadyHandler(sendReadyParts);
+        sendReadyParts.run();
+    }
+
+    /**
+     * The serialized files of the services of the server, with their hashes and version.
+     */
+    static class Snapshot {
+        final List<Map.Entry<String, Descriptors.FileDescriptor>> serviceFiles;
+        // each file serialized as a FileDescriptorSet of this file alone, which can be concatenated
+        final Map<String, ByteString> serializedFiles = new TreeMap<>();
+        final Map<String, String> fileHashes = new TreeMap<>();
+        final ByteString fileDescriptorSet;
+        final String version;
+
+        Snapshot(List<ServerServiceDefinition> services, List<Map.Entry<String, Descriptors.FileDescriptor>> serviceFiles) {
+            this.serviceFiles = serviceFiles;
+            FileDescriptorIndex index = new FileDescriptorIndex(services);
+            for (Descriptors.FileDescriptor fileDescriptor : index.fileDescriptorsByName.values()) {
+                DescriptorProtos.FileDescriptorProto file = fileDescriptor.toProto();
+                serializedFiles.put(file.getName(), DescriptorProtos.FileDescriptorSet.newBuilder().addFile(file).build().toByteString());
+                fileHashes.put(file.getName(), Hashing.sha256().hashBytes(file.toByteArray()).toString());
+            }
+            this.fileDescriptorSet = ByteString.copyFrom(serializedFiles.values());
+            this.version = version(fileHashes);
+        }
+
+        /**
+         * @return the serialized files that are unknown to the client or have changed
+         */
+        ByteString changedFiles(Map<String, String> knownFileHashes) {
+            List<ByteString> changed = new ArrayList<>();
+            serializedFiles.forEach((name, serializedFile) -> {
+                if (!fileHashes.get(name).equals(knownFileHashes.get(name))) {
+                    changed.add(serializedFile);
+                }
+            });
+            return ByteString.copyFrom(changed);
+        }
+    }
+
+    static String version(Map<String, String> fileHashes) {
+        Hasher hasher = Hashing.sha256().newHasher();
+        // the hashes are sorted by file name
+        fileHashes.forEach((name, hash) -> hasher.putString(name, UTF_8).putByte((byte) 0)
+                .putString(hash, UTF_8).putByte((byte) 0));
+        return hasher.hash().toString();
     }
 
     static class FileDescriptorIndex {
@@ -0,0 +1,258 @@
+package com.github.protobufx.reflection.extension;
+
+import com.github.protobufx.reflection.extension.v1alpha.ReflectServerDescriptorRequest;
+import com.github.protobufx.reflection.extension.v1alpha.ReflectServerDescriptorResponse;
+import com.github.protobufx.reflection.extension.v1alpha.ServerReflectionExtensionGrpc;
+import com.google.api.AnnotationsProto;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.DescriptorProtos;
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.ServerServiceDefinition;
+import io.grpc.ServiceDescriptor;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.protobuf.ProtoFileDescriptorSupplier;
+import io.grpc.stub.ServerCallStreamObserver;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ReflectionExtensionServiceTest {
+
+    Server server;
+    ManagedChannel channel;
+
+    @AfterEach
+    void afterEach() throws Exception {
+        if (channel != null) {
+            channel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+        }
+        if (server != null) {
+            server.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * A service without methods, whose file google/api/annotations.proto brings its dependencies along.
+     */
+    static ServerServiceDefinition annotatedService() {
+        return ServerServiceDefinition.builder(ServiceDescriptor.newBuilder("test.Annotated")
+                        .setSchemaDescriptor((ProtoFileDescriptorSupplier) AnnotationsProto::getDescriptor)
+                        .build())
+                .build();
+    }
+
+    ServerReflectionExtensionGrpc.ServerReflectionExtensionBlockingStub start(ReflectionExtensionService service) throws Exception {
+        String serverName = InProcessServerBuilder.generateName();
+        server = InProcessServerBuilder.forName(serverName)
+                .addService(service)
+                .addService(annotatedService())
+                .build()
+                .start();
+        channel = InProcessChannelBuilder.forName(serverName).build();
+        return ServerReflectionExtensionGrpc.newBlockingStub(channel);
+    }
+
+    static List<ReflectServerDescriptorResponse> reflect(ServerReflectionExtensionGrpc.ServerReflectionExtensionBlockingStub stub,
+                                                         ReflectServerDescriptorRequest request) {
+        List<ReflectServerDescriptorResponse> responses = new ArrayList<>();
+        stub.reflectServerDescriptor(request).forEachRemaining(responses::add);
+        return responses;
+    }
+
+    static Set<String> fileNames(ByteString fileDescriptorSet) throws Exception {
+        return DescriptorProtos.FileDescriptorSet.parseFrom(fileDescriptorSet).getFileList().stream()
+                .map(DescriptorProtos.FileDescriptorProto::getName)
+                .collect(Collectors.toSet());
+    }
+
+    @Test
+    @DisplayName("The first call gets all the files with their version and hashes")
+    void testAllFiles() throws Exception {
+        ServerReflectionExtensionGrpc.ServerReflectionExtensionBlockingStub stub = start(new ReflectionExtensionService());
+
+        List<ReflectServerDescriptorResponse> responses = reflect(stub, ReflectServerDescriptorRequest.getDefaultInstance());
+
+        assertEquals(1, responses.size());
+        ReflectServerDescriptorResponse response = responses.get(0);
+        Set<String> fileNames = Set.of("reflectionextension.proto", "google/api/annotations.proto",
+                "google/api/http.proto", "google/protobuf/descriptor.proto");
+        assertEquals(fileNames, fileNames(response.getFileDescriptorSet()));
+        assertEquals(fileNames, response.getFileHashesMap().keySet());
+        assertEquals(ReflectionExtensionService.version(response.getFileHashesMap()), response.getVersion());
+        assertFalse(response.getNotModified());
+    }
+
+    @Test
+    @DisplayName("A call with the current version is not modified")
+    void testNotModified() throws Exception {
+        ServerReflectionExtensionGrpc.ServerReflectionExtensionBlockingStub stub = start(new ReflectionExtensionService());
+        String version = reflect(stub, ReflectServerDescriptorRequest.getDefaultInstance()).get(0).getVersion();
+
+        List<ReflectServerDescriptorResponse> responses = reflect(stub, ReflectServerDescriptorRequest.newBuilder()
+                .setKnownVersion(version)
+                .build());
+
+        assertEquals(1, responses.size());
+        assertTrue(responses.get(0).getNotModified());
+        assertEquals(version, responses.get(0).getVersion());
+        assertTrue(responses.get(0).getFileDescriptorSet().isEmpty());
+        assertTrue(responses.get(0).getFileHashesMap().isEmpty());
+    }
+
+    @Test
+    @DisplayName("A call with known hashes only gets the files that have changed, and all the hashes")
+    void testChangedFiles() throws Exception {
+        ServerReflectionExtensionGrpc.ServerReflectionExtensionBlockingStub stub = start(new ReflectionExtensionService());
+        ReflectServerDescriptorResponse previous = reflect(stub, ReflectServerDescriptorRequest.getDefaultInstance()).get(0);
+        Map<String, String> knownFileHashes = new HashMap<>(previous.getFileHashesMap());
+        knownFileHashes.put("google/api/http.proto", "stale");
+        knownFileHashes.remove("google/api/annotations.proto");
+
+        List<ReflectServerDescriptorResponse> responses = reflect(stub, ReflectServerDescriptorRequest.newBuilder()
+                .setKnownVersion("stale")
+                .putAllKnownFileHashes(knownFileHashes)
+                .build());
+
+        assertEquals(1, responses.size());
+        assertEquals(Set.of("google/api/http.proto", "google/api/annotations.proto"), fileNames(responses.get(0).getFileDescriptorSet()));
+        assertEquals(previous.getFileHashesMap(), responses.get(0).getFileHashesMap());
+        assertEquals(previous.getVersion(), responses.get(0).getVersion());
+    }
+
+    @Test
+    @DisplayName("Files larger than the maximum response size are split into parts, and the last part has the version and hashes")
+    void testParts() throws Exception {
+        ServerReflectionExtensionGrpc.ServerReflectionExtensionBlockingStub stub = start(new ReflectionExtensionService(1024));
+
+        List<ReflectServerDescriptorResponse> responses = reflect(stub, ReflectServerDescriptorRequest.getDefaultInstance());
+
+        assertTrue(responses.size() > 1);
+        ByteString fileDescriptorSet = ByteString.empty();
+        for (int i = 0; i < responses.size(); i++) {
+            ReflectServerDescriptorResponse response = responses.get(i);
+            assertTrue(response.getFileDescriptorSet().size() <= 1024);
+            assertEquals(i == responses.size() - 1, !response.getVersion().isEmpty());
+            assertEquals(i == responses.size() - 1, response.getFileHashesCount() > 0);
+            fileDescriptorSet = fileDescriptorSet.concat(response.getFileDescriptorSet());
+        }
+        assertEquals(responses.get(responses.size() - 1).getFileHashesMap().keySet(), fileNames(fileDescriptorSet));
+    }
+
+    @Test
+    @DisplayName("A part is only sent when the call is ready")
+    void testOnReady() {
+        ReflectionExtensionService service = new ReflectionExtensionService(1024);
+        ReflectionExtensionService.Snapshot snapshot = service.snapshot(List.of(service.bindService(), annotatedService()));
+        int parts = (snapshot.fileDescriptorSet.size() + 1023) / 1024;
+        ReadyObserver responseObserver = new ReadyObserver();
+
+        service.sendInParts(snapshot.fileDescriptorSet, snapshot, responseObserver);
+        assertTrue(responseObserver.responses.isEmpty());
+
+        for (int i = 1; i <= parts; i++) {
+            responseObserver.ready();
+            assertEquals(i, responseObserver.responses.size());
+        }
+        assertTrue(responseObserver.completed);
+        assertEquals(snapshot.fileDescriptorSet, responseObserver.responses.stream()
+                .map(ReflectServerDescriptorResponse::getFileDescriptorSet)
+                .reduce(ByteString.empty(), ByteString::concat));
+    }
+
+    @Test
+    @DisplayName("The snapshot is kept for new definitions of the same services, and rebuilt when the services change")
+    void testSnapshot() {
+        ReflectionExtensionService service = new ReflectionExtensionService();
+        ReflectionExtensionService.Snapshot snapshot = service.snapshot(List.of(service.bindService(), annotatedService()));
+
+        assertSame(snapshot, service.snapshot(List.of(service.bindService(), annotatedService())));
+
+        ReflectionExtensionService.Snapshot changed = service.snapshot(List.of(service.bindService()));
+        assertNotSame(snapshot, changed);
+        assertNotEquals(snapshot.version, changed.version);
+        assertEquals(Set.of("reflectionextension.proto"), changed.fileHashes.keySet());
+    }
+
+    /**
+     * A call that is ready for a single message each time it is signaled.
+     */
+    static class ReadyObserver extends ServerCallStreamObserver<ReflectServerDescriptorResponse> {
+        final List<ReflectServerDescriptorResponse> responses = new ArrayList<>();
+        boolean ready;
+        boolean completed;
+        Runnable onReadyHandler;
+
+        void ready() {
+            ready = true;
+            onReadyHandler.run();
+        }
+
+        @Override
+        public void onNext(ReflectServerDescriptorResponse value) {
+            responses.add(value);
+            ready = false;
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            throw new AssertionError(t);
+        }
+
+        @Override
+        public void onCompleted() {
+            completed = true;
+        }
+
+        @Override
+        public boolean isReady() {
+            return ready;
+        }
+
+        @Override
+        public void setOnReadyHandler(Runnable onReadyHandler) {
+            this.onReadyHandler = onReadyHandler;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return false;
+        }
+
+        @Override
+        public void setOnCancelHandler(Runnable onCancelHandler) {
+        }
+
+        @Override
+        public void setCompression(String compression) {
+        }
+
+        @Override
+        public void disableAutoInboundFlowControl() {
+        }
+
+        @Override
+        public void request(int count) {
+        }
+
+        @Override
+        public void setMessageCompression(boolean enable) {
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package com.github.protobufx.spring.gateway.grpc.filter;
+
+import io.grpc.Status;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.Data;
+
+import javax.annotation.Nullable;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Limits the concurrent calls to each backend authority, and adapts the limits to the backends
+ * with additive increase and multiplicative decrease (AIMD).
+ * A limit grows by one with every successful call made while at least half of the limit was in use,
+ * and shrinks by the backoff ratio with every call that was dropped, i.e. that failed with DEADLINE_EXCEEDED,
+ * RESOURCE_EXHAUSTED or UNAVAILABLE, or took longer than the latency threshold.
+ * A request beyond the limit is rejected before its body is read, so that an overloaded backend
+ * does not pile up calls and buffers in the gateway.
+ * The limiter can be shared by the routes of a backend, and its limits are then shared too.
+ */
+public class AdaptiveConcurrencyLimiter implements MeterBinder {
+    final Config config;
+    final Map<String, Limit> limits = new ConcurrentHashMap<>();
+    @Nullable
+    volatile MeterRegistry registry;
+
+    public AdaptiveConcurrencyLimiter(Config config) {
+        if (config.getMinLimit() < 1 || config.getMaxLimit() < config.getMinLimit()) {
+            throw new IllegalArgumentException(String.format("Invalid limits: min %d, max %d", config.getMinLimit(), config.getMaxLimit()));
+        }
+        if (config.getInitialLimit() < config.getMinLimit() || config.getInitialLimit() > config.getMaxLimit()) {
+            throw new IllegalArgumentException("initialLimit must be between minLimit and maxLimit: " + config.getInitialLimit());
+        }
+        if (config.getBackoffRatio() <= 0 || config.getBackoffRatio() >= 1) {
+            throw new IllegalArgumentException("backoffRatio must be between 0 and 1: " + config.getBackoffRatio());
+        }
+        this.config = config;
+    }
+
+    /**
+     * @return a permit for a call to the authority, which must be released once the call is done,
+     * or null if the authority already has as many calls in flight as its limit
+     */
+    @Nullable
+    Permit tryAcquire(String authority) {
+        return limits.computeIfAbsent(authority, Limit::new).tryAcquire();
+    }
+
+    /**
+     * Registers the limit, the calls in flight and the rejected requests of each authority.
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        this.registry = registry;
+        limits.values().forEach(limit -> limit.bindTo(registry));
+    }
+
+    /**
+     * The limit of an authority.
+     */
+    class Limit {
+        final String authority;
+        final AtomicInteger limit = new AtomicInteger(config.getInitialLimit());
+        final AtomicInteger inFlight = new AtomicInteger();
+        @Nullable
+        volatile Counter rejected;
+
+        Limit(String authority) {
+            this.authority = authority;
+            MeterRegistry meterRegistry = registry;
+            if (meterRegistry != null) {
+                bindTo(meterRegistry);
+            }
+        }
+
+        @Nullable
+        Permit tryAcquire() {
+            int current;
+            do {
+                current = inFlight.get();
+                if (current >= limit.get()) {
+                    Counter counter = rejected;
+                    if (counter != null) {
+                        counter.increment();
+                    }
+                    return null;
+                }
+            } while (!inFlight.compareAndSet(current, current + 1));
+            return new Permit(this, current + 1);
+        }
+
+        void onSample(long nanos, Status.Code code, int inFlightAtStart) {
+            if (code == Status.Code.CANCELLED) {
+                // cancelled by the client, which tells nothing about the backend
+                return;
+            }
+            if (code == Status.Code.DEADLINE_EXCEEDED || code == Status.Code.RESOURCE_EXHAUSTED || code == Status.Code.UNAVAILABLE
+                    || nanos > config.getLatencyThreshold().toNanos()) {
+                limit.updateAndGet(current -> Math.max(config.getMinLimit(), (int) (current * config.getBackoffRatio())));
+            } else if (inFlightAtStart * 2 >= limit.get()) {
+                limit.updateAndGet(current -> Math.min(config.getMaxLimit(), current + 1));
+            }
+        }
+
+        void bindTo(MeterRegistry registry) {
+            Gauge.builder("grpc.gateway.concurrency.limit", limit, AtomicInteger::get)
+                    .description("The limit of the concurrent calls to a backend")
+                    .tag("authority", authority)
+                    .register(registry);
+            Gauge.builder("grpc.gateway.concurrency.inflight", inFlight, AtomicInteger::get)
+                    .description("The calls in flight to a backend")
+                    .tag("authority", authority)
+                    .register(registry);
+            rejected = Counter.builder("grpc.gateway.concurrency.rejected")
+                    .description("The requests rejected since a backend had as many calls in flight as its limit")
+                    .tag("authority", authority)
+                    .register(registry);
+        }
+    }
+
+    /**
+     * A call in flight, which adapts the limit with its outcome when it is released.
+     */
+    static class Permit {
+        final Limit limit;
+        final int inFlightAtStart;
+        final AtomicBoolean released = new AtomicBoolean();
+        // whether the call is a stream, whose duration is not compared with the latency threshold
+        boolean streaming;
+        volatile long nanos;
+        @Nullable
+        volatile Status.Code code;
+
+        Permit(Limit limit, int inFlightAtStart) {
+            this.limit = limit;
+            this.inFlightAtStart = inFlightAtStart;
+        }
+
+        /**
+         * Records the outcome of the backend call, which is not known if the request failed before the call.
+         */
+        void record(long nanos, Status.Code code) {
+            this.nanos = nanos;
+            this.code = code;
+        }
+
+        void release() {
+            if (released.compareAndSet(false, true)) {
+                limit.inFlight.decrementAndGet();
+                Status.Code outcome = code;
+                if (outcome != null) {
+                    limit.onSample(nanos, outcome, inFlightAtStart);
+                }
+            }
+        }
+    }
+
+    @Data
+    public static class Config {
+        // the limit of an authority before the first calls, and the bounds of the limit
+        int initialLimit;
+        int minLimit;
+        int maxLimit;
+        // the ratio of the limit that is kept when a call is dropped
+        double backoffRatio;
+        // a call taking longer than this is considered dropped
+        Duration latencyThreshold;
+
+        public Config() {
+            initialLimit = 20;
+            minLimit = 1;
+            maxLimit = 1000;
+            backoffRatio = 0.9;
+            latencyThreshold = Duration.ofSeconds(5);
+        }
+    }
+}
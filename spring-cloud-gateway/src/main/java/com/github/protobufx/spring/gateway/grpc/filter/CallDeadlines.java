@@ -0,0 +1,86 @@
+package com.github.protobufx.spring.gateway.grpc.filter;
+
+import io.grpc.Deadline;
+import org.springframework.http.HttpHeaders;
+
+import javax.annotation.Nullable;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The deadlines of the backend calls, resolved once per filter config.
+ * The deadline of a request is the timeout of its timeout header if any, bounded by the maximum deadline,
+ * and the default deadline otherwise. It starts when the request is received, so it also bounds the time
+ * spent reading the request body.
+ */
+class CallDeadlines {
+    private static final int MAX_TIMEOUT_DIGITS = 8;
+
+    @Nullable
+    private final Duration defaultDeadline;
+    @Nullable
+    private final String timeoutHeader;
+    @Nullable
+    private final Duration maxDeadline;
+
+    CallDeadlines(@Nullable Duration defaultDeadline, @Nullable String timeoutHeader, @Nullable Duration maxDeadline) {
+        this.defaultDeadline = defaultDeadline;
+        this.timeoutHeader = timeoutHeader;
+        this.maxDeadline = maxDeadline;
+    }
+
+    /**
+     * @return the deadline of the calls of a request, or null if they have none
+     * @throws IllegalArgumentException if the timeout header is not a valid timeout
+     */
+    @Nullable
+    Deadline deadline(HttpHeaders requestHeaders) {
+        Duration timeout = defaultDeadline;
+        String value = timeoutHeader == null ? null : requestHeaders.getFirst(timeoutHeader);
+        if (value != null) {
+            timeout = parseTimeout(value);
+            if (maxDeadline != null && timeout.compareTo(maxDeadline) > 0) {
+                timeout = maxDeadline;
+            }
+        }
+        return timeout == null ? null : Deadline.after(timeout.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Parses a timeout in the format of the grpc-timeout header, e.g. {@code 100m} or {@code 5S},
+     * or a number of milliseconds.
+     *
+     * @throws IllegalArgumentException if the value is not a timeout
+     */
+    static Duration parseTimeout(String value) {
+        String timeout = value.trim();
+        if (timeout.isEmpty() || timeout.length() > MAX_TIMEOUT_DIGITS + 1) {
+            throw new IllegalArgumentException("Invalid timeout: " + value);
+        }
+        char unit = timeout.charAt(timeout.length() - 1);
+        String digits = Character.isDigit(unit) ? timeout : timeout.substring(0, timeout.length() - 1);
+        if (digits.isEmpty() || !digits.chars().allMatch(Character::isDigit)) {
+            throw new IllegalArgumentException("Invalid timeout: " + value);
+        }
+        long amount = Long.parseLong(digits);
+        switch (unit) {
+            case 'H':
+                return Duration.ofHours(amount);
+            case 'M':
+                return Duration.ofMinutes(amount);
+            case 'S':
+                return Duration.ofSeconds(amount);
+            case 'm':
+                return Duration.ofMillis(amount);
+            case 'u':
+                return Duration.ofNanos(TimeUnit.MICROSECONDS.toNanos(amount));
+            case 'n':
+                return Duration.ofNanos(amount);
+            default:
+                if (Character.isDigit(unit)) {
+                    return Duration.ofMillis(amount);
+                }
+                throw new IllegalArgumentException("Invalid timeout unit: " + value);
+        }
+    }
+}
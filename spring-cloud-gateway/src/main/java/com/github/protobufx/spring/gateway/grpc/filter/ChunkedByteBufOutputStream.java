@@ -0,0 +1,89 @@
+package com.github.protobufx.spring.gateway.grpc.filter;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+
+import java.io.OutputStream;
+import java.util.function.Consumer;
+
+/**
+ * An output stream writing into buffers of the allocator, each of at most {@code chunkSize} bytes.
+ * Every buffer is handed over to the consumer as soon as it is full, so a large document
+ * can be sent while it is still being written. The consumer owns the buffers it receives.
+ */
+class ChunkedByteBufOutputStream extends OutputStream {
+    private static final int INITIAL_CAPACITY = 256;
+
+    private final ByteBufAllocator allocator;
+    private final int chunkSize;
+    private final Consumer<ByteBuf> chunkConsumer;
+    private ByteBuf chunk;
+    private long handedOver;
+
+    ChunkedByteBufOutputStream(ByteBufAllocator allocator, int chunkSize, Consumer<ByteBuf> chunkConsumer) {
+        this.allocator = allocator;
+        this.chunkSize = chunkSize;
+        this.chunkConsumer = chunkConsumer;
+    }
+
+    @Override
+    public void write(int b) {
+        writableChunk().writeByte(b);
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) {
+        while (length > 0) {
+            ByteBuf writable = writableChunk();
+            int written = Math.min(length, writable.maxWritableBytes());
+            writable.writeBytes(bytes, offset, written);
+            offset += written;
+            length -= written;
+        }
+    }
+
+    /**
+     * Hands over the last chunk, if any.
+     */
+    @Override
+    public void close() {
+        if (chunk != null && chunk.isReadable()) {
+            emit();
+        }
+        discard();
+    }
+
+    /**
+     * @return the bytes that have been handed over to the consumer
+     */
+    long size() {
+        return handedOver;
+    }
+
+    /**
+     * Releases the chunk that has not been handed over yet.
+     */
+    void discard() {
+        if (chunk != null) {
+            chunk.release();
+            chunk = null;
+        }
+    }
+
+    private ByteBuf writableChunk() {
+        if (chunk != null && chunk.maxWritableBytes() == 0) {
+            emit();
+        }
+        if (chunk == null) {
+            chunk = allocator.buffer(Math.min(INITIAL_CAPACITY, chunkSize), chunkSize);
+        }
+        return chunk;
+    }
+
+    private void emit() {
+        ByteBuf full = chunk;
+        chunk = null;
+        handedOver += full.readableBytes();
+        chunkConsumer.accept(full);
+    }
+}
@@ -10,9 +10,18 @@ import lombok.experimental.Accessors;
 import org.springframework.web.util.pattern.PathPatternParser;
 
 import javax.annotation.Nullable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.stream.Collectors;
 
 import static java.util.function.Function.identity;
 import static java.util.stream.Collectors.toMap;
@@ -21,71 +30,187 @@ import static java.util.stream.Collectors.toMap;
  * A class that indexes and provides access to HTTP rule mappings for gRPC methods.
  */
 public class FileDescriptorIndex {
+    // linking fewer files in parallel is not worth the scheduling
+    static final int PARALLEL_LINKING_THRESHOLD = 64;
+
     Map<String, DescriptorProtos.FileDescriptorProto> fileMap;
+    Map<String, Descriptors.FileDescriptor> fileDescriptors;
+    Map<String, List<HttpRuleMethodDescriptor>> methodDescriptorsByFile;
     Map<HttpRuleDefinition, HttpRuleMethodDescriptor> httpRuleMap;
-    Map<HttpRuleDefinition, HttpRuleMethodDescriptor> pathVariableOnlyHttpRuleMap;
+    PathTemplateTrie routes;
 
     public FileDescriptorIndex(DescriptorProtos.FileDescriptorSet descriptorSet) {
+        this(descriptorSet, null);
+    }
+
+    /**
+     * Creates an index reusing the descriptors and method descriptors of the previous index for the files
+     * that are unchanged along with all their dependencies, so that only the changed files are linked again.
+     *
+     * @param descriptorSet all the files to index
+     * @param previous the index of a previous version of the files, or null
+     */
+    public FileDescriptorIndex(DescriptorProtos.FileDescriptorSet descriptorSet, @Nullable FileDescriptorIndex previous) {
+        this(descriptorSet, previous, null);
+    }
+
+    /**
+     * Creates an index linking each file once, after its dependencies.
+     *
+     * @param descriptorSet all the files to index
+     * @param previous the index of a previous version of the files, or null
+     * @param linkExecutor the executor linking in parallel the files whose dependencies are linked,
+     *                     or null to link all the files on the calling thread
+     */
+    public FileDescriptorIndex(DescriptorProtos.FileDescriptorSet descriptorSet, @Nullable FileDescriptorIndex previous,
+                               @Nullable Executor linkExecutor) {
         List<DescriptorProtos.FileDescriptorProto> protos = descriptorSet.getFileList();
         this.fileMap = protos.stream()
                 .collect(toMap(DescriptorProtos.FileDescriptorProto::getName, identity()));
+        List<DescriptorProtos.FileDescriptorProto> linkOrder = topologicalOrder(protos);
+        this.fileDescriptors = linkExecutor != null && protos.size() >= PARALLEL_LINKING_THRESHOLD
+                ? linkInParallel(linkOrder, previous, linkExecutor)
+                : link(linkOrder, previous);
+        this.methodDescriptorsByFile = new HashMap<>();
 
         this.httpRuleMap = new HashMap<>();
         for (DescriptorProtos.FileDescriptorProto proto : protos) {
-            Descriptors.FileDescriptor fileDescriptor = descriptorFromProto(proto);
-            for (Descriptors.ServiceDescriptor serviceDescriptor : fileDescriptor.getServices()) {
-                for (Descriptors.MethodDescriptor methodDescriptor : serviceDescriptor.getMethods()) {
-                    if (methodDescriptor.getOptions().hasExtension(AnnotationsProto.http)) {
-                        HttpRule httpRule = methodDescriptor.getOptions().getExtension(AnnotationsProto.http);
-                        indexHttpRuleMap(methodDescriptor, httpRule);
-                        for (HttpRule additionalBinding : httpRule.getAdditionalBindingsList()) {
-                            indexHttpRuleMap(methodDescriptor, additionalBinding);
-                        }
-                    } else {
-                        // if no http rule is defined, use the default path
-                        indexHttpRuleMap(methodDescriptor, null);
-                    }
-                }
+            Descriptors.FileDescriptor fileDescriptor = fileDescriptors.get(proto.getName());
+            List<HttpRuleMethodDescriptor> methodDescriptors = previous != null && previous.fileDescriptors.get(proto.getName()) == fileDescriptor
+                    ? previous.methodDescriptorsByFile.get(proto.getName())
+                    : createMethodDescriptors(fileDescriptor);
+            methodDescriptorsByFile.put(proto.getName(), methodDescriptors);
+            for (HttpRuleMethodDescriptor descriptor : methodDescriptors) {
+                httpRuleMap.put(new HttpRuleDefinition(descriptor.getMethod(), descriptor.getPathPattern()), descriptor);
             }
         }
 
-        this.pathVariableOnlyHttpRuleMap = httpRuleMap.entrySet().stream()
-                .filter(e -> e.getValue().containsPathVariable())
-                .collect(toMap(Map.Entry::getKey, Map.Entry::getValue));
+        this.routes = new PathTemplateTrie(httpRuleMap.values());
     }
 
-    void indexHttpRuleMap(Descriptors.MethodDescriptor methodDescriptor, HttpRule httpRule) {
-        HttpRuleMethodDescriptor descriptor = new HttpRuleMethodDescriptor(methodDescriptor, httpRule);
-        httpRuleMap.put(new HttpRuleDefinition(descriptor.getMethod(), descriptor.getPathPattern()), descriptor);
+    List<HttpRuleMethodDescriptor> createMethodDescriptors(Descriptors.FileDescriptor fileDescriptor) {
+        List<HttpRuleMethodDescriptor> methodDescriptors = new ArrayList<>();
+        for (Descriptors.ServiceDescriptor serviceDescriptor : fileDescriptor.getServices()) {
+            for (Descriptors.MethodDescriptor methodDescriptor : serviceDescriptor.getMethods()) {
+                if (methodDescriptor.getOptions().hasExtension(AnnotationsProto.http)) {
+                    HttpRule httpRule = methodDescriptor.getOptions().getExtension(AnnotationsProto.http);
+                    methodDescriptors.add(new HttpRuleMethodDescriptor(methodDescriptor, httpRule));
+                    for (HttpRule additionalBinding : httpRule.getAdditionalBindingsList()) {
+                        methodDescriptors.add(new HttpRuleMethodDescriptor(methodDescriptor, additionalBinding));
+                    }
+                } else {
+                    // if no http rule is defined, use the default path
+                    methodDescriptors.add(new HttpRuleMethodDescriptor(methodDescriptor, null));
+                }
+            }
+        }
+        return methodDescriptors;
     }
 
     @Nullable
     public HttpRuleMethodDescriptor get(String method, String path) {
-        HttpRuleMethodDescriptor exactMatch = httpRuleMap.get(new HttpRuleDefinition(method, path));
-        if (exactMatch != null) {
-            return exactMatch;
+        return routes.find(method, path);
+    }
+
+    /**
+     * Orders the files so that every file comes after its dependencies, keeping the order of the set otherwise.
+     */
+    List<DescriptorProtos.FileDescriptorProto> topologicalOrder(List<DescriptorProtos.FileDescriptorProto> protos) {
+        Map<String, Integer> unlinkedDependencies = new HashMap<>();
+        Map<String, List<DescriptorProtos.FileDescriptorProto>> dependents = new HashMap<>();
+        Deque<DescriptorProtos.FileDescriptorProto> linkable = new ArrayDeque<>();
+        for (DescriptorProtos.FileDescriptorProto proto : protos) {
+            for (String dependencyName : proto.getDependencyList()) {
+                if (!fileMap.containsKey(dependencyName)) {
+                    throw new IllegalArgumentException("Could not find dependency: " + dependencyName);
+                }
+                dependents.computeIfAbsent(dependencyName, name -> new ArrayList<>()).add(proto);
+            }
+            unlinkedDependencies.put(proto.getName(), proto.getDependencyCount());
+            if (proto.getDependencyCount() == 0) {
+                linkable.add(proto);
+            }
         }
 
-        for (HttpRuleMethodDescriptor methodDescriptor : pathVariableOnlyHttpRuleMap.values()) {
-            if (methodDescriptor.matches(method, path)) {
-                return methodDescriptor;
+        List<DescriptorProtos.FileDescriptorProto> order = new ArrayList<>(protos.size());
+        while (!linkable.isEmpty()) {
+            DescriptorProtos.FileDescriptorProto proto = linkable.poll();
+            order.add(proto);
+            for (DescriptorProtos.FileDescriptorProto dependent : dependents.getOrDefault(proto.getName(), Collections.emptyList())) {
+                if (unlinkedDependencies.merge(dependent.getName(), -1, Integer::sum) == 0) {
+                    linkable.add(dependent);
+                }
             }
         }
-        return null;
+        if (order.size() < protos.size()) {
+            throw new IllegalArgumentException("Cyclic dependency between: " + protos.stream()
+                    .map(DescriptorProtos.FileDescriptorProto::getName)
+                    .filter(name -> unlinkedDependencies.get(name) > 0)
+                    .collect(Collectors.joining(", ")));
+        }
+        return order;
+    }
+
+    Map<String, Descriptors.FileDescriptor> link(List<DescriptorProtos.FileDescriptorProto> linkOrder, @Nullable FileDescriptorIndex previous) {
+        Map<String, Descriptors.FileDescriptor> linked = new HashMap<>();
+        for (DescriptorProtos.FileDescriptorProto proto : linkOrder) {
+            Descriptors.FileDescriptor[] dependencies = proto.getDependencyList().stream()
+                    .map(linked::get)
+                    .toArray(Descriptors.FileDescriptor[]::new);
+            linked.put(proto.getName(), descriptorFromProto(proto, dependencies, previous));
+        }
+        return linked;
     }
 
+    /**
+     * Links each file as soon as all its dependencies are linked, so that independent files are linked in parallel.
+     */
     @SneakyThrows
-    Descriptors.FileDescriptor descriptorFromProto(DescriptorProtos.FileDescriptorProto descriptorProto) {
-        Descriptors.FileDescriptor[] fileDescriptors = descriptorProto.getDependencyList().stream()
-                .map(dependencyName -> {
-                    DescriptorProtos.FileDescriptorProto fileDescriptorProto = fileMap.get(dependencyName);
-                    if (fileDescriptorProto == null) {
-                        throw new IllegalArgumentException("Could not find dependency: " + dependencyName);
-                    }
-                    return descriptorFromProto(fileDescriptorProto);
-                })
-                .toArray(Descriptors.FileDescriptor[]::new);
-        return Descriptors.FileDescriptor.buildFrom(descriptorProto, fileDescriptors);
+    Map<String, Descriptors.FileDescriptor> linkInParallel(List<DescriptorProtos.FileDescriptorProto> linkOrder,
+                                                           @Nullable FileDescriptorIndex previous, Executor linkExecutor) {
+        Map<String, CompletableFuture<Descriptors.FileDescriptor>> futures = new HashMap<>();
+        for (DescriptorProtos.FileDescriptorProto proto : linkOrder) {
+            List<CompletableFuture<Descriptors.FileDescriptor>> dependencies = proto.getDependencyList().stream()
+                    .map(futures::get)
+                    .collect(Collectors.toList());
+            futures.put(proto.getName(), CompletableFuture.allOf(dependencies.toArray(new CompletableFuture<?>[0]))
+                    .thenApplyAsync(ignored -> descriptorFromProto(proto, dependencies.stream()
+                            .map(CompletableFuture::join)
+                            .toArray(Descriptors.FileDescriptor[]::new), previous), linkExecutor));
+        }
+
+        Map<String, Descriptors.FileDescriptor> linked = new HashMap<>();
+        try {
+            futures.forEach((name, future) -> linked.put(name, future.join()));
+        } catch (CompletionException e) {
+            // the exception of the first file that failed to link
+            throw e.getCause();
+        }
+        return linked;
+    }
+
+    @SneakyThrows
+    Descriptors.FileDescriptor descriptorFromProto(DescriptorProtos.FileDescriptorProto descriptorProto,
+                                                   Descriptors.FileDescriptor[] dependencies, @Nullable FileDescriptorIndex previous) {
+        Descriptors.FileDescriptor fileDescriptor = previous != null ? previous.reusableDescriptor(descriptorProto, dependencies) : null;
+        if (fileDescriptor == null) {
+            fileDescriptor = Descriptors.FileDescriptor.buildFrom(descriptorProto, dependencies);
+        }
+        return fileDescriptor;
+    }
+
+    /**
+     * @return the descriptor of this index for the same file, if it has the same proto and the same dependencies
+     */
+    @Nullable
+    private Descriptors.FileDescriptor reusableDescriptor(DescriptorProtos.FileDescriptorProto descriptorProto, Descriptors.FileDescriptor[] dependencies) {
+        Descriptors.FileDescriptor fileDescriptor = fileDescriptors.get(descriptorProto.getName());
+        if (fileDescriptor == null
+                || !fileMap.get(descriptorProto.getName()).equals(descriptorProto)
+                || !fileDescriptor.getDependencies().equals(Arrays.asList(dependencies))) {
+            return null;
+        }
+        return fileDescriptor;
     }
 
 
@@ -0,0 +1,200 @@
+package com.github.protobufx.spring.gateway.grpc.filter;
+
+import com.google.common.io.BaseEncoding;
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.ForwardingClientCall;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * The HTTP request headers that are sent to the backend as metadata, resolved once per filter config.
+ * A header name ending with {@code -bin} is a binary header, whose HTTP value is base64-encoded.
+ * A name with a {@code *} wildcard, e.g. {@code x-custom-*}, allows every request header it matches,
+ * except the headers that are set by the gRPC transport.
+ * The metadata is passed to the call in its {@link CallOptions}, and attached by a single shared interceptor,
+ * so that no interceptor nor channel wrapper is created per request.
+ */
+@Slf4j
+class HeaderPropagation {
+    static final CallOptions.Key<Metadata> HEADERS = CallOptions.Key.create("headers");
+    static final ClientInterceptor INTERCEPTOR = new HeadersInterceptor();
+    // bounds the keys that are remembered, since the names matched by a pattern come from the client
+    static final int MAX_CACHED_KEYS = 1024;
+
+    // the headers that a pattern does not match, since they are set by the transport or only relate to the HTTP hop
+    private static final Set<String> RESERVED_HEADERS = new HashSet<>(Arrays.asList(
+            "content-type", "content-length", "te", "host", "connection", "keep-alive", "upgrade",
+            "transfer-encoding", "proxy-connection", "user-agent", "accept-encoding"));
+
+    private final List<Map.Entry<String, Metadata.Key<?>>> headers = new ArrayList<>();
+    private final List<Pattern> patterns = new ArrayList<>();
+    private final Map<String, Optional<Metadata.Key<?>>> patternKeys = new ConcurrentHashMap<>();
+
+    HeaderPropagation(List<String> allowedHeaders) {
+        for (String header : allowedHeaders) {
+            String name = header.toLowerCase(Locale.ROOT);
+            if (name.contains("*")) {
+                patterns.add(Pattern.compile(Arrays.stream(name.split("\\*", -1))
+                        .map(Pattern::quote)
+                        .reduce((prefix, suffix) -> prefix + ".*" + suffix)
+                        .orElse("")));
+            } else {
+                headers.add(Map.entry(name, key(name)));
+            }
+        }
+    }
+
+    /**
+     * @return the metadata of the allowed request headers, or null if there is none
+     */
+    @Nullable
+    Metadata metadata(HttpHeaders requestHeaders) {
+        Metadata metadata = null;
+        for (Map.Entry<String, Metadata.Key<?>> header : headers) {
+            String value = requestHeaders.getFirst(header.getKey());
+            if (value != null) {
+                metadata = put(metadata, header.getValue(), value);
+            }
+        }
+        if (!patterns.isEmpty()) {
+            for (Map.Entry<String, List<String>> header : requestHeaders.headerSet()) {
+                Metadata.Key<?> key = patternKey(header.getKey());
+                if (key != null && !header.getValue().isEmpty()) {
+                    metadata = put(metadata, key, header.getValue().get(0));
+                }
+            }
+        }
+        return metadata;
+    }
+
+    /**
+     * @param metadata the metadata of the allowed request headers, or null if there is none
+     * @return the call options passing the metadata to {@link #INTERCEPTOR}
+     */
+    static CallOptions callOptions(CallOptions callOptions, @Nullable Metadata metadata) {
+        return metadata == null ? callOptions : callOptions.withOption(HEADERS, metadata);
+    }
+
+    /**
+     * The metadata as one line per value, sorted by header name, with binary values encoded in padded base64.
+     * Unlike {@link Metadata#toString()}, it does not depend on the order of the request headers.
+     */
+    static String canonical(@Nullable Metadata metadata) {
+        if (metadata == null) {
+            return "";
+        }
+        StringBuilder canonical = new StringBuilder();
+        for (String name : new TreeSet<>(metadata.keys())) {
+            if (name.endsWith(Metadata.BINARY_HEADER_SUFFIX)) {
+                for (byte[] value : metadata.getAll(Metadata.Key.of(name, Metadata.BINARY_BYTE_MARSHALLER))) {
+                    canonical.append(name).append(':').append(BaseEncoding.base64().encode(value)).append('\n');
+                }
+            } else {
+                for (String value : metadata.getAll(Metadata.Key.of(name, Metadata.ASCII_STRING_MARSHALLER))) {
+                    canonical.append(name).append(':').append(value.trim()).append('\n');
+                }
+            }
+        }
+        return canonical.toString();
+    }
+
+    /**
+     * Creates a call attaching the metadata of its call options, without wrapping the channel.
+     */
+    static <ReqT, RespT> ClientCall<ReqT, RespT> newCall(Channel channel, MethodDescriptor<ReqT, RespT> method, CallOptions callOptions) {
+        return INTERCEPTOR.interceptCall(method, callOptions, channel);
+    }
+
+    @Nullable
+    private Metadata.Key<?> patternKey(String header) {
+        String name = header.toLowerCase(Locale.ROOT);
+        Optional<Metadata.Key<?>> key = patternKeys.get(name);
+        if (key == null) {
+            try {
+                key = Optional.ofNullable(matches(name) ? key(name) : null);
+            } catch (IllegalArgumentException e) {
+                // a valid HTTP header name may still not be a valid metadata key
+                key = Optional.empty();
+            }
+            if (patternKeys.size() < MAX_CACHED_KEYS) {
+                patternKeys.putIfAbsent(name, key);
+            }
+        }
+        return key.orElse(null);
+    }
+
+    private boolean matches(String name) {
+        if (RESERVED_HEADERS.contains(name) || name.startsWith("grpc-") || name.startsWith(":")
+                || headers.stream().anyMatch(header -> header.getKey().equals(name))) {
+            return false;
+        }
+        for (Pattern pattern : patterns) {
+            if (pattern.matcher(name).matches()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Metadata.Key<?> key(String name) {
+        return name.endsWith(Metadata.BINARY_HEADER_SUFFIX)
+                ? Metadata.Key.of(name, Metadata.BINARY_BYTE_MARSHALLER)
+                : Metadata.Key.of(name, Metadata.ASCII_STRING_MARSHALLER);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Metadata put(@Nullable Metadata metadata, Metadata.Key<?> key, String value) {
+        Metadata result = metadata == null ? new Metadata() : metadata;
+        if (key.name().endsWith(Metadata.BINARY_HEADER_SUFFIX)) {
+            try {
+                // the value may be padded or not, like in gRPC over HTTP/2
+                byte[] bytes = BaseEncoding.base64().omitPadding().decode(value.trim().replace("=", ""));
+                result.put((Metadata.Key<byte[]>) key, bytes);
+            } catch (IllegalArgumentException e) {
+                log.debug("Ignoring the binary header {}, which is not base64-encoded", key.name());
+                return metadata;
+            }
+        } else {
+            result.put((Metadata.Key<String>) key, value);
+        }
+        return result;
+    }
+
+    /**
+     * Attaches the metadata of the call options to the headers of the call.
+     */
+    private static class HeadersInterceptor implements ClientInterceptor {
+        @Override
+        public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(MethodDescriptor<ReqT, RespT> method, CallOptions callOptions, Channel next) {
+            Metadata metadata = callOptions.getOption(HEADERS);
+            if (metadata == null) {
+                return next.newCall(method, callOptions);
+            }
+            return new ForwardingClientCall.SimpleForwardingClientCall<>(next.newCall(method, callOptions)) {
+                @Override
+                public void start(Listener<RespT> responseListener, Metadata headers) {
+                    headers.merge(metadata);
+                    super.start(responseListener, headers);
+                }
+            };
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.github.protobufx.spring.gateway.grpc.filter;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.io.ByteStreams;
 import com.google.protobuf.Descriptors;
 import com.google.protobuf.DynamicMessage;
 import com.google.protobuf.ExtensionRegistryLite;
@@ -8,7 +9,6 @@ import com.google.protobuf.InvalidProtocolBufferException;
 import com.google.protobuf.util.JsonFormat;
 import io.grpc.*;
 import io.grpc.stub.ClientCalls;
-import io.grpc.stub.MetadataUtils;
 import io.grpc.stub.StreamObserver;
 import io.netty.buffer.PooledByteBufAllocator;
 import lombok.AllArgsConstructor;
@@ -21,26 +21,37 @@ import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFac
 import org.springframework.cloud.gateway.route.Route;
 import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
 import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferLimitException;
 import org.springframework.core.io.buffer.DataBufferUtils;
 import org.springframework.core.io.buffer.NettyDataBufferFactory;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpRequestDecorator;
 import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
 import org.springframework.util.MultiValueMap;
+import org.springframework.web.server.ResponseStatusException;
 import org.springframework.web.server.ServerWebExchange;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.netty.Connection;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.List;
-import java.util.Optional;
-
-import static io.grpc.Metadata.ASCII_STRING_MARSHALLER;
+import java.util.concurrent.Executor;
+import java.util.function.BiFunction;
 
 /**
  * A factory class for creating gRPC gateway filters that convert JSON request bodies to gRPC messages.
@@ -54,133 +65,560 @@ public class HttpRuleJsonToGrpcGatewayFilterFactory extends AbstractGatewayFilte
     private static final NettyDataBufferFactory DATA_BUFFER_FACTORY = 
         new NettyDataBufferFactory(new PooledByteBufAllocator());
 
+    static final String APPLICATION_PROTOBUF_VALUE = "application/x-protobuf";
+    // the media types of binary protobuf bodies, which are sent and written as they are
+    static final List<MediaType> PROTOBUF_MEDIA_TYPES = List.of(
+            MediaType.parseMediaType(APPLICATION_PROTOBUF_VALUE), MediaType.parseMediaType("application/protobuf"));
+
     ChannelRepository channelRepository;
     ProtobufRepository protobufRepository;
     static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
 
     @Override
     public GatewayFilter apply(Config config) {
+        HeaderPropagation headerPropagation = new HeaderPropagation(config.getMappingAllowedHeaders());
+        ResponseCompression responseCompression = new ResponseCompression(DATA_BUFFER_FACTORY,
+                config.getResponseEncodings(), config.getResponseCompressionMinSize());
+        if (config.getGrpcCompression() != null
+                && CompressorRegistry.getDefaultInstance().lookupCompressor(config.getGrpcCompression()) == null) {
+            throw new IllegalArgumentException("Unsupported gRPC compression: " + config.getGrpcCompression());
+        }
+        CallDeadlines callDeadlines = new CallDeadlines(config.getDeadline(), config.getTimeoutHeader(), config.getMaxDeadline());
+        RequestCoalescer requestCoalescer = config.isCoalescingRequests() ? new RequestCoalescer() : null;
         return (exchange, chain) -> {
-            GrpcResponseDecorator modifiedResponse = new GrpcResponseDecorator(exchange, config);
+            GrpcResponseDecorator modifiedResponse = new GrpcResponseDecorator(exchange, config, headerPropagation,
+                    responseCompression, callDeadlines, requestCoalescer);
             ServerWebExchangeUtils.setAlreadyRouted(exchange);
             return modifiedResponse.writeWith(exchange.getRequest().getBody())
+                    .onErrorMap(HttpRuleJsonToGrpcGatewayFilterFactory::toResponseStatusException)
                     .then(chain.filter(exchange.mutate().response(modifiedResponse).build()));
         };
     }
 
+    /**
+     * Maps the gRPC statuses that an HTTP client must tell apart from a failure of the backend to their HTTP status,
+     * so that it can back off: RESOURCE_EXHAUSTED to 429, or 413 for a request body over the limit,
+     * and DEADLINE_EXCEEDED to 504. The gRPC status is kept as the cause, and any other error is left as is.
+     */
+    static Throwable toResponseStatusException(Throwable e) {
+        if (!(e instanceof StatusRuntimeException) && !(e instanceof StatusException)) {
+            return e;
+        }
+        Status status = Status.fromThrowable(e);
+        switch (status.getCode()) {
+            case RESOURCE_EXHAUSTED:
+                return new ResponseStatusException(status.getCause() instanceof DataBufferLimitException
+                        ? HttpStatus.PAYLOAD_TOO_LARGE : HttpStatus.TOO_MANY_REQUESTS, status.getDescription(), e);
+            case DEADLINE_EXCEEDED:
+                return new ResponseStatusException(HttpStatus.GATEWAY_TIMEOUT, status.getDescription(), e);
+            default:
+                return e;
+        }
+    }
+
     class GrpcResponseDecorator extends ServerHttpResponseDecorator {
         ServerWebExchange exchange;
         Config config;
+        HeaderPropagation headerPropagation;
+        ResponseCompression responseCompression;
+        CallDeadlines callDeadlines;
+        @Nullable
+        RequestCoalescer requestCoalescer;
+        // the content coding negotiated for the response, or null if it is not compressed
+        @Nullable
+        String contentEncoding;
+        // the deadline of the backend calls, or null if they have none
+        @Nullable
+        Deadline deadline;
+        // the metadata of the propagated headers, built once for the backend calls and the coalescing key
+        @Nullable
+        Metadata metadata;
+        // the permit of the concurrency limiter, or null if there is no limiter
+        @Nullable
+        AdaptiveConcurrencyLimiter.Permit permit;
 
-        GrpcResponseDecorator(ServerWebExchange exchange, Config config) {
+        GrpcResponseDecorator(ServerWebExchange exchange, Config config, HeaderPropagation headerPropagation,
+                              ResponseCompression responseCompression, CallDeadlines callDeadlines,
+                              @Nullable RequestCoalescer requestCoalescer) {
             super(exchange.getResponse());
             this.exchange = exchange;
             this.config = config;
+            this.headerPropagation = headerPropagation;
+            this.responseCompression = responseCompression;
+            this.callDeadlines = callDeadlines;
+            this.requestCoalescer = requestCoalescer;
         }
 
         @Override
         @Nonnull
         public Mono<Void> writeWith(@Nonnull Publisher<? extends DataBuffer> body) {
             exchange.getResponse().getHeaders().set(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE);
+            if (responseCompression.isEnabled()) {
+                exchange.getResponse().getHeaders().add(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+                contentEncoding = responseCompression.negotiate(exchange.getRequest().getHeaders());
+            }
             String routingUriAuthority = ((Route) exchange.getAttributes().get(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR))
                     .getUri()
                     .getAuthority();
 
             ExchangeRequest exchangeRequest = new ExchangeRequest(exchange.getRequest());
-            return protobufRepository.findMethodDescriptor(routingUriAuthority, exchangeRequest.method(), exchangeRequest.path())
-                    .map(methodDescriptor -> handleRequestAndCallBackend(methodDescriptor, exchangeRequest, routingUriAuthority))
-                    .orElse(Mono.error(getRuntimeException(Status.NOT_FOUND, String.format("Not found for %s: %s", exchangeRequest.method(), exchangeRequest.path()))));
+            try {
+                deadline = callDeadlines.deadline(exchangeRequest.getRequest().getHeaders());
+            } catch (IllegalArgumentException e) {
+                return Mono.error(getRuntimeException(Status.INVALID_ARGUMENT.withCause(e), "Invalid request timeout"));
+            }
+            metadata = headerPropagation.metadata(exchangeRequest.getRequest().getHeaders());
+            long lookupStart = System.nanoTime();
+            // the descriptors may have to be loaded from the backend, which must not block the event loop
+            return protobufRepository.findMethodDescriptorAsync(routingUriAuthority, exchangeRequest.method(), exchangeRequest.path())
+                    .doOnNext(found -> config.metrics.recordLookup(routingUriAuthority, System.nanoTime() - lookupStart, found.isPresent()))
+                    .flatMap(found -> found
+                            .map(methodDescriptor -> limitAndCallBackend(methodDescriptor, exchangeRequest, routingUriAuthority))
+                            .orElseGet(() -> Mono.error(getRuntimeException(Status.NOT_FOUND, String.format("Not found for %s: %s", exchangeRequest.method(), exchangeRequest.path())))));
+        }
 
+        /**
+         * Handles the request within the concurrency limit of the backend, which rejects it before its body is read
+         * if the backend already has as many calls in flight as its limit.
+         */
+        private Mono<Void> limitAndCallBackend(HttpRuleMethodDescriptor methodDescriptor, ExchangeRequest exchangeRequest, String routingUriAuthority) {
+            if (config.concurrencyLimiter == null) {
+                return handleRequestAndCallBackend(methodDescriptor, exchangeRequest, routingUriAuthority);
+            }
+            AdaptiveConcurrencyLimiter.Permit acquired = config.concurrencyLimiter.tryAcquire(routingUriAuthority);
+            if (acquired == null) {
+                return Mono.error(getRuntimeException(Status.RESOURCE_EXHAUSTED,
+                        String.format("Too many concurrent requests to %s", routingUriAuthority)));
+            }
+            acquired.streaming = methodDescriptor.isClientStreaming() || methodDescriptor.isServerStreaming();
+            permit = acquired;
+            return Mono.defer(() -> handleRequestAndCallBackend(methodDescriptor, exchangeRequest, routingUriAuthority))
+                    .doFinally(signal -> acquired.release());
         }
 
         private Mono<Void> handleRequestAndCallBackend(HttpRuleMethodDescriptor methodDescriptor, ExchangeRequest exchangeRequest, String routingUriAuthority) {
-            // Prepare Builder instance in advance
-            HttpRuleMethodDescriptor.DynamicMessageBuilder defaultBuilder = createMessageBuilder(methodDescriptor);
-            
-            return getDelegate().writeWith(exchangeRequest.body()
-                    .filter(dataBuffer -> dataBuffer.capacity() != 0)
+            TranscodingMetrics.MethodMeters meters = config.metrics.method(routingUriAuthority,
+                    methodDescriptor.toDynamicMessageMethodDescriptor().getFullMethodName());
+            boolean protobufRequest = exchangeRequest.protobufRequest();
+            boolean protobufResponse = exchangeRequest.protobufResponse(protobufRequest);
+            if (methodDescriptor.isClientStreaming() || methodDescriptor.isServerStreaming()) {
+                if (protobufRequest) {
+                    return Mono.error(getRuntimeException(Status.UNIMPLEMENTED, "Binary protobuf bodies are only supported by unary methods"));
+                }
+            } else if (protobufRequest || protobufResponse) {
+                return handleProtobufRequestAndCallBackend(methodDescriptor, exchangeRequest, routingUriAuthority, meters,
+                        protobufRequest, protobufResponse);
+            }
+            if (methodDescriptor.isClientStreaming()) {
+                return handleStreamingRequestAndCallBackend(methodDescriptor, exchangeRequest, routingUriAuthority, meters);
+            }
+            return callAndWriteResponse(methodDescriptor, parseRequestMessage(methodDescriptor, exchangeRequest, meters),
+                    exchangeRequest, routingUriAuthority, meters);
+        }
+
+        /**
+         * Parses the JSON request body and the path and query parameters into a single request message.
+         */
+        private Mono<DynamicMessage> parseRequestMessage(HttpRuleMethodDescriptor methodDescriptor, ExchangeRequest exchangeRequest,
+                                                         TranscodingMetrics.MethodMeters meters) {
+            return aggregateBody(exchangeRequest)
                     .<HttpRuleMethodDescriptor.DynamicMessageBuilder>handle((dataBuffer, sink) -> {
                         try {
+                            long decodeStart = System.nanoTime();
                             HttpRuleMethodDescriptor.DynamicMessageBuilder builder = createMessageBuilder(methodDescriptor);
-                            String bodyFiledName = methodDescriptor.getBodyFiledName();
-                            builder.setFields(bodyFiledName, dataBuffer);
+                            int size = dataBuffer.readableByteCount();
+                            if (size != 0) {
+                                String bodyFiledName = methodDescriptor.getBodyFiledName();
+                                builder.setFields(bodyFiledName, dataBuffer);
+                            }
+                            meters.recordDecode(System.nanoTime() - decodeStart, size);
                             sink.next(builder);
                         } catch (Exception e) {
                             sink.error(getRuntimeException(Status.INVALID_ARGUMENT.withCause(e), "Unable to parse request body"));
                         } finally {
                             // Ensure DataBuffer is always released to prevent memory leaks
-                            if (dataBuffer != null && dataBuffer.capacity() > 0) {
-                                try {
-                                    DataBufferUtils.release(dataBuffer);
-                                } catch (Exception e) {
-                                    log.warn("Failed to release DataBuffer: {}", e.getMessage(), e);
-                                }
+                            try {
+                                DataBufferUtils.release(dataBuffer);
+                            } catch (Exception e) {
+                                log.warn("Failed to release DataBuffer: {}", e.getMessage(), e);
                             }
                         }
                     })
-                    .defaultIfEmpty(defaultBuilder)
-                    .flatMap(builder -> Mono.create(sink -> {
+                    .switchIfEmpty(Mono.fromSupplier(() -> createMessageBuilder(methodDescriptor)))
+                    .<DynamicMessage>handle((builder, sink) -> {
                         try {
-                            if (methodDescriptor.isCustomHttpRule(exchangeRequest.method(), exchangeRequest.path())) {
-                                if (methodDescriptor.containsPathVariable()) {
-                                    MultiValueMap<String, String> variables = methodDescriptor.getVariables(exchangeRequest.path());
-                                    builder.setFields(variables);
-                                }
-                                builder.setFields(exchangeRequest.queryParams());
-                            }
+                            bindParameters(methodDescriptor, exchangeRequest, builder);
+                            sink.next(builder.build());
                         } catch (Exception e) {
                             sink.error(getRuntimeException(Status.INVALID_ARGUMENT.withCause(e), "Unable to parse request parameters"));
-                            return;
                         }
+                    });
+        }
+
+        /**
+         * Handles a unary method for a client sending or accepting binary protobuf.
+         * A binary request body is sent as is, merged with the path and query parameters if the rule binds any,
+         * and a binary response is written as it is received, so that neither is parsed nor printed as JSON.
+         */
+        private Mono<Void> handleProtobufRequestAndCallBackend(HttpRuleMethodDescriptor methodDescriptor, ExchangeRequest exchangeRequest,
+                                                               String routingUriAuthority, TranscodingMetrics.MethodMeters meters,
+                                                               boolean protobufRequest, boolean protobufResponse) {
+            BiFunction<byte[], StreamingResponseFormat, Flux<DataBuffer>> printer;
+            if (protobufResponse) {
+                getDelegate().getHeaders().set(HttpHeaders.CONTENT_TYPE, APPLICATION_PROTOBUF_VALUE);
+                printer = (message, format) -> {
+                    meters.recordResponseSize(message.length);
+                    return Flux.just(DATA_BUFFER_FACTORY.wrap(message));
+                };
+            } else {
+                printer = (message, format) -> printWireJson(methodDescriptor, message, format, meters);
+            }
+            if (!protobufRequest) {
+                return callAndWriteResponse(methodDescriptor, methodDescriptor.toRawResponseMethodDescriptor(), printer,
+                        parseRequestMessage(methodDescriptor, exchangeRequest, meters), exchangeRequest, routingUriAuthority, meters);
+            }
 
+            Mono<byte[]> requestMessage = aggregateBody(exchangeRequest)
+                    .map(dataBuffer -> {
                         try {
-                            Metadata metadata = new Metadata();
-                            for (String header : config.getMappingAllowedHeaders()) {
-                                exchangeRequest.header(header).ifPresent(value -> 
-                                    metadata.put(Metadata.Key.of(header, ASCII_STRING_MARSHALLER), value));
-                            }
-                            ClientInterceptor metadataInterceptor = MetadataUtils.newAttachHeadersInterceptor(metadata);
-                            Channel channel = ClientInterceptors.intercept(channelRepository.findChannel(routingUriAuthority), metadataInterceptor);
-                            ClientCall<DynamicMessage, DynamicMessage> call = channel.newCall(methodDescriptor.toDynamicMessageMethodDescriptor(), CallOptions.DEFAULT);
-                            ClientCalls.asyncUnaryCall(call, builder.build(), new StreamObserver<DynamicMessage>() {
-                                @Override
-                                public void onNext(DynamicMessage value) {
-                                    try {
-                                        String jsonString = config.jsonPrinter.print(value);
-                                        byte[] jsonBytes = jsonString.getBytes(StandardCharsets.UTF_8);
-                                        sink.success(DATA_BUFFER_FACTORY.wrap(jsonBytes));
-                                    } catch (InvalidProtocolBufferException e) {
-                                        sink.error(getRuntimeException(Status.INTERNAL.withCause(e), "Unable to serialize response"));
-                                    }
-                                }
-
-                                @Override
-                                public void onError(Throwable t) {
-                                    sink.error(t);
-                                }
-
-                                @Override
-                                public void onCompleted() {
-                                    // Handle case where stream completes without calling onNext
-                                    // Return empty response
-                                    try {
-                                        DataBuffer emptyBuffer = DATA_BUFFER_FACTORY.wrap(new byte[0]);
-                                        sink.success(emptyBuffer);
-                                    } catch (Exception e) {
-                                        sink.error(getRuntimeException(Status.INTERNAL.withCause(e), "Unable to create empty response"));
-                                    }
-                                }
-                            });
+                            byte[] body = new byte[dataBuffer.readableByteCount()];
+                            dataBuffer.read(body);
+                            return body;
+                        } finally {
+                            DataBufferUtils.release(dataBuffer);
+                        }
+                    })
+                    .defaultIfEmpty(new byte[0])
+                    .<byte[]>handle((body, sink) -> {
+                        try {
+                            long decodeStart = System.nanoTime();
+                            byte[] message = serializeRequestMessage(methodDescriptor, exchangeRequest, body);
+                            meters.recordDecode(System.nanoTime() - decodeStart, body.length);
+                            sink.next(message);
                         } catch (Exception e) {
-                            sink.error(getRuntimeException(Status.INTERNAL.withCause(e), "Unable to process request"));
+                            sink.error(getRuntimeException(Status.INVALID_ARGUMENT.withCause(e), "Unable to parse request body"));
                         }
-                    }))
-                    .cast(DataBuffer.class)
-                    .last());
+                    });
+            return callAndWriteResponse(methodDescriptor, methodDescriptor.toRawMethodDescriptor(), printer,
+                    requestMessage, exchangeRequest, routingUriAuthority, meters);
+        }
+
+        private byte[] serializeRequestMessage(HttpRuleMethodDescriptor methodDescriptor, ExchangeRequest exchangeRequest, byte[] body) throws IOException {
+            byte[] message = methodDescriptor.wrapSerializedBody(body);
+            if (!methodDescriptor.isCustomHttpRule(exchangeRequest.method(), exchangeRequest.path())
+                    || !methodDescriptor.containsPathVariable() && exchangeRequest.queryParams().isEmpty()) {
+                return message;
+            }
+            // the parameters are appended, so they are merged over the body like when the body is JSON
+            HttpRuleMethodDescriptor.DynamicMessageBuilder parameters = createMessageBuilder(methodDescriptor);
+            bindParameters(methodDescriptor, exchangeRequest, parameters);
+            byte[] serializedParameters = parameters.build().toByteArray();
+            byte[] merged = Arrays.copyOf(message, message.length + serializedParameters.length);
+            System.arraycopy(serializedParameters, 0, merged, message.length, serializedParameters.length);
+            return merged;
+        }
+
+        /**
+         * Joins the chunks of the request body into a single buffer so that it is parsed as one JSON document.
+         * With Netty buffers the chunks are composed into a {@code CompositeByteBuf} without copying.
+         */
+        private Mono<DataBuffer> aggregateBody(ExchangeRequest exchangeRequest) {
+            return DataBufferUtils.join(exchangeRequest.body(), config.getMaxRequestMessageSize())
+                    .onErrorMap(DataBufferLimitException.class, e -> getRuntimeException(Status.RESOURCE_EXHAUSTED.withCause(e),
+                            String.format("Request body exceeds %d bytes", config.getMaxRequestMessageSize())));
+        }
+
+        /**
+         * Handles client streaming and bidi streaming methods.
+         * The request body is newline-delimited JSON or a JSON array, and every element is sent
+         * as a request message as soon as it has been received.
+         */
+        private Mono<Void> handleStreamingRequestAndCallBackend(HttpRuleMethodDescriptor methodDescriptor, ExchangeRequest exchangeRequest,
+                                                                String routingUriAuthority, TranscodingMetrics.MethodMeters meters) {
+            JsonStreamTokenizer tokenizer = new JsonStreamTokenizer(config.getMaxRequestMessageSize());
+            Flux<DynamicMessage> requestMessages = exchangeRequest.body()
+                    .concatMapIterable(dataBuffer -> {
+                        try {
+                            return tokenizer.tokenize(dataBuffer);
+                        } finally {
+                            DataBufferUtils.release(dataBuffer);
+                        }
+                    })
+                    .concatWith(Mono.<byte[]>fromRunnable(tokenizer::complete))
+                    .map(element -> {
+                        long decodeStart = System.nanoTime();
+                        HttpRuleMethodDescriptor.DynamicMessageBuilder builder = createMessageBuilder(methodDescriptor);
+                        builder.setFields(methodDescriptor.getBodyFiledName(), new ByteArrayInputStream(element));
+                        bindParameters(methodDescriptor, exchangeRequest, builder);
+                        DynamicMessage message = builder.build();
+                        meters.recordDecode(System.nanoTime() - decodeStart, element.length);
+                        return message;
+                    })
+                    .onErrorMap(e -> !(e instanceof StatusRuntimeException),
+                            e -> getRuntimeException(Status.INVALID_ARGUMENT.withCause(e), "Unable to parse request body"));
+
+            return callAndWriteResponse(methodDescriptor, requestMessages, exchangeRequest, routingUriAuthority, meters);
+        }
+
+        /**
+         * Calls the backend and writes its response as JSON.
+         * With wireJsonPrinting the response messages are not parsed, and their JSON is printed from the wire format.
+         *
+         * @param requestMessages a single request message, or the request stream of a client streaming method
+         */
+        private Mono<Void> callAndWriteResponse(HttpRuleMethodDescriptor methodDescriptor, Publisher<DynamicMessage> requestMessages,
+                                                ExchangeRequest exchangeRequest, String routingUriAuthority,
+                                                TranscodingMetrics.MethodMeters meters) {
+            if (config.wireJsonPrinting) {
+                return callAndWriteResponse(methodDescriptor, methodDescriptor.toRawResponseMethodDescriptor(),
+                        (message, format) -> printWireJson(methodDescriptor, message, format, meters),
+                        requestMessages, exchangeRequest, routingUriAuthority, meters);
+            }
+            return callAndWriteResponse(methodDescriptor, methodDescriptor.toDynamicMessageMethodDescriptor(),
+                    (message, format) -> printJson(methodDescriptor, message, format, meters),
+                    requestMessages, exchangeRequest, routingUriAuthority, meters);
+        }
+
+        private <ReqT, RespT> Mono<Void> callAndWriteResponse(HttpRuleMethodDescriptor methodDescriptor,
+                                                              MethodDescriptor<ReqT, RespT> grpcMethodDescriptor,
+                                                              BiFunction<RespT, StreamingResponseFormat, Flux<DataBuffer>> printer,
+                                                              Publisher<ReqT> requestMessages,
+                                                              ExchangeRequest exchangeRequest, String routingUriAuthority,
+                                                              TranscodingMetrics.MethodMeters meters) {
+            if (!methodDescriptor.isClientStreaming() && !methodDescriptor.isServerStreaming()) {
+                if (requestCoalescer != null && methodDescriptor.isSafe()) {
+                    return writeBody(Mono.from(requestMessages)
+                            .flatMap(message -> requestCoalescer.execute(
+                                    coalescingKey(grpcMethodDescriptor, message, routingUriAuthority),
+                                    () -> callUnary(grpcMethodDescriptor, message, exchangeRequest, routingUriAuthority, meters)
+                                            .flatMapMany(response -> printer.apply(response, null))))
+                            .<DataBuffer>map(DATA_BUFFER_FACTORY::wrap)
+                            .flux());
+                }
+                return writeBody(Mono.from(requestMessages)
+                        .flatMap(message -> callUnary(grpcMethodDescriptor, message, exchangeRequest, routingUriAuthority, meters))
+                        .flatMapMany(message -> printer.apply(message, null)));
+            }
+
+            Flux<RespT> responseMessages = methodDescriptor.isClientStreaming()
+                    ? callStreaming(methodDescriptor, grpcMethodDescriptor, requestMessages, exchangeRequest, routingUriAuthority, meters)
+                    : Mono.from(requestMessages).flatMapMany(message ->
+                            callStreaming(methodDescriptor, grpcMethodDescriptor, Mono.just(message), exchangeRequest, routingUriAuthority, meters));
+            if (methodDescriptor.isServerStreaming()) {
+                return writeStreamingResponse(exchangeRequest, responseMessages, printer);
+            }
+            return writeBody(responseMessages
+                    .last()
+                    .flatMapMany(message -> printer.apply(message, null)));
+        }
+
+        /**
+         * The key of the identical requests, whose response is encoded into the content type that is already set.
+         */
+        private RequestCoalescer.Key coalescingKey(MethodDescriptor<?, ?> grpcMethodDescriptor, Object message,
+                                                   String routingUriAuthority) {
+            return RequestCoalescer.key(routingUriAuthority, grpcMethodDescriptor.getFullMethodName(), message,
+                    HeaderPropagation.canonical(metadata),
+                    String.valueOf(getDelegate().getHeaders().getContentType()));
+        }
+
+        private Mono<Void> writeBody(Flux<DataBuffer> body) {
+            return getDelegate().writeWith(responseCompression.compress(body, contentEncoding, getDelegate().getHeaders()));
+        }
+
+        private void bindParameters(HttpRuleMethodDescriptor methodDescriptor, ExchangeRequest exchangeRequest,
+                                    HttpRuleMethodDescriptor.DynamicMessageBuilder builder) {
+            if (methodDescriptor.isCustomHttpRule(exchangeRequest.method(), exchangeRequest.path())) {
+                if (methodDescriptor.containsPathVariable()) {
+                    methodDescriptor.bindPathVariables(exchangeRequest.path(), builder);
+                }
+                builder.setFields(exchangeRequest.queryParams());
+            }
+        }
+
+        /**
+         * Writes every response message as soon as it arrives, as newline-delimited JSON or server-sent events.
+         */
+        private <RespT> Mono<Void> writeStreamingResponse(ExchangeRequest exchangeRequest, Flux<RespT> responseMessages,
+                                                          BiFunction<RespT, StreamingResponseFormat, Flux<DataBuffer>> printer) {
+            StreamingResponseFormat format = StreamingResponseFormat.negotiate(exchangeRequest.accept());
+            getDelegate().getHeaders().set(HttpHeaders.CONTENT_TYPE, format.getContentType());
+            return getDelegate().writeAndFlushWith(responseCompression.compressStream(responseMessages
+                    .map(message -> printer.apply(message, format)), contentEncoding, getDelegate().getHeaders()));
+        }
+
+        /**
+         * Prints a response message as JSON, pretty printed for a unary response or on a single line for a response stream.
+         * With the streaming printer the JSON is written into pooled buffers of at most responseChunkSize bytes,
+         * and every buffer is emitted as it is requested.
+         *
+         * @param format the format of the response stream, or null for a unary response
+         */
+        private Flux<DataBuffer> printJson(HttpRuleMethodDescriptor methodDescriptor, DynamicMessage message,
+                                           @Nullable StreamingResponseFormat format, TranscodingMetrics.MethodMeters meters) {
+            if (!config.streamingJsonPrinting) {
+                try {
+                    long encodeStart = System.nanoTime();
+                    byte[] json = format == null
+                            ? config.jsonPrinter.print(message).getBytes(StandardCharsets.UTF_8)
+                            : format.encode(config.streamingJsonPrinter.print(message));
+                    meters.recordEncode(System.nanoTime() - encodeStart, json.length);
+                    return Flux.just(DATA_BUFFER_FACTORY.wrap(json));
+                } catch (InvalidProtocolBufferException e) {
+                    return Flux.error(getRuntimeException(Status.INTERNAL.withCause(e), "Unable to serialize response"));
+                }
+            }
+            StreamingJsonPrinter printer = createJsonPrinter(methodDescriptor, format);
+            return printChunked(format, outputStream -> printer.print(message, outputStream), meters);
+        }
+
+        /**
+         * Prints a serialized response message as JSON without parsing it, like {@link #printJson}.
+         */
+        private Flux<DataBuffer> printWireJson(HttpRuleMethodDescriptor methodDescriptor, byte[] message,
+                                               @Nullable StreamingResponseFormat format, TranscodingMetrics.MethodMeters meters) {
+            Descriptors.Descriptor type = methodDescriptor.getOutputType();
+            WireJsonPrinter printer = new WireJsonPrinter(createJsonPrinter(methodDescriptor, format));
+            return printChunked(format, outputStream -> printer.print(type, message, outputStream), meters);
+        }
+
+        private StreamingJsonPrinter createJsonPrinter(HttpRuleMethodDescriptor methodDescriptor, @Nullable StreamingResponseFormat format) {
+            return format == null
+                    ? new StreamingJsonPrinter(config.jsonPrinter, config.includingDefaultValueFields, true, methodDescriptor.plans)
+                    : new StreamingJsonPrinter(config.streamingJsonPrinter, config.includingDefaultValueFields, false, methodDescriptor.plans);
+        }
+
+        /**
+         * Prints a message into chunks, which are emitted one per request.
+         * The printers write a message in one go, so the message is printed on the first request and its chunks are
+         * queued until they are requested. The chunks that are not emitted are released on cancel or error.
+         */
+        private Flux<DataBuffer> printChunked(@Nullable StreamingResponseFormat format, JsonWriter writer,
+                                              TranscodingMetrics.MethodMeters meters) {
+            return Flux.<DataBuffer, PendingChunks>generate(PendingChunks::new, (pending, sink) -> {
+                if (!pending.printed) {
+                    pending.printed = true;
+                    long encodeStart = System.nanoTime();
+                    ChunkedByteBufOutputStream outputStream = new ChunkedByteBufOutputStream(
+                            DATA_BUFFER_FACTORY.getByteBufAllocator(), config.responseChunkSize,
+                            chunk -> pending.chunks.add(DATA_BUFFER_FACTORY.wrap(chunk)));
+                    try {
+                        if (format != null) {
+                            outputStream.write(format.getPrefix());
+                        }
+                        writer.write(outputStream);
+                        if (format != null) {
+                            outputStream.write(format.getSuffix());
+                        }
+                        outputStream.close();
+                        meters.recordEncode(System.nanoTime() - encodeStart, outputStream.size());
+                    } catch (IOException | RuntimeException e) {
+                        outputStream.discard();
+                        sink.error(getRuntimeException(Status.INTERNAL.withCause(e), "Unable to serialize response"));
+                        return pending;
+                    }
+                }
+                DataBuffer chunk = pending.chunks.poll();
+                if (chunk == null) {
+                    sink.complete();
+                } else {
+                    sink.next(chunk);
+                }
+                return pending;
+            }, PendingChunks::release).doOnDiscard(DataBuffer.class, DataBufferUtils::release);
+        }
+
+        private <ReqT, RespT> Mono<RespT> callUnary(MethodDescriptor<ReqT, RespT> grpcMethodDescriptor, ReqT message,
+                                                    ExchangeRequest exchangeRequest, String routingUriAuthority,
+                                                    TranscodingMetrics.MethodMeters meters) {
+            return Mono.create(sink -> {
+                try {
+                    long callStart = System.nanoTime();
+                    ClientCall<ReqT, RespT> call = newCall(grpcMethodDescriptor, exchangeRequest, routingUriAuthority);
+                    ClientCalls.asyncUnaryCall(call, message, new StreamObserver<RespT>() {
+                        @Override
+                        public void onNext(RespT value) {
+                            recordCall(meters, System.nanoTime() - callStart, Status.Code.OK);
+                            sink.success(value);
+                        }
+
+                        @Override
+                        public void onError(Throwable t) {
+                            recordCall(meters, System.nanoTime() - callStart, Status.fromThrowable(t).getCode());
+                            sink.error(t);
+                        }
+
+                        @Override
+                        public void onCompleted() {
+                            // Handle case where stream completes without calling onNext
+                            // Return empty response, the call is recorded by onNext otherwise
+                            sink.success();
+                        }
+                    });
+                } catch (Exception e) {
+                    sink.error(getRuntimeException(Status.INTERNAL.withCause(e), "Unable to process request"));
+                }
+            });
+        }
+
+        /**
+         * Calls a streaming method. The gRPC flow control follows the demand in both directions,
+         * so a slow HTTP client throttles the backend stream instead of the gateway buffering it.
+         */
+        private <ReqT, RespT> Flux<RespT> callStreaming(HttpRuleMethodDescriptor methodDescriptor,
+                                                        MethodDescriptor<ReqT, RespT> grpcMethodDescriptor,
+                                                        Publisher<ReqT> requestMessages,
+                                                        ExchangeRequest exchangeRequest, String routingUriAuthority,
+                                                        TranscodingMetrics.MethodMeters meters) {
+            return Flux.defer(() -> {
+                        long callStart = System.nanoTime();
+                        return StreamingClientCalls.call(
+                                        newCall(grpcMethodDescriptor, exchangeRequest, routingUriAuthority),
+                                        requestMessages,
+                                        methodDescriptor.isServerStreaming())
+                                .doOnComplete(() -> recordCall(meters, System.nanoTime() - callStart, Status.Code.OK))
+                                .doOnError(e -> recordCall(meters, System.nanoTime() - callStart, Status.fromThrowable(e).getCode()))
+                                .doOnCancel(() -> recordCall(meters, System.nanoTime() - callStart, Status.Code.CANCELLED));
+                    })
+                    .onErrorMap(e -> !(e instanceof StatusRuntimeException) && !(e instanceof StatusException),
+                            e -> getRuntimeException(Status.INTERNAL.withCause(e), "Unable to process request"));
+        }
+
+        /**
+         * Records the outcome of the backend call in the meters, and in the permit that adapts the concurrency limit.
+         */
+        private void recordCall(TranscodingMetrics.MethodMeters meters, long nanos, Status.Code code) {
+            meters.recordCall(nanos, code);
+            if (permit != null) {
+                // the duration of a stream depends on its messages rather than on the load of the backend
+                permit.record(permit.streaming ? 0 : nanos, code);
+            }
+        }
+
+        private <ReqT, RespT> ClientCall<ReqT, RespT> newCall(MethodDescriptor<ReqT, RespT> grpcMethodDescriptor,
+                                                              ExchangeRequest exchangeRequest, String routingUriAuthority) {
+            CallOptions callOptions = HeaderPropagation.callOptions(CallOptions.DEFAULT, metadata);
+            if (config.grpcCompression != null) {
+                callOptions = callOptions.withCompression(config.grpcCompression);
+            }
+            if (deadline != null) {
+                callOptions = callOptions.withDeadline(deadline);
+            }
+            if (config.eventLoopCallbacks) {
+                Executor eventLoop = exchangeRequest.eventLoop();
+                if (eventLoop != null) {
+                    callOptions = callOptions.withExecutor(eventLoop);
+                }
+            }
+            return HeaderPropagation.newCall(channelRepository.findChannel(routingUriAuthority), grpcMethodDescriptor, callOptions);
         }
 
         private HttpRuleMethodDescriptor.DynamicMessageBuilder createMessageBuilder(HttpRuleMethodDescriptor methodDescriptor) {
-            return new HttpRuleMethodDescriptor.DynamicMessageBuilder(methodDescriptor.getInputType(), config.jsonParser, OBJECT_MAPPER);
+            StreamingJsonParser streamingParser = config.streamingJsonParsing
+                    ? new StreamingJsonParser(config.jsonParser, config.ignoringUnknownFields, methodDescriptor.plans)
+                    : null;
+            return new HttpRuleMethodDescriptor.DynamicMessageBuilder(methodDescriptor.getInputType(), config.jsonParser, OBJECT_MAPPER,
+                    streamingParser, methodDescriptor.plans);
         }
 
         private StatusRuntimeException getRuntimeException(Status status, String message) {
@@ -212,16 +650,120 @@ public class HttpRuleJsonToGrpcGatewayFilterFactory extends AbstractGatewayFilte
         }
     }
 
+    /**
+     * Leaves serialized messages as they are, for the responses that are printed from their wire format.
+     */
+    static class ByteArrayMarshaller implements MethodDescriptor.Marshaller<byte[]> {
+        static final ByteArrayMarshaller INSTANCE = new ByteArrayMarshaller();
+
+        @Override
+        public byte[] parse(InputStream inputStream) {
+            try {
+                return ByteStreams.toByteArray(inputStream);
+            } catch (IOException e) {
+                throw new RuntimeException("Unable to read the supplied input stream", e);
+            }
+        }
+
+        @Override
+        public InputStream stream(byte[] value) {
+            return new ByteArrayInputStream(value);
+        }
+    }
+
+    /**
+     * The chunks of a printed message that have not been emitted yet.
+     */
+    private static class PendingChunks {
+        final Deque<DataBuffer> chunks = new ArrayDeque<>();
+        boolean printed;
+
+        void release() {
+            DataBuffer chunk;
+            while ((chunk = chunks.poll()) != null) {
+                DataBufferUtils.release(chunk);
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface JsonWriter {
+        void write(OutputStream outputStream) throws IOException;
+    }
+
     @Data
     public static class Config {
+        // the request headers sent to the backend as metadata, which may be patterns like x-custom-*,
+        // and binary headers ending with -bin, whose values are base64-encoded
         List<String> mappingAllowedHeaders;
         JsonFormat.Parser jsonParser;
         JsonFormat.Printer jsonPrinter;
+        // prints each message of a streaming response on a single line
+        JsonFormat.Printer streamingJsonPrinter;
+        // the maximum size of the JSON of a single request message, which is also the limit of a unary request body
+        int maxRequestMessageSize;
+        // parses request bodies with a Jackson streaming parser instead of jsonParser,
+        // which is then only used for Any, Struct, Value and ListValue
+        boolean streamingJsonParsing;
+        // whether the streaming parser ignores unknown fields and enum values, like jsonParser does by default
+        boolean ignoringUnknownFields;
+        // prints responses with a Jackson generator into pooled buffers instead of jsonPrinter and streamingJsonPrinter,
+        // which are then only used for Any, Struct, Value and ListValue
+        boolean streamingJsonPrinting;
+        // whether the streaming printer prints fields without presence that have their default value, like jsonPrinter does
+        boolean includingDefaultValueFields;
+        // the maximum size of a response buffer written by the streaming printer
+        int responseChunkSize;
+        // prints responses from their wire format without parsing them into DynamicMessages, which saves
+        // the allocations of large responses; the streaming printer is still used for well-known types
+        boolean wireJsonPrinting;
+        // runs the callbacks of the backend calls on the event loop of the HTTP request instead of the executor
+        // of the channel, which saves the thread hops when the channels share the event loops of the gateway
+        // and use a direct executor, see PooledChannelRepository.Config#directExecutor
+        boolean eventLoopCallbacks;
+        // the meters of the stages of the requests, which record nothing by default
+        TranscodingMetrics metrics;
+        // the content codings of the responses in order of preference, among gzip, deflate, br and zstd,
+        // the last two only when brotli4j and zstd-jni are on the classpath; none by default
+        List<String> responseEncodings;
+        // the unary responses smaller than this are not compressed, since the compression would not pay off
+        int responseCompressionMinSize;
+        // the compression of the request messages sent to the backend, e.g. gzip, or null to send them uncompressed;
+        // the backend may compress its responses with any compression that the channel accepts
+        @Nullable
+        String grpcCompression;
+        // the deadline of the backend calls, from the time the request is received, or null for none
+        @Nullable
+        Duration deadline;
+        // the request header with a timeout overriding the deadline, e.g. grpc-timeout, whose value is
+        // in the grpc-timeout format like 100m or 5S, or a number of milliseconds; null to ignore the timeouts of the clients
+        @Nullable
+        String timeoutHeader;
+        // the maximum timeout that a client can set with the timeout header, or null for no maximum
+        @Nullable
+        Duration maxDeadline;
+        // limits the concurrent calls to each backend, and rejects the requests beyond the limits with RESOURCE_EXHAUSTED,
+        // i.e. 429 Too Many Requests; null for no limit
+        @Nullable
+        AdaptiveConcurrencyLimiter concurrencyLimiter;
+        // coalesces the concurrent identical requests to unary methods without side effects, i.e. mapped to a GET
+        // or with the NO_SIDE_EFFECTS idempotency level, into a single backend call whose response is shared
+        boolean coalescingRequests;
 
         public Config() {
             mappingAllowedHeaders = Collections.emptyList();
             jsonParser = JsonFormat.parser().ignoringUnknownFields();
             jsonPrinter = JsonFormat.printer().includingDefaultValueFields();
+            streamingJsonPrinter = JsonFormat.printer().includingDefaultValueFields().omittingInsignificantWhitespace();
+            maxRequestMessageSize = 4 * 1024 * 1024;
+            streamingJsonParsing = true;
+            ignoringUnknownFields = true;
+            streamingJsonPrinting = true;
+            includingDefaultValueFields = true;
+            responseChunkSize = 8 * 1024;
+            metrics = TranscodingMetrics.NOOP;
+            responseEncodings = Collections.emptyList();
+            responseCompressionMinSize = 1024;
         }
     }
 
@@ -249,10 +791,47 @@ public class HttpRuleJsonToGrpcGatewayFilterFactory extends AbstractGatewayFilte
             return request.getQueryParams();
         }
 
-        public Optional<String> header(String header) {
-            List<String> headers = request.getHeaders().get(header);
-            return (headers == null || headers.isEmpty())
-                    ? Optional.empty() : Optional.of(headers.get(0));
+        List<MediaType> accept() {
+            return request.getHeaders().getAccept();
+        }
+
+        boolean protobufRequest() {
+            MediaType contentType = request.getHeaders().getContentType();
+            return contentType != null && isProtobuf(contentType);
+        }
+
+        /**
+         * @return whether the client accepts binary protobuf rather than JSON,
+         * or sends binary protobuf without accepting a specific type
+         */
+        boolean protobufResponse(boolean protobufRequest) {
+            boolean specific = false;
+            for (MediaType mediaType : accept()) {
+                if (isProtobuf(mediaType) && mediaType.getQualityValue() > 0) {
+                    return true;
+                }
+                specific |= !mediaType.isWildcardType();
+            }
+            return protobufRequest && !specific;
+        }
+
+        private static boolean isProtobuf(MediaType mediaType) {
+            for (MediaType protobufMediaType : PROTOBUF_MEDIA_TYPES) {
+                if (protobufMediaType.equalsTypeAndSubtype(mediaType)) {
+                    return true;
+                }
+            }
+            return false;
         }
+
+        /**
+         * @return the event loop of the connection of the request, or null if it is not served by Reactor Netty
+         */
+        @Nullable
+        Executor eventLoop() {
+            Object nativeRequest = ServerHttpRequestDecorator.getNativeRequest(request);
+            return nativeRequest instanceof Connection ? ((Connection) nativeRequest).channel().eventLoop() : null;
+        }
+
     }
 }
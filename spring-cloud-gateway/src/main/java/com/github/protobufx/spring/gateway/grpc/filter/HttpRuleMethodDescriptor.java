@@ -3,6 +3,8 @@ package com.github.protobufx.spring.gateway.grpc.filter;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.api.HttpRule;
 import com.google.common.base.Strings;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.DescriptorProtos;
 import com.google.protobuf.Descriptors;
 import com.google.protobuf.DynamicMessage;
 import com.google.protobuf.util.JsonFormat;
@@ -14,16 +16,16 @@ import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.core.io.buffer.DataBuffer;
 import org.springframework.http.server.PathContainer;
-import org.springframework.util.LinkedMultiValueMap;
 import org.springframework.util.MultiValueMap;
 import org.springframework.web.util.pattern.PathPattern;
 import org.springframework.web.util.pattern.PathPatternParser;
 
 import javax.annotation.Nullable;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.util.Arrays;
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.regex.Pattern;
@@ -45,18 +47,57 @@ import static java.nio.charset.StandardCharsets.UTF_8;
  * RESTful interfaces for gRPC services.
  */
 @Slf4j
-@AllArgsConstructor
 public class HttpRuleMethodDescriptor {
 
     static final PathPatternParser PATTERN_PARSER = new PathPatternParser();
-    static final Pattern PATH_VARIABLE = Pattern.compile("\\{([^}]+)\\}");
-    Descriptors.MethodDescriptor methodDescriptor;
+    static final Pattern PATH_VARIABLE = Pattern.compile("\\{([^}=]+)(=([^}]*))?\\}");
+    final Descriptors.MethodDescriptor methodDescriptor;
     @Nullable
-    HttpRule httpRule;
+    final HttpRule httpRule;
 
-    public String getPathPattern() {
-        return httpRule == null
+    // precompiled when the descriptor is indexed, so that the request path only matches and sets fields
+    final String method;
+    final String pathPattern;
+    @Nullable
+    final PathPattern springPathPattern;
+    final Map<String, PathVariable> springToHttpRuleVariables;
+    // the plans of the request and response types, dropped with this descriptor
+    final TranscodingPlans plans = new TranscodingPlans();
+    // the field that the body is mapped to, null when the rule has no body or the whole message is the body
+    @Nullable
+    final Descriptors.FieldDescriptor bodyField;
+    final MethodDescriptor<DynamicMessage, DynamicMessage> dynamicMessageMethodDescriptor;
+    final MethodDescriptor<DynamicMessage, byte[]> rawResponseMethodDescriptor;
+    final MethodDescriptor<byte[], byte[]> rawMethodDescriptor;
+
+    public HttpRuleMethodDescriptor(Descriptors.MethodDescriptor methodDescriptor, @Nullable HttpRule httpRule) {
+        this.methodDescriptor = methodDescriptor;
+        this.httpRule = httpRule;
+        this.method = httpRule == null
+                ? "POST" : httpRule.getPatternCase().toString();
+        this.pathPattern = httpRule == null
                 ? getDefaultPath() : getHttpPath();
+        this.springToHttpRuleVariables = new LinkedHashMap<>();
+        this.springPathPattern = compileSpringPathPattern();
+        this.bodyField = resolveBodyField();
+        this.dynamicMessageMethodDescriptor = MethodDescriptor.<DynamicMessage, DynamicMessage>newBuilder()
+                .setType(getMethodType())
+                .setFullMethodName(getDefaultPath())
+                .setRequestMarshaller(new HttpRuleJsonToGrpcGatewayFilterFactory.DynamicMessageMarshaller(getInputType()))
+                .setResponseMarshaller(new HttpRuleJsonToGrpcGatewayFilterFactory.DynamicMessageMarshaller(getOutputType()))
+                .build();
+        this.rawResponseMethodDescriptor = dynamicMessageMethodDescriptor.toBuilder(
+                        dynamicMessageMethodDescriptor.getRequestMarshaller(),
+                        HttpRuleJsonToGrpcGatewayFilterFactory.ByteArrayMarshaller.INSTANCE)
+                .build();
+        this.rawMethodDescriptor = dynamicMessageMethodDescriptor.toBuilder(
+                        HttpRuleJsonToGrpcGatewayFilterFactory.ByteArrayMarshaller.INSTANCE,
+                        HttpRuleJsonToGrpcGatewayFilterFactory.ByteArrayMarshaller.INSTANCE)
+                .build();
+    }
+
+    public String getPathPattern() {
+        return pathPattern;
     }
 
     public String getHttpPath() {
@@ -80,12 +121,37 @@ public class HttpRuleMethodDescriptor {
     }
 
     public String getMethod() {
-        return httpRule == null
-                ? "POST" : httpRule.getPatternCase().toString();
+        return method;
     }
 
     public boolean containsPathVariable() {
-        return getPathPattern().contains("{");
+        return !springToHttpRuleVariables.isEmpty();
+    }
+
+    boolean isServerStreaming() {
+        return methodDescriptor.isServerStreaming();
+    }
+
+    boolean isClientStreaming() {
+        return methodDescriptor.isClientStreaming();
+    }
+
+    /**
+     * @return whether the method has no side effects, since it is mapped to a GET,
+     * or its idempotency_level option is NO_SIDE_EFFECTS
+     */
+    boolean isSafe() {
+        return httpRule != null && httpRule.getPatternCase() == HttpRule.PatternCase.GET
+                || methodDescriptor.getOptions().getIdempotencyLevel() == DescriptorProtos.MethodOptions.IdempotencyLevel.NO_SIDE_EFFECTS;
+    }
+
+    MethodDescriptor.MethodType getMethodType() {
+        if (isClientStreaming()) {
+            return isServerStreaming()
+                    ? MethodDescriptor.MethodType.BIDI_STREAMING : MethodDescriptor.MethodType.CLIENT_STREAMING;
+        }
+        return isServerStreaming()
+                ? MethodDescriptor.MethodType.SERVER_STREAMING : MethodDescriptor.MethodType.UNARY;
     }
 
     String getDefaultPath() {
@@ -108,39 +174,96 @@ public class HttpRuleMethodDescriptor {
         return httpRule == null ? "" : httpRule.getBody();
     }
 
-    MultiValueMap<String, String> getVariables(String requestPath) {
-        String httpRuleDefinitionPathPattern = getPathPattern();
-        Map<String, String> springToHttpRuleVariables = new HashMap<>();
-        java.util.regex.Matcher matcher = PATH_VARIABLE.matcher(httpRuleDefinitionPathPattern);
-        while (matcher.find()) {
-            String variable = matcher.group(1);
-            String[] parts = variable.split("\\.");
-            String key = parts[parts.length - 1];
-            springToHttpRuleVariables.put(key, variable);
-        }
-        PathPattern.PathMatchInfo pathMatchInfo = PATTERN_PARSER.parse(httpRuleDefinitionPathPattern.replaceAll("\\{[^.}]+\\.", "{"))
-                .matchAndExtract(getPathContainer(requestPath));
+    /**
+     * Extracts the path variables of the request path and sets them to the message
+     * through the field descriptors resolved when this descriptor was indexed.
+     */
+    void bindPathVariables(String requestPath, DynamicMessageBuilder builder) {
+        PathPattern.PathMatchInfo pathMatchInfo = matchAndExtract(requestPath);
         if (pathMatchInfo == null) {
-            return new LinkedMultiValueMap<>();
+            return;
         }
-        MultiValueMap<String, String> result = new LinkedMultiValueMap<>();
         for (Map.Entry<String, String> entry : pathMatchInfo.getUriVariables().entrySet()) {
-            result.add(springToHttpRuleVariables.get(entry.getKey()), entry.getValue());
+            PathVariable variable = springToHttpRuleVariables.get(entry.getKey());
+            String value = variable.value(entry.getValue());
+            if (variable.binding == null || Strings.isNullOrEmpty(value)) {
+                continue;
+            }
+            builder.setField(variable.binding, Collections.singletonList(value));
         }
-        return result;
     }
 
-    boolean matches(String method, String path) {
-        return getMethod().equals(method)
-                && convertHttpRuleDefinitoinToSpringPathPattern().matches(getPathContainer(path));
+    @Nullable
+    private PathPattern.PathMatchInfo matchAndExtract(String requestPath) {
+        return springPathPattern == null
+                ? null : springPathPattern.matchAndExtract(getPathContainer(requestPath));
     }
 
     private PathContainer getPathContainer(String path) {
         return PathContainer.parsePath(path);
     }
 
-    private PathPattern convertHttpRuleDefinitoinToSpringPathPattern() {
-        return PATTERN_PARSER.parse(getPathPattern().replaceAll("\\{[^.}]+\\.", "{"));
+    /**
+     * Converts the HttpRule path template to a Spring path pattern.
+     * Variables are renamed to positional names (e.g. {@code {sound.sound_id}} to {@code {v0}}),
+     * and {@code {var=**}} is converted to the capture-the-rest form {@code {*v0}}.
+     * Returns null when the template has no variables, or uses a variable sub-pattern that Spring can not express.
+     */
+    @Nullable
+    private PathPattern compileSpringPathPattern() {
+        StringBuilder springPattern = new StringBuilder();
+        java.util.regex.Matcher matcher = PATH_VARIABLE.matcher(pathPattern);
+        int last = 0;
+        while (matcher.find()) {
+            String fieldPath = matcher.group(1);
+            String subPattern = matcher.group(3);
+            String springName = "v" + springToHttpRuleVariables.size();
+            springPattern.append(pathPattern, last, matcher.start());
+            if (subPattern == null || subPattern.equals("*")) {
+                springPattern.append('{').append(springName).append('}');
+            } else if (subPattern.equals("**")) {
+                springPattern.append("{*").append(springName).append('}');
+            } else {
+                log.warn("Unsupported path variable, ignored: {} {}", method, pathPattern);
+                springToHttpRuleVariables.clear();
+                return null;
+            }
+            springToHttpRuleVariables.put(springName,
+                    new PathVariable(fieldPath, "**".equals(subPattern), plans.of(getInputType()).binding(fieldPath)));
+            last = matcher.end();
+        }
+        if (springToHttpRuleVariables.isEmpty()) {
+            return null;
+        }
+        springPattern.append(pathPattern, last, pathPattern.length());
+        try {
+            return PATTERN_PARSER.parse(springPattern.toString());
+        } catch (Exception e) {
+            log.warn("Unable to parse path pattern, ignored: {} {}: {}", method, pathPattern, e.getMessage());
+            springToHttpRuleVariables.clear();
+            return null;
+        }
+    }
+
+    /**
+     * Resolves the field that the body is mapped to, in lowerCamelCase or in snake_case.
+     *
+     * @throws IllegalArgumentException if the request message has no such field
+     */
+    @Nullable
+    private Descriptors.FieldDescriptor resolveBodyField() {
+        String bodyFieldName = getBodyFiledName();
+        if (bodyFieldName.isEmpty() || bodyFieldName.equals("*")) {
+            return null;
+        }
+        Descriptors.FieldDescriptor field = plans.of(getInputType()).field(bodyFieldName);
+        if (field == null) {
+            field = getInputType().findFieldByName(LOWER_CAMEL.to(LOWER_UNDERSCORE, bodyFieldName));
+        }
+        if (field == null) {
+            throw new IllegalArgumentException("Body field not found: " + bodyFieldName + " in " + getInputType().getFullName());
+        }
+        return field;
     }
 
     boolean isCustomHttpRule(String method, String path) {
@@ -148,12 +271,58 @@ public class HttpRuleMethodDescriptor {
     }
 
     MethodDescriptor<DynamicMessage, DynamicMessage> toDynamicMessageMethodDescriptor() {
-        return MethodDescriptor.<DynamicMessage, DynamicMessage>newBuilder()
-                .setType(MethodDescriptor.MethodType.UNARY)
-                .setFullMethodName(getDefaultPath())
-                .setRequestMarshaller(new HttpRuleJsonToGrpcGatewayFilterFactory.DynamicMessageMarshaller(getInputType()))
-                .setResponseMarshaller(new HttpRuleJsonToGrpcGatewayFilterFactory.DynamicMessageMarshaller(getOutputType()))
-                .build();
+        return dynamicMessageMethodDescriptor;
+    }
+
+    /**
+     * The same method with the serialized response message left as is, to be transcoded from its wire format.
+     */
+    MethodDescriptor<DynamicMessage, byte[]> toRawResponseMethodDescriptor() {
+        return rawResponseMethodDescriptor;
+    }
+
+    /**
+     * The same method with both messages left serialized, for the clients sending and accepting binary protobuf.
+     */
+    MethodDescriptor<byte[], byte[]> toRawMethodDescriptor() {
+        return rawMethodDescriptor;
+    }
+
+    /**
+     * Wraps a serialized body into a serialized request message, as the field that the body is mapped to.
+     * Since serialized messages are merged when they are concatenated, the parameters can then be appended.
+     *
+     * @return the body as is when the whole request message is the body, or nothing if the rule has no body
+     * @throws IllegalArgumentException if the body field cannot hold a serialized message
+     */
+    byte[] wrapSerializedBody(byte[] body) throws IOException {
+        Descriptors.FieldDescriptor field = bodyField;
+        if (field == null) {
+            return getBodyFiledName().isEmpty() ? new byte[0] : body;
+        }
+        // a scalar or repeated body field is still valid for JSON bodies, so it is only rejected here
+        if (field.isRepeated() || field.getJavaType() != Descriptors.FieldDescriptor.JavaType.MESSAGE
+                && field.getJavaType() != Descriptors.FieldDescriptor.JavaType.BYTE_STRING) {
+            throw new IllegalArgumentException("The body field cannot be set from a binary body: " + getBodyFiledName());
+        }
+        byte[] message = new byte[CodedOutputStream.computeByteArraySize(field.getNumber(), body)];
+        CodedOutputStream outputStream = CodedOutputStream.newInstance(message);
+        outputStream.writeByteArray(field.getNumber(), body);
+        outputStream.checkNoSpaceLeft();
+        return message;
+    }
+
+    @AllArgsConstructor
+    static class PathVariable {
+        final String fieldPath;
+        final boolean catchAll;
+        @Nullable
+        final TranscodingPlan.FieldBinding binding;
+
+        String value(String extracted) {
+            // Spring captures the rest of the path including the leading separator
+            return catchAll && extracted.startsWith("/") ? extracted.substring(1) : extracted;
+        }
     }
 
     static class DynamicMessageBuilder {
@@ -161,12 +330,27 @@ public class HttpRuleMethodDescriptor {
         DynamicMessage.Builder builder;
         JsonFormat.Parser parser;
         ObjectMapper objectMapper;
+        @Nullable
+        StreamingJsonParser streamingParser;
+        TranscodingPlans plans;
 
         DynamicMessageBuilder(Descriptors.Descriptor descriptor, JsonFormat.Parser parser, ObjectMapper objectMapper) {
+            this(descriptor, parser, objectMapper, null);
+        }
+
+        DynamicMessageBuilder(Descriptors.Descriptor descriptor, JsonFormat.Parser parser, ObjectMapper objectMapper,
+                              @Nullable StreamingJsonParser streamingParser) {
+            this(descriptor, parser, objectMapper, streamingParser, new TranscodingPlans());
+        }
+
+        DynamicMessageBuilder(Descriptors.Descriptor descriptor, JsonFormat.Parser parser, ObjectMapper objectMapper,
+                              @Nullable StreamingJsonParser streamingParser, TranscodingPlans plans) {
             this.descriptor = descriptor;
             this.builder = DynamicMessage.newBuilder(descriptor);
             this.parser = parser;
             this.objectMapper = objectMapper;
+            this.streamingParser = streamingParser;
+            this.plans = plans;
         }
 
         DynamicMessage build() {
@@ -174,8 +358,14 @@ public class HttpRuleMethodDescriptor {
         }
 
         void setFields(String filedName, DataBuffer dataBuffer) {
-            try (InputStream inputStream = dataBuffer.asInputStream()) {
-                if (filedName.equals("*")) {
+            setFields(filedName, dataBuffer.asInputStream());
+        }
+
+        void setFields(String filedName, InputStream body) {
+            try (InputStream inputStream = body) {
+                if (streamingParser != null) {
+                    mergeStreaming(filedName, inputStream);
+                } else if (filedName.equals("*")) {
                     parser.merge(new InputStreamReader(inputStream, UTF_8), builder);
                 } else {
                     // support only the first layer of the field.
@@ -196,62 +386,56 @@ public class HttpRuleMethodDescriptor {
             }
         }
 
+        private void mergeStreaming(String filedName, InputStream inputStream) throws IOException {
+            if (filedName.equals("*")) {
+                streamingParser.merge(inputStream, builder);
+            } else {
+                // support only the first layer of the field.
+                Descriptors.FieldDescriptor field = plans.of(descriptor).field(filedName);
+                if (field == null) {
+                    throw new IllegalArgumentException("Unknown body field: " + filedName);
+                }
+                streamingParser.mergeField(inputStream, field, builder);
+            }
+        }
+
         void setFields(MultiValueMap<String, String> variables) {
+            TranscodingPlan plan = plans.of(descriptor);
             variables.forEach((key, values) -> {
                 if (values.stream().allMatch(Strings::isNullOrEmpty)) {
                     return;
                 }
-                String[] fieldNames = key.split("\\.");
-                if (fieldNames.length != 0) {
-                    Descriptors.FieldDescriptor fieldDescriptor = descriptor.findFieldByName(convertCamelToSnake(fieldNames[0]));
-                    if (fieldDescriptor != null) {
-                        setField(builder, fieldDescriptor, fieldNames, values);
-                    }
+                TranscodingPlan.FieldBinding binding = plan.binding(key);
+                if (binding != null) {
+                    setField(binding, values);
                 }
             });
         }
 
-        private void setField(DynamicMessage.Builder builder, Descriptors.FieldDescriptor fieldDescriptor, String[] fieldNames, List<String> values) {
-            if (fieldNames.length == 1) {
-                if (fieldDescriptor.isRepeated()) {
-                    values.forEach(value -> builder.addRepeatedField(fieldDescriptor, convertValue(fieldDescriptor, value)));
-                } else {
-                    builder.setField(fieldDescriptor, convertValue(fieldDescriptor, values.get(0)));
-                }
-            } else {
-                Descriptors.FieldDescriptor childFieldDescriptor = fieldDescriptor.getMessageType().findFieldByName(fieldNames[1]);
-                if (childFieldDescriptor != null) {
-                    Object childDynamicMessage = builder.getField(fieldDescriptor);
-                    if (childDynamicMessage == null) {
-                        childDynamicMessage = DynamicMessage.newBuilder(fieldDescriptor.getMessageType()).build();
-                    }
-                    DynamicMessage.Builder childBuilder = ((DynamicMessage) childDynamicMessage).toBuilder();
-                    setField(childBuilder, childFieldDescriptor, getTail(fieldNames), values);
-                    builder.setField(fieldDescriptor, childBuilder.build());
-                }
-            }
+        void setField(TranscodingPlan.FieldBinding binding, List<String> values) {
+            setField(builder, binding, 0, values);
         }
 
         @SneakyThrows
-        private Object convertValue(Descriptors.FieldDescriptor field, String value) {
-            if (field.getType().equals(Descriptors.FieldDescriptor.Type.ENUM)) {
-                return field.getEnumType().findValueByName(value);
-            } else if (field.getType().equals(Descriptors.FieldDescriptor.Type.MESSAGE)) {
-                DynamicMessage.Builder message = DynamicMessage.newBuilder(field.getMessageType());
-                String json = objectMapper.writeValueAsString(value);
-                parser.merge(json, message);
-                return message.build();
+        private void setField(DynamicMessage.Builder builder, TranscodingPlan.FieldBinding binding, int depth, List<String> values) {
+            Descriptors.FieldDescriptor fieldDescriptor = binding.fieldPath[depth];
+            if (depth == binding.fieldPath.length - 1) {
+                if (fieldDescriptor.isRepeated()) {
+                    for (String value : values) {
+                        builder.addRepeatedField(fieldDescriptor, binding.converter.convert(value, parser));
+                    }
+                } else {
+                    builder.setField(fieldDescriptor, binding.converter.convert(values.get(0), parser));
+                }
             } else {
-                return value;
+                DynamicMessage.Builder childBuilder = ((DynamicMessage) builder.getField(fieldDescriptor)).toBuilder();
+                setField(childBuilder, binding, depth + 1, values);
+                builder.setField(fieldDescriptor, childBuilder.build());
             }
         }
 
         private String convertCamelToSnake(String key) {
             return LOWER_CAMEL.to(LOWER_UNDERSCORE, key);
         }
-
-        private String[] getTail(String[] filedNames) {
-            return Arrays.copyOfRange(filedNames, 1, filedNames.length);
-        }
     }
 }
@@ -0,0 +1,158 @@
+package com.github.protobufx.spring.gateway.grpc.filter;
+
+import org.springframework.core.io.buffer.DataBuffer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Splits a streamed request body into JSON objects, one per request message.
+ * The body is either newline-delimited JSON or a single JSON array of objects,
+ * and its chunks may split an object at any byte.
+ * This class is stateful and not thread-safe; use one instance per request body.
+ */
+class JsonStreamTokenizer {
+    private static final int INITIAL_CAPACITY = 256;
+
+    private final int maxElementSize;
+    private byte[] element;
+    private int length;
+    private int depth;
+    private boolean inString;
+    private boolean escaped;
+    // null until the first non-whitespace byte tells whether the body is an array
+    private Boolean array;
+    private boolean arrayClosed;
+    private boolean expectSeparator;
+    // whether a separator was consumed, so that the array must not end before the next element
+    private boolean expectElement;
+
+    JsonStreamTokenizer(int maxElementSize) {
+        this.maxElementSize = maxElementSize;
+        this.element = new byte[Math.min(INITIAL_CAPACITY, maxElementSize)];
+    }
+
+    /**
+     * Consumes the readable bytes of the buffer.
+     *
+     * @return the JSON objects completed by this buffer
+     * @throws IllegalArgumentException if the body is not a stream of JSON objects
+     */
+    List<byte[]> tokenize(DataBuffer dataBuffer) {
+        List<byte[]> elements = Collections.emptyList();
+        int readable = dataBuffer.readableByteCount();
+        int position = dataBuffer.readPosition();
+        for (int i = 0; i < readable; i++) {
+            byte b = dataBuffer.getByte(position + i);
+            if (depth == 0) {
+                if (!consumeOutsideElement(b)) {
+                    continue;
+                }
+                if (b != '{') {
+                    throw new IllegalArgumentException("Expected a JSON object but got '" + (char) b + "'");
+                }
+            }
+            append(b);
+            if (consumeInsideElement(b)) {
+                if (elements.isEmpty()) {
+                    elements = new ArrayList<>(2);
+                }
+                elements.add(Arrays.copyOf(element, length));
+                length = 0;
+                expectSeparator = array;
+            }
+        }
+        return elements;
+    }
+
+    /**
+     * Verifies that the body ended between two JSON objects.
+     *
+     * @throws IllegalArgumentException if the body ended in the middle of an object or array
+     */
+    void complete() {
+        if (depth != 0 || (Boolean.TRUE.equals(array) && !arrayClosed)) {
+            throw new IllegalArgumentException("Unexpected end of JSON stream");
+        }
+    }
+
+    /**
+     * @return true if the byte starts an element
+     */
+    private boolean consumeOutsideElement(byte b) {
+        if (b == ' ' || b == '\t' || b == '\r' || b == '\n') {
+            return false;
+        }
+        if (arrayClosed) {
+            throw new IllegalArgumentException("Unexpected content after the end of JSON array");
+        }
+        if (array == null) {
+            array = b == '[';
+            if (array) {
+                return false;
+            }
+        }
+        if (array) {
+            if (b == ']') {
+                if (expectElement) {
+                    throw new IllegalArgumentException("Unexpected ',' before the end of JSON array");
+                }
+                arrayClosed = true;
+                return false;
+            }
+            if (expectSeparator) {
+                if (b != ',') {
+                    throw new IllegalArgumentException("Expected ',' between JSON array elements but got '" + (char) b + "'");
+                }
+                expectSeparator = false;
+                expectElement = true;
+                return false;
+            }
+            expectElement = false;
+        }
+        return true;
+    }
+
+    /**
+     * @return true if the byte completes the current element
+     */
+    private boolean consumeInsideElement(byte b) {
+        if (inString) {
+            if (escaped) {
+                escaped = false;
+            } else if (b == '\\') {
+                escaped = true;
+            } else if (b == '"') {
+                inString = false;
+            }
+            return false;
+        }
+        switch (b) {
+            case '"':
+                inString = true;
+                return false;
+            case '{':
+            case '[':
+                depth++;
+                return false;
+            case '}':
+            case ']':
+                depth--;
+                return depth == 0;
+            default:
+                return false;
+        }
+    }
+
+    private void append(byte b) {
+        if (length == element.length) {
+            if (length >= maxElementSize) {
+                throw new IllegalArgumentException("JSON stream element exceeds " + maxElementSize + " bytes");
+            }
+            element = Arrays.copyOf(element, Math.min(length * 2, maxElementSize));
+        }
+        element[length++] = b;
+    }
+}
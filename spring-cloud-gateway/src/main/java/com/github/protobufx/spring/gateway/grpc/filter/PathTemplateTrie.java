@@ -0,0 +1,226 @@
+package com.github.protobufx.spring.gateway.grpc.filter;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A segment-based routing trie for HttpRule path templates.
+ * The trie is built once per {@link FileDescriptorIndex} and supports:
+ * - literal segments (e.g. {@code /sounds})
+ * - single segment wildcards ({@code *}, {@code {var}} and {@code {var=*}})
+ * - trailing multi segment wildcards ({@code **} and {@code {var=**}})
+ * - custom verbs on the last segment (e.g. {@code /sounds/{sound_id}:play})
+ *
+ * A lookup walks the request path once, preferring literal segments over wildcards
+ * and wildcards over multi segment wildcards.
+ */
+@Slf4j
+class PathTemplateTrie {
+    private static final String NO_VERB = "";
+
+    private final Node root = new Node();
+
+    PathTemplateTrie(Collection<HttpRuleMethodDescriptor> descriptors) {
+        for (HttpRuleMethodDescriptor descriptor : descriptors) {
+            add(descriptor);
+        }
+    }
+
+    void add(HttpRuleMethodDescriptor descriptor) {
+        String template = descriptor.getPathPattern();
+        Template parsed = Template.parse(template);
+        if (parsed == null) {
+            log.warn("Unsupported path template, ignored: {} {}", descriptor.getMethod(), template);
+            return;
+        }
+        Node node = root;
+        for (String segment : parsed.segments) {
+            if (segment == null) {
+                if (node.wildcard == null) {
+                    node.wildcard = new Node();
+                }
+                node = node.wildcard;
+            } else {
+                node = node.literals.computeIfAbsent(segment, s -> new Node());
+            }
+        }
+        Map<String, Map<String, HttpRuleMethodDescriptor>> routes = parsed.catchAll
+                ? node.catchAllRoutes() : node.routes();
+        routes.computeIfAbsent(parsed.verb, v -> new HashMap<>(4))
+                .put(descriptor.getMethod(), descriptor);
+    }
+
+    @Nullable
+    HttpRuleMethodDescriptor find(String method, String path) {
+        int start = path.startsWith("/") ? 1 : 0;
+        return find(root, method, path, start);
+    }
+
+    @Nullable
+    private HttpRuleMethodDescriptor find(Node node, String method, String path, int start) {
+        int end = path.indexOf('/', start);
+        HttpRuleMethodDescriptor found = end < 0
+                ? findLastSegment(node, method, path, start)
+                : findSegment(node, method, path, start, end);
+        return found != null ? found : findCatchAll(node, method, path, start);
+    }
+
+    @Nullable
+    private HttpRuleMethodDescriptor findSegment(Node node, String method, String path, int start, int end) {
+        Node literal = node.literals.get(path.substring(start, end));
+        if (literal != null) {
+            HttpRuleMethodDescriptor found = find(literal, method, path, end + 1);
+            if (found != null) {
+                return found;
+            }
+        }
+        if (node.wildcard != null && end > start) {
+            return find(node.wildcard, method, path, end + 1);
+        }
+        return null;
+    }
+
+    @Nullable
+    private HttpRuleMethodDescriptor findLastSegment(Node node, String method, String path, int start) {
+        int colon = path.lastIndexOf(':');
+        if (colon >= start) {
+            HttpRuleMethodDescriptor found = findTerminal(node, method, path, start, colon, path.substring(colon + 1));
+            if (found != null) {
+                return found;
+            }
+        }
+        return findTerminal(node, method, path, start, path.length(), NO_VERB);
+    }
+
+    @Nullable
+    private HttpRuleMethodDescriptor findTerminal(Node node, String method, String path, int start, int end, String verb) {
+        Node literal = node.literals.get(path.substring(start, end));
+        if (literal != null) {
+            HttpRuleMethodDescriptor found = literal.resolve(method, verb);
+            if (found != null) {
+                return found;
+            }
+        }
+        if (node.wildcard != null && end > start) {
+            return node.wildcard.resolve(method, verb);
+        }
+        return null;
+    }
+
+    @Nullable
+    private HttpRuleMethodDescriptor findCatchAll(Node node, String method, String path, int start) {
+        if (node.catchAllRoutes == null) {
+            return null;
+        }
+        int colon = path.lastIndexOf(':');
+        if (colon >= start && colon > path.lastIndexOf('/')) {
+            HttpRuleMethodDescriptor found = route(node.catchAllRoutes, method, path.substring(colon + 1));
+            if (found != null) {
+                return found;
+            }
+        }
+        return route(node.catchAllRoutes, method, NO_VERB);
+    }
+
+    @Nullable
+    private static HttpRuleMethodDescriptor route(@Nullable Map<String, Map<String, HttpRuleMethodDescriptor>> routes,
+                                                  String method, String verb) {
+        if (routes == null) {
+            return null;
+        }
+        Map<String, HttpRuleMethodDescriptor> byMethod = routes.get(verb);
+        return byMethod == null ? null : byMethod.get(method);
+    }
+
+    private static class Node {
+        final Map<String, Node> literals = new HashMap<>();
+        Node wildcard;
+        // verb -> http method -> descriptor
+        Map<String, Map<String, HttpRuleMethodDescriptor>> routes;
+        Map<String, Map<String, HttpRuleMethodDescriptor>> catchAllRoutes;
+
+        Map<String, Map<String, HttpRuleMethodDescriptor>> routes() {
+            if (routes == null) {
+                routes = new HashMap<>(4);
+            }
+            return routes;
+        }
+
+        Map<String, Map<String, HttpRuleMethodDescriptor>> catchAllRoutes() {
+            if (catchAllRoutes == null) {
+                catchAllRoutes = new HashMap<>(4);
+            }
+            return catchAllRoutes;
+        }
+
+        @Nullable
+        HttpRuleMethodDescriptor resolve(String method, String verb) {
+            HttpRuleMethodDescriptor found = route(routes, method, verb);
+            // a trailing '**' also matches zero segments
+            return found != null ? found : route(catchAllRoutes, method, verb);
+        }
+    }
+
+    /**
+     * A parsed HttpRule path template.
+     * Template = "/" Segments [ Verb ] ;
+     */
+    private static class Template {
+        // literal segments, or null for a single segment wildcard
+        final List<String> segments;
+        final boolean catchAll;
+        final String verb;
+
+        private Template(List<String> segments, boolean catchAll, String verb) {
+            this.segments = segments;
+            this.catchAll = catchAll;
+            this.verb = verb;
+        }
+
+        @Nullable
+        static Template parse(String template) {
+            String path = template.startsWith("/") ? template.substring(1) : template;
+            String verb = NO_VERB;
+            int colon = path.lastIndexOf(':');
+            if (colon >= 0 && colon > path.lastIndexOf('/') && colon > path.lastIndexOf('}')) {
+                verb = path.substring(colon + 1);
+                path = path.substring(0, colon);
+            }
+
+            List<String> segments = new ArrayList<>();
+            boolean catchAll = false;
+            for (String part : path.split("/", -1)) {
+                if (catchAll) {
+                    // '**' must be the last segment
+                    return null;
+                }
+                if (part.startsWith("{")) {
+                    if (!part.endsWith("}")) {
+                        return null;
+                    }
+                    int equal = part.indexOf('=');
+                    part = equal < 0 ? "*" : part.substring(equal + 1, part.length() - 1);
+                } else if (part.contains("{") || part.contains("}")) {
+                    return null;
+                }
+
+                if (part.equals("**")) {
+                    catchAll = true;
+                } else if (part.equals("*")) {
+                    segments.add(null);
+                } else if (part.contains("*") || part.contains("/")) {
+                    return null;
+                } else {
+                    segments.add(part);
+                }
+            }
+            return new Template(segments, catchAll, verb);
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package com.github.protobufx.spring.gateway.grpc.filter;
 
+import reactor.core.publisher.Mono;
+
 import java.util.Optional;
 
 /**
@@ -16,4 +18,19 @@ public interface ProtobufRepository {
      * @return An optional containing the method descriptor if found, or empty if not found
      */
     Optional<HttpRuleMethodDescriptor> findMethodDescriptor(String serviceId, String method, String path);
-}
\ No newline at end of file
+
+    /**
+     * Find the method descriptor for a given service ID, method, and path without blocking the calling thread,
+     * which is an event loop thread when called by the gateway filter.
+     * The default implementation calls {@link #findMethodDescriptor} on subscription, which suits repositories
+     * that hold their descriptors in memory. Repositories that load descriptors remotely should override it.
+     *
+     * @param serviceId The ID of the service
+     * @param method The method name
+     * @param path The path of the request
+     * @return A mono of an optional containing the method descriptor if found, or empty if not found
+     */
+    default Mono<Optional<HttpRuleMethodDescriptor>> findMethodDescriptorAsync(String serviceId, String method, String path) {
+        return Mono.fromSupplier(() -> findMethodDescriptor(serviceId, method, path));
+    }
+}
@@ -0,0 +1,96 @@
+package com.github.protobufx.spring.gateway.grpc.filter;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.Message;
+import com.google.protobuf.UnsafeByteOperations;
+import lombok.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces the concurrent identical requests to methods without side effects into a single backend call,
+ * whose encoded response is written to every request waiting for it.
+ * Requests are identical when they call the same method of the same authority with the same request message,
+ * metadata and response content type. The call is made by the first request and is not cancelled
+ * when that request is, since other requests may be waiting for it; it is forgotten once it completes,
+ * so that a later request makes a new call.
+ */
+class RequestCoalescer {
+    final Map<Key, Mono<byte[]>> calls = new ConcurrentHashMap<>();
+
+    /**
+     * @param call the backend call and the encoding of its response, which is made if no identical call is in flight
+     * @return the encoded response, shared by the identical requests
+     */
+    Mono<byte[]> execute(Key key, Supplier<Flux<DataBuffer>> call) {
+        return Mono.defer(() -> {
+            Mono<byte[]> inFlight = calls.get(key);
+            if (inFlight != null) {
+                return inFlight;
+            }
+            @SuppressWarnings("unchecked")
+            Mono<byte[]>[] shared = new Mono[1];
+            shared[0] = DataBufferUtils.join(Flux.defer(call))
+                    .map(dataBuffer -> {
+                        try {
+                            byte[] bytes = new byte[dataBuffer.readableByteCount()];
+                            dataBuffer.read(bytes);
+                            return bytes;
+                        } finally {
+                            DataBufferUtils.release(dataBuffer);
+                        }
+                    })
+                    .doFinally(signal -> calls.remove(key, shared[0]))
+                    .cache();
+            inFlight = calls.putIfAbsent(key, shared[0]);
+            return inFlight != null ? inFlight : shared[0];
+        });
+    }
+
+    /**
+     * @param request the request message, a {@link Message} or the bytes of a serialized message
+     * @param metadata the metadata sent with the request, in the canonical form of {@link HeaderPropagation#canonical}
+     * @param contentType the content type of the encoded response
+     */
+    static Key key(String authority, String fullMethodName, Object request, String metadata, String contentType) {
+        return new Key(authority, fullMethodName, serialize(request), metadata, contentType);
+    }
+
+    /**
+     * Serializes a message deterministically, so that equal messages with map fields have the same bytes.
+     */
+    static ByteString serialize(Object request) {
+        if (request instanceof byte[]) {
+            return ByteString.copyFrom((byte[]) request);
+        }
+        Message message = (Message) request;
+        byte[] bytes = new byte[message.getSerializedSize()];
+        try {
+            CodedOutputStream outputStream = CodedOutputStream.newInstance(bytes);
+            outputStream.useDeterministicSerialization();
+            message.writeTo(outputStream);
+            outputStream.checkNoSpaceLeft();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return UnsafeByteOperations.unsafeWrap(bytes);
+    }
+
+    @Value
+    static class Key {
+        String authority;
+        String fullMethodName;
+        ByteString request;
+        String metadata;
+        String contentType;
+    }
+}
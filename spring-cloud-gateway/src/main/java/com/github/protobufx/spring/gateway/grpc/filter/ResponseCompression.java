@@ -0,0 +1,243 @@
+package com.github.protobufx.spring.gateway.grpc.filter;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.compression.Brotli;
+import io.netty.handler.codec.compression.BrotliEncoder;
+import io.netty.handler.codec.compression.ZlibCodecFactory;
+import io.netty.handler.codec.compression.ZlibWrapper;
+import io.netty.handler.codec.compression.Zstd;
+import io.netty.handler.codec.compression.ZstdEncoder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.NettyDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Compresses the response bodies with the content coding that the client accepts, resolved once per filter config.
+ * The body is compressed while it is written, by a Netty encoder writing into pooled buffers,
+ * and every message of a response stream is flushed so that the client can decode it as soon as it arrives.
+ * A unary response is only compressed once it has reached the minimum size, and is left as it is otherwise.
+ */
+@Slf4j
+class ResponseCompression {
+    static final String GZIP = "gzip";
+    static final String DEFLATE = "deflate";
+    static final String BROTLI = "br";
+    static final String ZSTD = "zstd";
+
+    private final NettyDataBufferFactory dataBufferFactory;
+    // the available encodings in order of preference
+    private final List<String> encodings = new ArrayList<>();
+    private final int minSize;
+
+    ResponseCompression(NettyDataBufferFactory dataBufferFactory, List<String> encodings, int minSize) {
+        this.dataBufferFactory = dataBufferFactory;
+        this.minSize = minSize;
+        for (String encoding : encodings) {
+            String name = encoding.trim().toLowerCase(Locale.ROOT);
+            if (!isSupported(name)) {
+                throw new IllegalArgumentException("Unsupported response encoding: " + encoding);
+            }
+            if (isAvailable(name)) {
+                this.encodings.add(name);
+            } else {
+                log.info("The {} response encoding is disabled, since its native library is not on the classpath", name);
+            }
+        }
+    }
+
+    boolean isEnabled() {
+        return !encodings.isEmpty();
+    }
+
+    /**
+     * @return the preferred encoding among the ones with the highest quality in the Accept-Encoding header,
+     * or null if the response is not to be compressed
+     */
+    @Nullable
+    String negotiate(HttpHeaders requestHeaders) {
+        List<String> acceptEncodings = requestHeaders.get(HttpHeaders.ACCEPT_ENCODING);
+        if (encodings.isEmpty() || acceptEncodings == null) {
+            return null;
+        }
+        Map<String, Double> qualities = new HashMap<>();
+        for (String acceptEncoding : acceptEncodings) {
+            for (String coding : acceptEncoding.split(",")) {
+                String[] parameters = coding.split(";");
+                String name = parameters[0].trim().toLowerCase(Locale.ROOT);
+                double quality = 1;
+                for (int i = 1; i < parameters.length; i++) {
+                    String parameter = parameters[i].trim();
+                    if (parameter.startsWith("q=")) {
+                        try {
+                            quality = Double.parseDouble(parameter.substring(2));
+                        } catch (NumberFormatException e) {
+                            quality = 0;
+                        }
+                    }
+                }
+                if (!name.isEmpty()) {
+                    qualities.put(name, quality);
+                }
+            }
+        }
+        double wildcardQuality = qualities.getOrDefault("*", 0.0);
+        String preferred = null;
+        double preferredQuality = 0;
+        for (String encoding : encodings) {
+            double quality = qualities.getOrDefault(encoding, wildcardQuality);
+            if (quality > preferredQuality) {
+                preferred = encoding;
+                preferredQuality = quality;
+            }
+        }
+        return preferred;
+    }
+
+    /**
+     * Compresses a unary response body once its first buffers have reached the minimum size,
+     * and only then sets the Content-Encoding, so that an error before the body leaves the headers as they are.
+     *
+     * @param encoding the negotiated encoding, or null to leave the body as it is
+     */
+    Flux<DataBuffer> compress(Flux<DataBuffer> body, @Nullable String encoding, HttpHeaders responseHeaders) {
+        if (encoding == null) {
+            return body;
+        }
+        return Flux.defer(() -> {
+                    long[] size = {0};
+                    return body.bufferUntil(dataBuffer -> (size[0] += dataBuffer.readableByteCount()) >= minSize)
+                            .switchOnFirst((first, buffers) -> {
+                                Flux<DataBuffer> dataBuffers = buffers.concatMapIterable(list -> list);
+                                if (!first.hasValue() || size[0] < minSize) {
+                                    return dataBuffers;
+                                }
+                                setContentEncoding(responseHeaders, encoding);
+                                return Flux.defer(() -> {
+                                    EmbeddedChannel channel = createEncoder(encoding);
+                                    return dataBuffers.concatMapIterable(dataBuffer -> encode(channel, dataBuffer))
+                                            .concatWith(Flux.defer(() -> Flux.fromIterable(finish(channel))))
+                                            .doFinally(signal -> channel.finishAndReleaseAll());
+                                });
+                            });
+                })
+                .doOnDiscard(DataBuffer.class, DataBufferUtils::release);
+    }
+
+    /**
+     * Compresses a response stream, where every message is flushed as a whole.
+     * The stream is compressed whatever its size, since it is written before its size is known.
+     *
+     * @param encoding the negotiated encoding, or null to leave the messages as they are
+     */
+    Flux<Flux<DataBuffer>> compressStream(Flux<Flux<DataBuffer>> messages, @Nullable String encoding, HttpHeaders responseHeaders) {
+        if (encoding == null) {
+            return messages;
+        }
+        return messages.switchOnFirst((first, all) -> {
+                    if (!first.hasValue()) {
+                        return all;
+                    }
+                    setContentEncoding(responseHeaders, encoding);
+                    return Flux.defer(() -> {
+                        EmbeddedChannel channel = createEncoder(encoding);
+                        // a message is encoded only once the previous one has been, so the encoder sees them in order
+                        return all.concatMap(message -> message
+                                                .concatMapIterable(dataBuffer -> encode(channel, dataBuffer))
+                                                .collectList(), 1)
+                                .<Flux<DataBuffer>>map(Flux::fromIterable)
+                                .concatWith(Mono.fromSupplier(() -> Flux.fromIterable(finish(channel))))
+                                .doFinally(signal -> channel.finishAndReleaseAll());
+                    });
+                })
+                .doOnDiscard(DataBuffer.class, DataBufferUtils::release);
+    }
+
+    static boolean isSupported(String encoding) {
+        return GZIP.equals(encoding) || DEFLATE.equals(encoding) || BROTLI.equals(encoding) || ZSTD.equals(encoding);
+    }
+
+    /**
+     * @return whether the encoding can be used, since brotli and zstd need brotli4j and zstd-jni on the classpath
+     */
+    static boolean isAvailable(String encoding) {
+        switch (encoding) {
+            case BROTLI:
+                return Brotli.isAvailable();
+            case ZSTD:
+                return Zstd.isAvailable();
+            default:
+                return isSupported(encoding);
+        }
+    }
+
+    private static void setContentEncoding(HttpHeaders responseHeaders, String encoding) {
+        responseHeaders.set(HttpHeaders.CONTENT_ENCODING, encoding);
+        responseHeaders.remove(HttpHeaders.CONTENT_LENGTH);
+    }
+
+    private EmbeddedChannel createEncoder(String encoding) {
+        ChannelHandler encoder;
+        switch (encoding) {
+            case GZIP:
+                encoder = ZlibCodecFactory.newZlibEncoder(ZlibWrapper.GZIP);
+                break;
+            case DEFLATE:
+                // the deflate content coding is the zlib format, not raw deflate
+                encoder = ZlibCodecFactory.newZlibEncoder(ZlibWrapper.ZLIB);
+                break;
+            case BROTLI:
+                encoder = new BrotliEncoder();
+                break;
+            case ZSTD:
+                encoder = new ZstdEncoder();
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported response encoding: " + encoding);
+        }
+        EmbeddedChannel channel = new EmbeddedChannel(encoder);
+        channel.config().setAllocator(dataBufferFactory.getByteBufAllocator());
+        return channel;
+    }
+
+    /**
+     * Writes and flushes a buffer, which the encoder releases.
+     */
+    private List<DataBuffer> encode(EmbeddedChannel channel, DataBuffer dataBuffer) {
+        channel.writeOutbound(NettyDataBufferFactory.toByteBuf(dataBuffer));
+        return readOutbound(channel);
+    }
+
+    /**
+     * Writes the end of the compressed body.
+     */
+    private List<DataBuffer> finish(EmbeddedChannel channel) {
+        channel.finish();
+        return readOutbound(channel);
+    }
+
+    private List<DataBuffer> readOutbound(EmbeddedChannel channel) {
+        List<DataBuffer> dataBuffers = new ArrayList<>();
+        ByteBuf byteBuf;
+        while ((byteBuf = channel.readOutbound()) != null) {
+            if (byteBuf.isReadable()) {
+                dataBuffers.add(dataBufferFactory.wrap(byteBuf));
+            } else {
+                byteBuf.release();
+            }
+        }
+        return dataBuffers;
+    }
+}
@@ -0,0 +1,119 @@
+package com.github.protobufx.spring.gateway.grpc.filter;
+
+import io.grpc.ClientCall;
+import io.grpc.stub.ClientCallStreamObserver;
+import io.grpc.stub.ClientCalls;
+import io.grpc.stub.ClientResponseObserver;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscription;
+import reactor.core.publisher.BaseSubscriber;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Bridges streaming gRPC client calls to Reactor.
+ * Both directions are flow controlled:
+ * - request messages are pulled from the publisher one by one while the call is ready to send
+ * - response messages are requested from the call as the downstream subscriber requests them
+ */
+final class StreamingClientCalls {
+
+    private StreamingClientCalls() {
+    }
+
+    /**
+     * Starts the call, sends every request message and emits the response messages.
+     *
+     * @param call the call to start
+     * @param requestMessages the request messages to send, the call is half-closed when it completes
+     * @param streamingResponse whether the method returns a response stream
+     * @return the response messages
+     */
+    static <ReqT, RespT> Flux<RespT> call(ClientCall<ReqT, RespT> call, Publisher<ReqT> requestMessages, boolean streamingResponse) {
+        return Flux.create(sink -> {
+            RequestMessageSubscriber<ReqT> requestSubscriber = new RequestMessageSubscriber<>(sink);
+            ClientResponseObserver<ReqT, RespT> responseObserver = new ClientResponseObserver<ReqT, RespT>() {
+                @Override
+                public void beforeStart(ClientCallStreamObserver<ReqT> requestStream) {
+                    requestStream.disableAutoRequestWithInitial(0);
+                    requestStream.setOnReadyHandler(requestSubscriber::requestIfReady);
+                    requestSubscriber.requestStream = requestStream;
+                }
+
+                @Override
+                public void onNext(RespT value) {
+                    sink.next(value);
+                }
+
+                @Override
+                public void onError(Throwable t) {
+                    requestSubscriber.dispose();
+                    sink.error(t);
+                }
+
+                @Override
+                public void onCompleted() {
+                    requestSubscriber.dispose();
+                    sink.complete();
+                }
+            };
+            if (streamingResponse) {
+                ClientCalls.asyncBidiStreamingCall(call, responseObserver);
+            } else {
+                ClientCalls.asyncClientStreamingCall(call, responseObserver);
+            }
+
+            // the call is started, so the demand can be forwarded to the gRPC flow control
+            ClientCallStreamObserver<ReqT> requestStream = requestSubscriber.requestStream;
+            sink.onRequest(n -> requestStream.request((int) Math.min(n, Integer.MAX_VALUE)));
+            sink.onCancel(() -> {
+                requestSubscriber.dispose();
+                requestStream.cancel("Response stream cancelled", null);
+            });
+            requestMessages.subscribe(requestSubscriber);
+        });
+    }
+
+    private static class RequestMessageSubscriber<ReqT> extends BaseSubscriber<ReqT> {
+        final FluxSink<?> responseSink;
+        final AtomicBoolean requested = new AtomicBoolean();
+        volatile ClientCallStreamObserver<ReqT> requestStream;
+
+        RequestMessageSubscriber(FluxSink<?> responseSink) {
+            this.responseSink = responseSink;
+        }
+
+        @Override
+        protected void hookOnSubscribe(Subscription subscription) {
+            requestIfReady();
+        }
+
+        @Override
+        protected void hookOnNext(ReqT value) {
+            requested.set(false);
+            requestStream.onNext(value);
+            requestIfReady();
+        }
+
+        @Override
+        protected void hookOnComplete() {
+            requestStream.onCompleted();
+        }
+
+        @Override
+        protected void hookOnError(Throwable throwable) {
+            // fail with the request error instead of the resulting cancellation of the call
+            requestStream.onError(throwable);
+            responseSink.error(throwable);
+        }
+
+        void requestIfReady() {
+            // keep at most one request message in flight, and only while the transport accepts more
+            if (upstream() != null && !isDisposed() && requestStream.isReady() && requested.compareAndSet(false, true)) {
+                request(1);
+            }
+        }
+    }
+}
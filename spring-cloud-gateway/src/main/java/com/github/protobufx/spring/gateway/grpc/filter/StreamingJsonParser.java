@@ -0,0 +1,453 @@
+package com.github.protobufx.spring.gateway.grpc.filter;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.io.BaseEncoding;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.Descriptors;
+import com.google.protobuf.DynamicMessage;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.util.Durations;
+import com.google.protobuf.util.FieldMaskUtil;
+import com.google.protobuf.util.JsonFormat;
+import com.google.protobuf.util.Timestamps;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.text.ParseException;
+import java.util.BitSet;
+
+/**
+ * A descriptor-driven JSON to protobuf parser built on Jackson's streaming {@link JsonParser}.
+ * It writes fields straight into a {@link DynamicMessage.Builder} without building a JSON tree,
+ * following the proto3 JSON mapping of {@link JsonFormat.Parser}:
+ * - fields are matched by their JSON name or their original proto name
+ * - 64-bit integers, floating point special values and bytes may be given as strings
+ * - Timestamp, Duration, FieldMask and the wrapper types are parsed from their JSON values
+ * - Any, Struct, Value and ListValue are delegated to the fallback {@link JsonFormat.Parser}
+ */
+class StreamingJsonParser {
+    static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    static final JsonFactory JSON_FACTORY = OBJECT_MAPPER.getFactory();
+    private static final BigInteger MAX_UINT64 = new BigInteger("FFFFFFFFFFFFFFFF", 16);
+    private static final double EPSILON = 1e-6;
+
+    private final JsonFormat.Parser fallbackParser;
+    private final boolean ignoringUnknownFields;
+    private final TranscodingPlans plans;
+
+    StreamingJsonParser(JsonFormat.Parser fallbackParser, boolean ignoringUnknownFields) {
+        this(fallbackParser, ignoringUnknownFields, new TranscodingPlans());
+    }
+
+    /**
+     * @param plans the plans of the method whose messages are parsed, which find the fields by their JSON name
+     */
+    StreamingJsonParser(JsonFormat.Parser fallbackParser, boolean ignoringUnknownFields, TranscodingPlans plans) {
+        this.fallbackParser = fallbackParser;
+        this.ignoringUnknownFields = ignoringUnknownFields;
+        this.plans = plans;
+    }
+
+    /**
+     * Merges a JSON object into the builder.
+     */
+    void merge(InputStream inputStream, DynamicMessage.Builder builder) throws IOException {
+        try (JsonParser parser = JSON_FACTORY.createParser(inputStream)) {
+            expect(parser.nextToken(), JsonToken.START_OBJECT, builder.getDescriptorForType().getFullName());
+            mergeMessage(parser, builder);
+            expectEnd(parser);
+        }
+    }
+
+    /**
+     * Merges the value of a single field of a JSON object into the builder, skipping any other field.
+     */
+    void mergeField(InputStream inputStream, Descriptors.FieldDescriptor field, DynamicMessage.Builder builder) throws IOException {
+        try (JsonParser parser = JSON_FACTORY.createParser(inputStream)) {
+            expect(parser.nextToken(), JsonToken.START_OBJECT, builder.getDescriptorForType().getFullName());
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.currentName();
+                parser.nextToken();
+                if (name.equals(field.getJsonName()) || name.equals(field.getName())) {
+                    mergeField(parser, field, builder);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            expectEnd(parser);
+        }
+    }
+
+    @Nullable
+    Descriptors.FieldDescriptor findField(Descriptors.Descriptor descriptor, String name) {
+        return plans.of(descriptor).field(name);
+    }
+
+    private void mergeMessage(JsonParser parser, DynamicMessage.Builder builder) throws IOException {
+        Descriptors.Descriptor descriptor = builder.getDescriptorForType();
+        if (WellKnownTypes.isSpecial(descriptor)) {
+            mergeWellKnownType(parser, builder);
+            return;
+        }
+        expect(parser.currentToken(), JsonToken.START_OBJECT, descriptor.getFullName());
+        BitSet mergedFields = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.currentName();
+            parser.nextToken();
+            Descriptors.FieldDescriptor field = findField(descriptor, name);
+            if (field == null) {
+                if (!ignoringUnknownFields) {
+                    throw new InvalidProtocolBufferException("Cannot find field: " + name + " in message " + descriptor.getFullName());
+                }
+                parser.skipChildren();
+                continue;
+            }
+            if (mergedFields == null) {
+                mergedFields = new BitSet(descriptor.getFields().size());
+            }
+            if (mergedFields.get(field.getIndex())) {
+                throw new InvalidProtocolBufferException("Field " + field.getFullName() + " has already been set.");
+            }
+            mergedFields.set(field.getIndex());
+            Descriptors.OneofDescriptor oneof = field.getContainingOneof();
+            if (oneof != null && parser.currentToken() != JsonToken.VALUE_NULL && builder.hasOneof(oneof)) {
+                throw new InvalidProtocolBufferException("Cannot set field " + field.getFullName()
+                        + " because another field " + builder.getOneofFieldDescriptor(oneof).getFullName()
+                        + " belonging to the same oneof has already been set.");
+            }
+            mergeField(parser, field, builder);
+        }
+        expect(parser.currentToken(), JsonToken.END_OBJECT, descriptor.getFullName());
+    }
+
+    private void mergeField(JsonParser parser, Descriptors.FieldDescriptor field, DynamicMessage.Builder builder) throws IOException {
+        if (parser.currentToken() == JsonToken.VALUE_NULL) {
+            if (field.getJavaType() == Descriptors.FieldDescriptor.JavaType.MESSAGE
+                    && !field.isRepeated()
+                    && field.getMessageType().getFullName().equals(WellKnownTypes.VALUE)) {
+                mergeValue(parser, field, builder);
+            } else if (field.getJavaType() == Descriptors.FieldDescriptor.JavaType.ENUM
+                    && field.getEnumType().getFullName().equals(WellKnownTypes.NULL_VALUE)) {
+                builder.setField(field, field.getEnumType().findValueByNumber(0));
+            } else {
+                builder.clearField(field);
+            }
+            return;
+        }
+
+        if (field.isMapField()) {
+            expect(parser.currentToken(), JsonToken.START_OBJECT, field.getFullName());
+            Descriptors.Descriptor entryType = field.getMessageType();
+            Descriptors.FieldDescriptor keyField = entryType.findFieldByNumber(1);
+            Descriptors.FieldDescriptor valueField = entryType.findFieldByNumber(2);
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                DynamicMessage.Builder entry = DynamicMessage.newBuilder(entryType);
+                entry.setField(keyField, parseMapKey(keyField, parser.currentName()));
+                parser.nextToken();
+                if (parser.currentToken() == JsonToken.VALUE_NULL) {
+                    throw new InvalidProtocolBufferException("Map value cannot be null.");
+                }
+                mergeValue(parser, valueField, entry);
+                builder.addRepeatedField(field, entry.build());
+            }
+        } else if (field.isRepeated()) {
+            expect(parser.currentToken(), JsonToken.START_ARRAY, field.getFullName());
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                if (parser.currentToken() == JsonToken.VALUE_NULL
+                        && !(field.getJavaType() == Descriptors.FieldDescriptor.JavaType.MESSAGE
+                        && field.getMessageType().getFullName().equals(WellKnownTypes.VALUE))) {
+                    throw new InvalidProtocolBufferException("Repeated field elements cannot be null in field: " + field.getFullName());
+                }
+                Object value = parseValue(parser, field);
+                if (value != null) {
+                    builder.addRepeatedField(field, value);
+                }
+            }
+        } else {
+            mergeValue(parser, field, builder);
+        }
+    }
+
+    private void mergeValue(JsonParser parser, Descriptors.FieldDescriptor field, DynamicMessage.Builder builder) throws IOException {
+        Object value = parseValue(parser, field);
+        if (value != null) {
+            builder.setField(field, value);
+        }
+    }
+
+    /**
+     * Parses the current JSON value as a singular value of the field.
+     *
+     * @return the value, or null if it is an unknown enum value that should be ignored
+     */
+    @Nullable
+    private Object parseValue(JsonParser parser, Descriptors.FieldDescriptor field) throws IOException {
+        switch (field.getType()) {
+            case INT32:
+            case SINT32:
+            case SFIXED32:
+                return parseInt32(parser);
+            case INT64:
+            case SINT64:
+            case SFIXED64:
+                return parseInt64(parser);
+            case UINT32:
+            case FIXED32:
+                return parseUint32(parser);
+            case UINT64:
+            case FIXED64:
+                return parseUint64(parser);
+            case FLOAT:
+                return parseFloat(parser);
+            case DOUBLE:
+                return parseDouble(parser);
+            case BOOL:
+                return parseBool(parser);
+            case STRING:
+                return parseString(parser);
+            case BYTES:
+                return parseBytes(parser);
+            case ENUM:
+                return parseEnum(parser, field.getEnumType());
+            case MESSAGE:
+            case GROUP:
+                DynamicMessage.Builder messageBuilder = DynamicMessage.newBuilder(field.getMessageType());
+                mergeMessage(parser, messageBuilder);
+                return messageBuilder.build();
+            default:
+                throw new InvalidProtocolBufferException("Invalid field type: " + field.getType());
+        }
+    }
+
+    private void mergeWellKnownType(JsonParser parser, DynamicMessage.Builder builder) throws IOException {
+        Descriptors.Descriptor descriptor = builder.getDescriptorForType();
+        String fullName = descriptor.getFullName();
+        try {
+            switch (fullName) {
+                case WellKnownTypes.TIMESTAMP:
+                    builder.mergeFrom(WellKnownTypes.timestamp(descriptor, Timestamps.parse(text(parser, fullName))));
+                    return;
+                case WellKnownTypes.DURATION:
+                    builder.mergeFrom(WellKnownTypes.duration(descriptor, Durations.parse(text(parser, fullName))));
+                    return;
+                case WellKnownTypes.FIELD_MASK:
+                    builder.mergeFrom(WellKnownTypes.fieldMask(descriptor, FieldMaskUtil.fromJsonString(text(parser, fullName))));
+                    return;
+                default:
+                    break;
+            }
+        } catch (ParseException | IllegalArgumentException e) {
+            throw new InvalidProtocolBufferException("Failed to parse " + fullName + " value: " + e.getMessage());
+        }
+        if (WellKnownTypes.isWrapper(descriptor)) {
+            Descriptors.FieldDescriptor valueField = descriptor.findFieldByNumber(1);
+            mergeValue(parser, valueField, builder);
+            return;
+        }
+        // Any, Struct, Value and ListValue are rare in requests, let JsonFormat handle them
+        String json = OBJECT_MAPPER.readTree(parser).toString();
+        fallbackParser.merge(json, builder);
+    }
+
+    private static String text(JsonParser parser, String typeName) throws IOException {
+        if (parser.currentToken() != JsonToken.VALUE_STRING) {
+            throw new InvalidProtocolBufferException("Expect a string value for " + typeName + " but got: " + parser.currentToken());
+        }
+        return parser.getText();
+    }
+
+    private static int parseInt32(JsonParser parser) throws IOException {
+        if (parser.currentToken() == JsonToken.VALUE_NUMBER_INT && parser.getNumberType() == JsonParser.NumberType.INT) {
+            return parser.getIntValue();
+        }
+        try {
+            return new BigDecimal(scalarText(parser)).intValueExact();
+        } catch (ArithmeticException | NumberFormatException e) {
+            throw new InvalidProtocolBufferException("Not an int32 value: " + parser.getText());
+        }
+    }
+
+    private static long parseInt64(JsonParser parser) throws IOException {
+        if (parser.currentToken() == JsonToken.VALUE_NUMBER_INT
+                && (parser.getNumberType() == JsonParser.NumberType.INT || parser.getNumberType() == JsonParser.NumberType.LONG)) {
+            return parser.getLongValue();
+        }
+        try {
+            return new BigDecimal(scalarText(parser)).longValueExact();
+        } catch (ArithmeticException | NumberFormatException e) {
+            throw new InvalidProtocolBufferException("Not an int64 value: " + parser.getText());
+        }
+    }
+
+    private static int parseUint32(JsonParser parser) throws IOException {
+        try {
+            long value = new BigDecimal(scalarText(parser)).longValueExact();
+            if (value < 0 || value > 0xFFFFFFFFL) {
+                throw new InvalidProtocolBufferException("Out of range uint32 value: " + parser.getText());
+            }
+            return (int) value;
+        } catch (ArithmeticException | NumberFormatException e) {
+            throw new InvalidProtocolBufferException("Not an uint32 value: " + parser.getText());
+        }
+    }
+
+    private static long parseUint64(JsonParser parser) throws IOException {
+        try {
+            BigInteger value = new BigDecimal(scalarText(parser)).toBigIntegerExact();
+            if (value.signum() < 0 || value.compareTo(MAX_UINT64) > 0) {
+                throw new InvalidProtocolBufferException("Out of range uint64 value: " + parser.getText());
+            }
+            return value.longValue();
+        } catch (ArithmeticException | NumberFormatException e) {
+            throw new InvalidProtocolBufferException("Not an uint64 value: " + parser.getText());
+        }
+    }
+
+    private static float parseFloat(JsonParser parser) throws IOException {
+        double value = parseDouble(parser);
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            return (float) value;
+        }
+        if (Math.abs(value) > Float.MAX_VALUE * (1.0 + EPSILON)) {
+            throw new InvalidProtocolBufferException("Out of range float value: " + parser.getText());
+        }
+        return (float) value;
+    }
+
+    private static double parseDouble(JsonParser parser) throws IOException {
+        String text = scalarText(parser);
+        switch (text) {
+            case "NaN":
+                return Double.NaN;
+            case "Infinity":
+                return Double.POSITIVE_INFINITY;
+            case "-Infinity":
+                return Double.NEGATIVE_INFINITY;
+            default:
+                try {
+                    double value = Double.parseDouble(text);
+                    if (Double.isInfinite(value)) {
+                        throw new InvalidProtocolBufferException("Out of range double value: " + text);
+                    }
+                    return value;
+                } catch (NumberFormatException e) {
+                    throw new InvalidProtocolBufferException("Not a double value: " + text);
+                }
+        }
+    }
+
+    private static boolean parseBool(JsonParser parser) throws IOException {
+        switch (parser.currentToken()) {
+            case VALUE_TRUE:
+                return true;
+            case VALUE_FALSE:
+                return false;
+            case VALUE_STRING:
+                if (parser.getText().equals("true")) {
+                    return true;
+                } else if (parser.getText().equals("false")) {
+                    return false;
+                }
+                // fall through
+            default:
+                throw new InvalidProtocolBufferException("Invalid bool value: " + parser.getText());
+        }
+    }
+
+    private static String parseString(JsonParser parser) throws IOException {
+        // like JsonFormat, numbers and booleans are accepted as strings
+        return scalarText(parser);
+    }
+
+    private static ByteString parseBytes(JsonParser parser) throws IOException {
+        String text = text(parser, "bytes");
+        try {
+            return ByteString.copyFrom(BaseEncoding.base64().decode(text));
+        } catch (IllegalArgumentException e) {
+            try {
+                return ByteString.copyFrom(BaseEncoding.base64Url().decode(text));
+            } catch (IllegalArgumentException e2) {
+                throw new InvalidProtocolBufferException("Invalid bytes value: " + text);
+            }
+        }
+    }
+
+    @Nullable
+    private Descriptors.EnumValueDescriptor parseEnum(JsonParser parser, Descriptors.EnumDescriptor enumDescriptor) throws IOException {
+        String text = scalarText(parser);
+        Descriptors.EnumValueDescriptor value = enumDescriptor.findValueByName(text);
+        if (value == null) {
+            try {
+                int number = new BigDecimal(text).intValueExact();
+                value = enumDescriptor.isClosed()
+                        ? enumDescriptor.findValueByNumber(number)
+                        : enumDescriptor.findValueByNumberCreatingIfUnknown(number);
+            } catch (ArithmeticException | NumberFormatException e) {
+                // not a number, handled as an unknown value below
+            }
+        }
+        if (value == null && !ignoringUnknownFields) {
+            throw new InvalidProtocolBufferException("Invalid enum value: " + text + " for enum type: " + enumDescriptor.getFullName());
+        }
+        return value;
+    }
+
+    private static Object parseMapKey(Descriptors.FieldDescriptor keyField, String key) throws InvalidProtocolBufferException {
+        try {
+            switch (keyField.getType()) {
+                case BOOL:
+                    if (key.equals("true")) {
+                        return true;
+                    } else if (key.equals("false")) {
+                        return false;
+                    }
+                    throw new InvalidProtocolBufferException("Invalid map key: " + key);
+                case INT32:
+                case SINT32:
+                case SFIXED32:
+                    return Integer.parseInt(key);
+                case INT64:
+                case SINT64:
+                case SFIXED64:
+                    return Long.parseLong(key);
+                case UINT32:
+                case FIXED32:
+                    return Integer.parseUnsignedInt(key);
+                case UINT64:
+                case FIXED64:
+                    return Long.parseUnsignedLong(key);
+                default:
+                    return key;
+            }
+        } catch (NumberFormatException e) {
+            throw new InvalidProtocolBufferException("Invalid map key: " + key);
+        }
+    }
+
+    private static String scalarText(JsonParser parser) throws IOException {
+        JsonToken token = parser.currentToken();
+        if (token == null || !token.isScalarValue()) {
+            throw new InvalidProtocolBufferException("Expect a scalar value but got: " + token);
+        }
+        return parser.getText();
+    }
+
+    private static void expect(JsonToken actual, JsonToken expected, String name) throws InvalidProtocolBufferException {
+        if (actual != expected) {
+            throw new InvalidProtocolBufferException("Expect " + expected + " for " + name + " but got: " + actual);
+        }
+    }
+
+    private static void expectEnd(JsonParser parser) throws IOException {
+        JsonToken trailing = parser.nextToken();
+        if (trailing != null) {
+            throw new InvalidProtocolBufferException("Unexpected trailing content: " + trailing);
+        }
+    }
+}
@@ -0,0 +1,365 @@
+package com.github.protobufx.spring.gateway.grpc.filter;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.PrettyPrinter;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.CharacterEscapes;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.google.common.io.BaseEncoding;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.Descriptors;
+import com.google.protobuf.Duration;
+import com.google.protobuf.FieldMask;
+import com.google.protobuf.Message;
+import com.google.protobuf.Timestamp;
+import com.google.protobuf.util.Durations;
+import com.google.protobuf.util.FieldMaskUtil;
+import com.google.protobuf.util.JsonFormat;
+import com.google.protobuf.util.Timestamps;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Prints protobuf messages as UTF-8 JSON through a Jackson {@link JsonGenerator}, straight into an output stream.
+ * The output is the same as the one of {@link JsonFormat.Printer}, including its pretty printing layout,
+ * without building the intermediate String.
+ * Any, Struct, Value and ListValue are printed by the fallback {@link JsonFormat.Printer}.
+ */
+class StreamingJsonPrinter {
+    private static final JsonFactory JSON_FACTORY = StreamingJsonParser.JSON_FACTORY.copy()
+            .setCharacterEscapes(new JsonFormatCharacterEscapes())
+            .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+
+    private final JsonFormat.Printer fallbackPrinter;
+    private final boolean includingDefaultValueFields;
+    private final boolean prettyPrinting;
+    private final TranscodingPlans plans;
+
+    StreamingJsonPrinter(JsonFormat.Printer fallbackPrinter, boolean includingDefaultValueFields, boolean prettyPrinting) {
+        this(fallbackPrinter, includingDefaultValueFields, prettyPrinting, new TranscodingPlans());
+    }
+
+    /**
+     * @param fallbackPrinter the printer of Any, Struct, Value and ListValue
+     * @param includingDefaultValueFields whether fields without presence are printed even when they have their default value
+     * @param prettyPrinting whether the output is indented like the default JsonFormat output, or printed on a single line
+     * @param plans the plans of the method whose messages are printed, which order the fields by number
+     */
+    StreamingJsonPrinter(JsonFormat.Printer fallbackPrinter, boolean includingDefaultValueFields, boolean prettyPrinting,
+                         TranscodingPlans plans) {
+        this.fallbackPrinter = fallbackPrinter;
+        this.includingDefaultValueFields = includingDefaultValueFields;
+        this.prettyPrinting = prettyPrinting;
+        this.plans = plans;
+    }
+
+    /**
+     * Prints the message into the output stream, which is flushed but not closed.
+     */
+    void print(Message message, OutputStream outputStream) throws IOException {
+        try (JsonGenerator generator = createGenerator(outputStream)) {
+            writeMessage(generator, message);
+        }
+    }
+
+    JsonGenerator createGenerator(OutputStream outputStream) throws IOException {
+        JsonGenerator generator = JSON_FACTORY.createGenerator(outputStream);
+        if (prettyPrinting) {
+            generator.setPrettyPrinter(new JsonFormatPrettyPrinter());
+        }
+        return generator;
+    }
+
+    boolean isIncludingDefaultValueFields() {
+        return includingDefaultValueFields;
+    }
+
+    Descriptors.FieldDescriptor[] fieldsByNumber(Descriptors.Descriptor descriptor) {
+        return plans.of(descriptor).fieldsByNumber();
+    }
+
+    void writeMessage(JsonGenerator generator, Message message) throws IOException {
+        Descriptors.Descriptor descriptor = message.getDescriptorForType();
+        if (WellKnownTypes.isSpecial(descriptor)) {
+            writeWellKnownType(generator, message);
+            return;
+        }
+        generator.writeStartObject();
+        for (Descriptors.FieldDescriptor field : fieldsByNumber(descriptor)) {
+            if (field.isRepeated()) {
+                if (message.getRepeatedFieldCount(field) == 0 && !includingDefaultValueFields) {
+                    continue;
+                }
+            } else if (!message.hasField(field) && (field.hasPresence() || !includingDefaultValueFields)) {
+                continue;
+            }
+            generator.writeFieldName(field.getJsonName());
+            writeField(generator, field, message.getField(field));
+        }
+        generator.writeEndObject();
+    }
+
+    private void writeField(JsonGenerator generator, Descriptors.FieldDescriptor field, Object value) throws IOException {
+        if (field.isMapField()) {
+            Descriptors.Descriptor entryType = field.getMessageType();
+            Descriptors.FieldDescriptor keyField = entryType.findFieldByNumber(1);
+            Descriptors.FieldDescriptor valueField = entryType.findFieldByNumber(2);
+            generator.writeStartObject();
+            for (Object element : (List<?>) value) {
+                Message entry = (Message) element;
+                generator.writeFieldName(mapKey(keyField, entry.getField(keyField)));
+                writeValue(generator, valueField, entry.getField(valueField));
+            }
+            generator.writeEndObject();
+        } else if (field.isRepeated()) {
+            generator.writeStartArray();
+            for (Object element : (List<?>) value) {
+                writeValue(generator, field, element);
+            }
+            generator.writeEndArray();
+        } else {
+            writeValue(generator, field, value);
+        }
+    }
+
+    void writeValue(JsonGenerator generator, Descriptors.FieldDescriptor field, Object value) throws IOException {
+        switch (field.getType()) {
+            case INT32:
+            case SINT32:
+            case SFIXED32:
+                generator.writeNumber((Integer) value);
+                break;
+            case INT64:
+            case SINT64:
+            case SFIXED64:
+                generator.writeString(Long.toString((Long) value));
+                break;
+            case UINT32:
+            case FIXED32:
+                generator.writeNumber(Integer.toUnsignedLong((Integer) value));
+                break;
+            case UINT64:
+            case FIXED64:
+                generator.writeString(Long.toUnsignedString((Long) value));
+                break;
+            case FLOAT:
+                float floatValue = (Float) value;
+                if (Float.isNaN(floatValue) || Float.isInfinite(floatValue)) {
+                    generator.writeString(Float.toString(floatValue));
+                } else {
+                    generator.writeNumber(floatValue);
+                }
+                break;
+            case DOUBLE:
+                double doubleValue = (Double) value;
+                if (Double.isNaN(doubleValue) || Double.isInfinite(doubleValue)) {
+                    generator.writeString(Double.toString(doubleValue));
+                } else {
+                    generator.writeNumber(doubleValue);
+                }
+                break;
+            case BOOL:
+                generator.writeBoolean((Boolean) value);
+                break;
+            case STRING:
+                generator.writeString((String) value);
+                break;
+            case BYTES:
+                generator.writeString(BaseEncoding.base64().encode(((ByteString) value).toByteArray()));
+                break;
+            case ENUM:
+                Descriptors.EnumValueDescriptor enumValue = (Descriptors.EnumValueDescriptor) value;
+                if (enumValue.getType().getFullName().equals(WellKnownTypes.NULL_VALUE)) {
+                    generator.writeNull();
+                } else if (enumValue.getIndex() == -1) {
+                    // an unknown value of an open enum
+                    generator.writeNumber(enumValue.getNumber());
+                } else {
+                    generator.writeString(enumValue.getName());
+                }
+                break;
+            case MESSAGE:
+            case GROUP:
+                writeMessage(generator, (Message) value);
+                break;
+            default:
+                throw new IOException("Unsupported field type: " + field.getType());
+        }
+    }
+
+    private void writeWellKnownType(JsonGenerator generator, Message message) throws IOException {
+        Descriptors.Descriptor descriptor = message.getDescriptorForType();
+        switch (descriptor.getFullName()) {
+            case WellKnownTypes.TIMESTAMP:
+                generator.writeString(Timestamps.toString(Timestamp.newBuilder()
+                        .setSeconds((Long) message.getField(descriptor.findFieldByNumber(1)))
+                        .setNanos((Integer) message.getField(descriptor.findFieldByNumber(2)))
+                        .build()));
+                return;
+            case WellKnownTypes.DURATION:
+                generator.writeString(Durations.toString(Duration.newBuilder()
+                        .setSeconds((Long) message.getField(descriptor.findFieldByNumber(1)))
+                        .setNanos((Integer) message.getField(descriptor.findFieldByNumber(2)))
+                        .build()));
+                return;
+            case WellKnownTypes.FIELD_MASK:
+                Descriptors.FieldDescriptor paths = descriptor.findFieldByNumber(1);
+                FieldMask.Builder fieldMask = FieldMask.newBuilder();
+                for (Object path : (List<?>) message.getField(paths)) {
+                    fieldMask.addPaths((String) path);
+                }
+                generator.writeString(FieldMaskUtil.toJsonString(fieldMask.build()));
+                return;
+            default:
+                break;
+        }
+        if (WellKnownTypes.isWrapper(descriptor)) {
+            Descriptors.FieldDescriptor valueField = descriptor.findFieldByNumber(1);
+            writeValue(generator, valueField, message.getField(valueField));
+            return;
+        }
+        generator.writeRawValue(fallbackPrinter.print(message));
+    }
+
+    static String mapKey(Descriptors.FieldDescriptor keyField, Object key) {
+        switch (keyField.getType()) {
+            case UINT32:
+            case FIXED32:
+                return Integer.toUnsignedString((Integer) key);
+            case UINT64:
+            case FIXED64:
+                return Long.toUnsignedString((Long) key);
+            default:
+                return String.valueOf(key);
+        }
+    }
+
+    /**
+     * Reproduces the layout of JsonFormat: fields on their own lines indented by two spaces,
+     * array elements separated by ", " on the same line.
+     * Stateful, so a new instance is used for every message.
+     */
+    private static class JsonFormatPrettyPrinter implements PrettyPrinter {
+        private static final String[] INDENTS = new String[16];
+
+        static {
+            INDENTS[0] = "\n";
+            for (int i = 1; i < INDENTS.length; i++) {
+                INDENTS[i] = INDENTS[i - 1] + "  ";
+            }
+        }
+
+        private int depth;
+
+        private static String newLine(int depth) {
+            if (depth < INDENTS.length) {
+                return INDENTS[depth];
+            }
+            char[] spaces = new char[depth * 2];
+            Arrays.fill(spaces, ' ');
+            return "\n" + new String(spaces);
+        }
+
+        @Override
+        public void writeRootValueSeparator(JsonGenerator generator) {
+        }
+
+        @Override
+        public void writeStartObject(JsonGenerator generator) throws IOException {
+            generator.writeRaw('{');
+            depth++;
+        }
+
+        @Override
+        public void beforeObjectEntries(JsonGenerator generator) throws IOException {
+            generator.writeRaw(newLine(depth));
+        }
+
+        @Override
+        public void writeObjectFieldValueSeparator(JsonGenerator generator) throws IOException {
+            generator.writeRaw(": ");
+        }
+
+        @Override
+        public void writeObjectEntrySeparator(JsonGenerator generator) throws IOException {
+            generator.writeRaw(',');
+            generator.writeRaw(newLine(depth));
+        }
+
+        @Override
+        public void writeEndObject(JsonGenerator generator, int nrOfEntries) throws IOException {
+            depth--;
+            generator.writeRaw(newLine(depth));
+            generator.writeRaw('}');
+        }
+
+        @Override
+        public void writeStartArray(JsonGenerator generator) throws IOException {
+            generator.writeRaw('[');
+        }
+
+        @Override
+        public void beforeArrayValues(JsonGenerator generator) {
+        }
+
+        @Override
+        public void writeArrayValueSeparator(JsonGenerator generator) throws IOException {
+            generator.writeRaw(", ");
+        }
+
+        @Override
+        public void writeEndArray(JsonGenerator generator, int nrOfValues) throws IOException {
+            generator.writeRaw(']');
+        }
+    }
+
+    /**
+     * Escapes strings like the Gson instance used by JsonFormat: HTML-sensitive characters,
+     * control characters and line separators as lower-case unicode escapes.
+     */
+    private static class JsonFormatCharacterEscapes extends CharacterEscapes {
+        private static final int[] ESCAPES = standardAsciiEscapesForJSON();
+        private static final SerializableString[] ESCAPE_SEQUENCES = new SerializableString[128];
+
+        static {
+            for (int ch = 0; ch < 0x20; ch++) {
+                if (ESCAPES[ch] == ESCAPE_STANDARD) {
+                    ESCAPES[ch] = ESCAPE_CUSTOM;
+                    ESCAPE_SEQUENCES[ch] = unicodeEscape(ch);
+                }
+            }
+            for (char ch : new char[]{'<', '>', '&', '=', '\''}) {
+                ESCAPES[ch] = ESCAPE_CUSTOM;
+                ESCAPE_SEQUENCES[ch] = unicodeEscape(ch);
+            }
+        }
+
+        private static final SerializableString LINE_SEPARATOR = unicodeEscape(0x2028);
+        private static final SerializableString PARAGRAPH_SEPARATOR = unicodeEscape(0x2029);
+
+        private static SerializableString unicodeEscape(int ch) {
+            return new SerializedString(String.format("\\u%04x", ch));
+        }
+
+        @Override
+        public int[] getEscapeCodesForAscii() {
+            return ESCAPES;
+        }
+
+        @Override
+        public SerializableString getEscapeSequence(int ch) {
+            if (ch < ESCAPE_SEQUENCES.length) {
+                return ESCAPE_SEQUENCES[ch];
+            } else if (ch == 0x2028) {
+                return LINE_SEPARATOR;
+            } else if (ch == 0x2029) {
+                return PARAGRAPH_SEPARATOR;
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.github.protobufx.spring.gateway.grpc.filter;
+
+import org.springframework.http.MediaType;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * The HTTP representations of a gRPC response stream.
+ * Every response message is written as one JSON document, either as a line of
+ * newline-delimited JSON or as the data of a server-sent event.
+ */
+enum StreamingResponseFormat {
+    NDJSON(MediaType.APPLICATION_NDJSON_VALUE, "", "\n"),
+    SERVER_SENT_EVENTS(MediaType.TEXT_EVENT_STREAM_VALUE, "data: ", "\n\n");
+
+    private final String contentType;
+    private final byte[] prefix;
+    private final byte[] suffix;
+
+    StreamingResponseFormat(String contentType, String prefix, String suffix) {
+        this.contentType = contentType;
+        this.prefix = prefix.getBytes(StandardCharsets.UTF_8);
+        this.suffix = suffix.getBytes(StandardCharsets.UTF_8);
+    }
+
+    String getContentType() {
+        return contentType;
+    }
+
+    /**
+     * Chooses server-sent events when the client explicitly accepts them, otherwise newline-delimited JSON.
+     */
+    static StreamingResponseFormat negotiate(List<MediaType> accept) {
+        for (MediaType mediaType : accept) {
+            if (MediaType.TEXT_EVENT_STREAM.equalsTypeAndSubtype(mediaType)) {
+                return SERVER_SENT_EVENTS;
+            }
+        }
+        return NDJSON;
+    }
+
+    byte[] getPrefix() {
+        return prefix;
+    }
+
+    byte[] getSuffix() {
+        return suffix;
+    }
+
+    byte[] encode(String json) {
+        byte[] jsonBytes = json.getBytes(StandardCharsets.UTF_8);
+        byte[] bytes = new byte[prefix.length + jsonBytes.length + suffix.length];
+        System.arraycopy(prefix, 0, bytes, 0, prefix.length);
+        System.arraycopy(jsonBytes, 0, bytes, prefix.length, jsonBytes.length);
+        System.arraycopy(suffix, 0, bytes, prefix.length + jsonBytes.length, suffix.length);
+        return bytes;
+    }
+}
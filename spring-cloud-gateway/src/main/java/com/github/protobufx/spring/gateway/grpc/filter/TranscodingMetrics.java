@@ -0,0 +1,259 @@
+package com.github.protobufx.spring.gateway.grpc.filter;
+
+import io.grpc.Status;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+
+import javax.annotation.Nullable;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The Micrometer meters of the transcoding filter and of the descriptor repositories, tagged by route authority,
+ * full gRPC method name and status code.
+ * The meters are created once and then looked up by their tag values, so that recording a stage
+ * is only a lookup and a few atomic updates. Durations are measured with {@link System#nanoTime()}.
+ * Since the authorities and methods depend on the routes and on the backends, their number is bounded,
+ * and the meters of the ones beyond the bound are shared under the {@code other} tag value.
+ */
+public class TranscodingMetrics {
+    /**
+     * Records nothing, which is the default.
+     */
+    public static final TranscodingMetrics NOOP = new TranscodingMetrics();
+
+    public static final int DEFAULT_MAX_AUTHORITIES = 100;
+    public static final int DEFAULT_MAX_METHODS = 1000;
+    static final String OTHER = "other";
+
+    @Nullable
+    final MeterRegistry registry;
+    final int maxAuthorities;
+    final int maxMethods;
+    final boolean percentileHistograms;
+    final Map<String, AuthorityMeters> authorities = new ConcurrentHashMap<>();
+    // the methods of all authorities that have their own meters, at most maxMethods
+    final AtomicInteger methodCount = new AtomicInteger();
+
+    private TranscodingMetrics() {
+        this.registry = null;
+        this.maxAuthorities = 0;
+        this.maxMethods = 0;
+        this.percentileHistograms = false;
+    }
+
+    public TranscodingMetrics(MeterRegistry registry) {
+        this(registry, DEFAULT_MAX_AUTHORITIES, DEFAULT_MAX_METHODS, false);
+    }
+
+    /**
+     * @param maxAuthorities       the route authorities that have their own meters
+     * @param maxMethods           the methods of all authorities that have their own meters
+     * @param percentileHistograms whether the timers and summaries publish histogram buckets
+     */
+    public TranscodingMetrics(MeterRegistry registry, int maxAuthorities, int maxMethods, boolean percentileHistograms) {
+        this.registry = registry;
+        this.maxAuthorities = maxAuthorities;
+        this.maxMethods = maxMethods;
+        this.percentileHistograms = percentileHistograms;
+    }
+
+    /**
+     * Records the lookup of the method descriptor of a request.
+     */
+    void recordLookup(String authority, long nanos, boolean found) {
+        if (registry != null) {
+            (found ? authority(authority).lookupFound : authority(authority).lookupNotFound).record(nanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Records whether the descriptors of a service were already cached when looked up.
+     */
+    public void recordDescriptorCache(String authority, boolean hit) {
+        if (registry != null) {
+            (hit ? authority(authority).cacheHits : authority(authority).cacheMisses).increment();
+        }
+    }
+
+    /**
+     * Records a load of the descriptors of a service.
+     */
+    public void recordDescriptorLoad(String authority, long nanos, boolean success) {
+        if (registry != null) {
+            (success ? authority(authority).loads : authority(authority).failedLoads).record(nanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * @param fullMethodName the full gRPC method name, e.g. {@code example.echo.v1.EchoService/GetSound}
+     * @return the meters of the method, which record nothing if there is no registry
+     */
+    MethodMeters method(String authority, String fullMethodName) {
+        if (registry == null) {
+            return MethodMeters.NOOP;
+        }
+        return authority(authority).method(fullMethodName);
+    }
+
+    private AuthorityMeters authority(String authority) {
+        AuthorityMeters meters = authorities.get(authority);
+        if (meters == null) {
+            String tag = authorities.size() < maxAuthorities ? authority : OTHER;
+            meters = authorities.computeIfAbsent(tag, AuthorityMeters::new);
+        }
+        return meters;
+    }
+
+    private Timer timer(String name, String description, Tags tags) {
+        return Timer.builder(name)
+                .description(description)
+                .tags(tags)
+                .publishPercentileHistogram(percentileHistograms)
+                .register(registry);
+    }
+
+    private DistributionSummary summary(String name, String description, Tags tags) {
+        return DistributionSummary.builder(name)
+                .description(description)
+                .baseUnit("bytes")
+                .tags(tags)
+                .publishPercentileHistogram(percentileHistograms)
+                .register(registry);
+    }
+
+    private Counter counter(String name, String description, Tags tags) {
+        return Counter.builder(name)
+                .description(description)
+                .tags(tags)
+                .register(registry);
+    }
+
+    /**
+     * The meters of a route authority, which count towards the methods of all authorities.
+     */
+    class AuthorityMeters {
+        final String authority;
+        final Timer lookupFound;
+        final Timer lookupNotFound;
+        final Counter cacheHits;
+        final Counter cacheMisses;
+        final Timer loads;
+        final Timer failedLoads;
+        // by method name, including the methods beyond the bound, which share the meters of the other tag value
+        final Map<String, MethodMeters> methods = new ConcurrentHashMap<>();
+        @Nullable
+        volatile MethodMeters otherMethods;
+
+        AuthorityMeters(String authority) {
+            this.authority = authority;
+            Tags tags = Tags.of("authority", authority);
+            lookupFound = timer("grpc.gateway.route.lookup", "The lookup of the method descriptor of a request", tags.and("found", "true"));
+            lookupNotFound = timer("grpc.gateway.route.lookup", "The lookup of the method descriptor of a request", tags.and("found", "false"));
+            cacheHits = counter("grpc.gateway.descriptor.cache", "The lookups of the cached descriptors of a service", tags.and("result", "hit"));
+            cacheMisses = counter("grpc.gateway.descriptor.cache", "The lookups of the cached descriptors of a service", tags.and("result", "miss"));
+            loads = timer("grpc.gateway.descriptor.load", "The loads of the descriptors of a service", tags.and("outcome", "success"));
+            failedLoads = timer("grpc.gateway.descriptor.load", "The loads of the descriptors of a service", tags.and("outcome", "failure"));
+        }
+
+        MethodMeters method(String fullMethodName) {
+            MethodMeters meters = methods.get(fullMethodName);
+            if (meters == null) {
+                meters = methods.computeIfAbsent(fullMethodName, name ->
+                        methodCount.getAndUpdate(count -> Math.min(count + 1, maxMethods)) < maxMethods
+                                ? new MethodMeters(TranscodingMetrics.this, Tags.of("authority", authority, "method", name))
+                                : otherMethods());
+            }
+            return meters;
+        }
+
+        private MethodMeters otherMethods() {
+            MethodMeters meters = otherMethods;
+            if (meters == null) {
+                synchronized (this) {
+                    meters = otherMethods;
+                    if (meters == null) {
+                        meters = new MethodMeters(TranscodingMetrics.this, Tags.of("authority", authority, "method", OTHER));
+                        otherMethods = meters;
+                    }
+                }
+            }
+            return meters;
+        }
+    }
+
+    /**
+     * The meters of a method, created when the method is first called.
+     */
+    static class MethodMeters {
+        static final MethodMeters NOOP = new MethodMeters();
+
+        @Nullable
+        final TranscodingMetrics metrics;
+        final Tags tags;
+        final Timer decode;
+        final DistributionSummary requestSize;
+        final Timer encode;
+        final DistributionSummary responseSize;
+        // indexed by the value of the status code
+        final Timer[] calls = new Timer[Status.Code.values().length];
+
+        private MethodMeters() {
+            this.metrics = null;
+            this.tags = Tags.empty();
+            this.decode = null;
+            this.requestSize = null;
+            this.encode = null;
+            this.responseSize = null;
+        }
+
+        MethodMeters(TranscodingMetrics metrics, Tags tags) {
+            this.metrics = metrics;
+            this.tags = tags;
+            this.decode = metrics.timer("grpc.gateway.request.decode", "The decoding of a JSON request into a request message", tags);
+            this.requestSize = metrics.summary("grpc.gateway.request.size", "The size of a request body", tags);
+            this.encode = metrics.timer("grpc.gateway.response.encode", "The encoding of a response message into JSON", tags);
+            this.responseSize = metrics.summary("grpc.gateway.response.size", "The size of the body of a response message", tags);
+        }
+
+        void recordDecode(long nanos, long bytes) {
+            if (metrics != null) {
+                decode.record(nanos, TimeUnit.NANOSECONDS);
+                requestSize.record(bytes);
+            }
+        }
+
+        void recordEncode(long nanos, long bytes) {
+            if (metrics != null) {
+                encode.record(nanos, TimeUnit.NANOSECONDS);
+                responseSize.record(bytes);
+            }
+        }
+
+        /**
+         * Records the size of a response message that is written as it is received, so that it is not encoded.
+         */
+        void recordResponseSize(long bytes) {
+            if (metrics != null) {
+                responseSize.record(bytes);
+            }
+        }
+
+        void recordCall(long nanos, Status.Code code) {
+            if (metrics != null) {
+                Timer timer = calls[code.value()];
+                if (timer == null) {
+                    // racing threads register the same timer, which the registry returns to both
+                    timer = metrics.timer("grpc.gateway.backend.call", "The call of the backend method", tags.and("status", code.name()));
+                    calls[code.value()] = timer;
+                }
+                timer.record(nanos, TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package com.github.protobufx.spring.gateway.grpc.filter;
+
+import com.google.common.io.BaseEncoding;
+import com.google.common.primitives.Ints;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.Descriptors;
+import com.google.protobuf.DynamicMessage;
+import com.google.protobuf.util.Durations;
+import com.google.protobuf.util.FieldMaskUtil;
+import com.google.protobuf.util.JsonFormat;
+import com.google.protobuf.util.Timestamps;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.google.common.base.CaseFormat.LOWER_CAMEL;
+import static com.google.common.base.CaseFormat.LOWER_UNDERSCORE;
+
+/**
+ * The fields of a message type by their JSON name and by their number, and the resolved bindings of its path and query parameters.
+ * A parameter name such as {@code sound.soundId} or {@code sound.sound_id} is resolved once
+ * to its chain of field descriptors and to the converter of its value, and then read from the cache.
+ * Plans are built by the {@link TranscodingPlans} of a method, and live as long as its descriptor.
+ */
+class TranscodingPlan {
+    // bounds the names that are remembered, since query parameter names come from the client
+    static final int MAX_CACHED_NAMES = 1024;
+
+    private final Descriptors.Descriptor descriptor;
+    private final TranscodingPlans plans;
+    // the fields by their JSON name and by their original proto name
+    private final Map<String, Descriptors.FieldDescriptor> fieldsByName = new HashMap<>();
+    // the fields in the order in which they are printed
+    private final Descriptors.FieldDescriptor[] fieldsByNumber;
+    private final Map<String, Optional<FieldBinding>> bindings = new ConcurrentHashMap<>();
+
+    TranscodingPlan(Descriptors.Descriptor descriptor, TranscodingPlans plans) {
+        this.descriptor = descriptor;
+        this.plans = plans;
+        for (Descriptors.FieldDescriptor field : descriptor.getFields()) {
+            fieldsByName.put(field.getName(), field);
+            fieldsByName.put(field.getJsonName(), field);
+        }
+        }
+        this.fieldsByNumber = descriptor.getFields().stream()
+                .sorted(Comparator.comparingInt(Descriptors.FieldDescriptor::getNumber))
+                .toArray(Descriptors.FieldDescriptor[]::new);
+    }
+
+    /**
+     * @param name the JSON name or the original proto name of a field
+     * @return the field, or null if the message type has no such field
+     */
+    @Nullable
+    Descriptors.FieldDescriptor field(String name) {
+        return fieldsByName.get(name);
+    }
+
+    Descriptors.FieldDescriptor[] fieldsByNumber() {
+        return fieldsByNumber;
+    }
+
+    /**
+     * @param parameterName a dotted path of field names, in lowerCamelCase or in snake_case
+     * @return the binding, or null if the name does not resolve to a field that a parameter can set
+     */
+    @Nullable
+    FieldBinding binding(String parameterName) {
+        Optional<FieldBinding> binding = bindings.get(parameterName);
+        if (binding == null) {
+            binding = Optional.ofNullable(resolve(parameterName));
+            if (bindings.size() < MAX_CACHED_NAMES) {
+                bindings.putIfAbsent(parameterName, binding);
+            }
+        }
+        return binding.orElse(null);
+    }
+
+    @Nullable
+    private FieldBinding resolve(String parameterName) {
+        List<Descriptors.FieldDescriptor> fieldPath = new ArrayList<>();
+        Descriptors.Descriptor type = descriptor;
+        for (String fieldName : parameterName.split("\\.")) {
+            if (type == null) {
+                return null;
+            }
+            Descriptors.FieldDescriptor field = plans.of(type).field(fieldName);
+            if (field == null) {
+                field = type.findFieldByName(LOWER_CAMEL.to(LOWER_UNDERSCORE, fieldName));
+            }
+            if (field == null || field.isMapField()) {
+                return null;
+            }
+            fieldPath.add(field);
+            // only a singular message can be traversed, the last field may also be a well-known type
+            type = field.getJavaType() == Descriptors.FieldDescriptor.JavaType.MESSAGE && !field.isRepeated()
+                    ? field.getMessageType() : null;
+        }
+        Descriptors.FieldDescriptor leaf = fieldPath.get(fieldPath.size() - 1);
+        if (leaf.isRepeated() && leaf.getJavaType() == Descriptors.FieldDescriptor.JavaType.MESSAGE
+                && !WellKnownTypes.isSpecial(leaf.getMessageType())) {
+            return null;
+        }
+        return new FieldBinding(fieldPath.toArray(new Descriptors.FieldDescriptor[0]), converter(leaf));
+    }
+
+    private static ValueConverter converter(Descriptors.FieldDescriptor field) {
+        switch (field.getType()) {
+            case INT32:
+            case SINT32:
+            case SFIXED32:
+                return (value, parser) -> Integer.parseInt(value);
+            case UINT32:
+            case FIXED32:
+                return (value, parser) -> Integer.parseUnsignedInt(value);
+            case INT64:
+            case SINT64:
+            case SFIXED64:
+                return (value, parser) -> Long.parseLong(value);
+            case UINT64:
+            case FIXED64:
+                return (value, parser) -> Long.parseUnsignedLong(value);
+            case FLOAT:
+                return (value, parser) -> Float.parseFloat(value);
+            case DOUBLE:
+                return (value, parser) -> Double.parseDouble(value);
+            case BOOL:
+                return (value, parser) -> parseBool(value);
+            case STRING:
+                return (value, parser) -> value;
+            case BYTES:
+                return (value, parser) -> ByteString.copyFrom(value.contains("-") || value.contains("_")
+                        ? BaseEncoding.base64Url().decode(value) : BaseEncoding.base64().decode(value));
+            case ENUM:
+                Descriptors.EnumDescriptor enumType = field.getEnumType();
+                return (value, parser) -> {
+                    Descriptors.EnumValueDescriptor enumValue = enumType.findValueByName(value);
+                    if (enumValue == null) {
+                        // like in JSON, the value may also be given as its number
+                        Integer number = Ints.tryParse(value);
+                        enumValue = number == null ? null : enumType.findValueByNumber(number);
+                    }
+                    if (enumValue == null) {
+                        throw new IllegalArgumentException("Invalid enum value: " + value + " for enum type: " + enumType.getFullName());
+                    }
+                    return enumValue;
+                };
+            default:
+                return messageConverter(field.getMessageType());
+        }
+    }
+
+    private static ValueConverter messageConverter(Descriptors.Descriptor type) {
+        switch (type.getFullName()) {
+            case WellKnownTypes.TIMESTAMP:
+                return (value, parser) -> WellKnownTypes.timestamp(type, Timestamps.parse(value));
+            case WellKnownTypes.DURATION:
+                return (value, parser) -> WellKnownTypes.duration(type, Durations.parse(value));
+            case WellKnownTypes.FIELD_MASK:
+                return (value, parser) -> WellKnownTypes.fieldMask(type, FieldMaskUtil.fromJsonString(value));
+            default:
+                break;
+        }
+        if (WellKnownTypes.isWrapper(type)) {
+            Descriptors.FieldDescriptor valueField = type.findFieldByNumber(1);
+            ValueConverter valueConverter = converter(valueField);
+            return (value, parser) -> DynamicMessage.newBuilder(type)
+                    .setField(valueField, valueConverter.convert(value, parser))
+                    .build();
+        }
+        // any other message is given as a JSON string value, e.g. a google.protobuf.Value
+        return (value, parser) -> {
+            DynamicMessage.Builder message = DynamicMessage.newBuilder(type);
+            parser.merge(StreamingJsonParser.OBJECT_MAPPER.writeValueAsString(value), message);
+            return message.build();
+        };
+    }
+
+    private static boolean parseBool(String value) {
+        if (value.equals("true")) {
+            return true;
+        } else if (value.equals("false")) {
+            return false;
+        }
+        throw new IllegalArgumentException("Invalid bool value: " + value);
+    }
+
+    /**
+     * The field descriptors from the request message to the field that is set, and the converter of its values.
+     */
+    static class FieldBinding {
+        final Descriptors.FieldDescriptor[] fieldPath;
+        final ValueConverter converter;
+
+        FieldBinding(Descriptors.FieldDescriptor[] fieldPath, ValueConverter converter) {
+            this.fieldPath = fieldPath;
+            this.converter = converter;
+        }
+
+        Descriptors.FieldDescriptor leaf() {
+            return fieldPath[fieldPath.length - 1];
+        }
+    }
+
+    @FunctionalInterface
+    interface ValueConverter {
+        Object convert(String value, JsonFormat.Parser parser) throws Exception;
+    }
+}
@@ -0,0 +1,23 @@
+package com.github.protobufx.spring.gateway.grpc.filter;
+
+import com.google.protobuf.Descriptors;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The plans of the message types that a method reads and writes, each built when its type is first used.
+ * It is held by the {@link HttpRuleMethodDescriptor}, so the plans are dropped with the index of the descriptors
+ * rather than kept by a global cache, whose values would reach their own keys.
+ */
+class TranscodingPlans {
+    private final Map<Descriptors.Descriptor, TranscodingPlan> plans = new ConcurrentHashMap<>();
+
+    TranscodingPlan of(Descriptors.Descriptor descriptor) {
+        TranscodingPlan plan = plans.get(descriptor);
+        if (plan == null) {
+            plan = plans.computeIfAbsent(descriptor, type -> new TranscodingPlan(type, this));
+        }
+        return plan;
+    }
+}
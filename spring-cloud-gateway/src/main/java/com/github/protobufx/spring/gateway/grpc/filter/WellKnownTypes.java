@@ -0,0 +1,85 @@
+package com.github.protobufx.spring.gateway.grpc.filter;
+
+import com.google.protobuf.Descriptors;
+import com.google.protobuf.DynamicMessage;
+import com.google.protobuf.Duration;
+import com.google.protobuf.FieldMask;
+import com.google.protobuf.Timestamp;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Helpers for the well-known types that have a special JSON representation.
+ * Descriptors built from a reflected FileDescriptorSet are not the generated ones,
+ * so the types are recognized by their full name and converted through their field numbers.
+ */
+final class WellKnownTypes {
+    static final String ANY = "google.protobuf.Any";
+    static final String TIMESTAMP = "google.protobuf.Timestamp";
+    static final String DURATION = "google.protobuf.Duration";
+    static final String FIELD_MASK = "google.protobuf.FieldMask";
+    static final String STRUCT = "google.protobuf.Struct";
+    static final String VALUE = "google.protobuf.Value";
+    static final String LIST_VALUE = "google.protobuf.ListValue";
+    static final String EMPTY = "google.protobuf.Empty";
+    static final String NULL_VALUE = "google.protobuf.NullValue";
+
+    private static final Set<String> WRAPPERS = new HashSet<>(Arrays.asList(
+            "google.protobuf.DoubleValue",
+            "google.protobuf.FloatValue",
+            "google.protobuf.Int64Value",
+            "google.protobuf.UInt64Value",
+            "google.protobuf.Int32Value",
+            "google.protobuf.UInt32Value",
+            "google.protobuf.BoolValue",
+            "google.protobuf.StringValue",
+            "google.protobuf.BytesValue"));
+
+    private WellKnownTypes() {
+    }
+
+    static boolean isWrapper(Descriptors.Descriptor descriptor) {
+        return WRAPPERS.contains(descriptor.getFullName());
+    }
+
+    /**
+     * Whether the type is represented by a JSON value rather than by a JSON object of its fields.
+     */
+    static boolean isSpecial(Descriptors.Descriptor descriptor) {
+        String fullName = descriptor.getFullName();
+        return fullName.startsWith("google.protobuf.")
+                && (WRAPPERS.contains(fullName)
+                || fullName.equals(ANY)
+                || fullName.equals(TIMESTAMP)
+                || fullName.equals(DURATION)
+                || fullName.equals(FIELD_MASK)
+                || fullName.equals(STRUCT)
+                || fullName.equals(VALUE)
+                || fullName.equals(LIST_VALUE));
+    }
+
+    static DynamicMessage timestamp(Descriptors.Descriptor type, Timestamp timestamp) {
+        return DynamicMessage.newBuilder(type)
+                .setField(type.findFieldByNumber(1), timestamp.getSeconds())
+                .setField(type.findFieldByNumber(2), timestamp.getNanos())
+                .build();
+    }
+
+    static DynamicMessage duration(Descriptors.Descriptor type, Duration duration) {
+        return DynamicMessage.newBuilder(type)
+                .setField(type.findFieldByNumber(1), duration.getSeconds())
+                .setField(type.findFieldByNumber(2), duration.getNanos())
+                .build();
+    }
+
+    static DynamicMessage fieldMask(Descriptors.Descriptor type, FieldMask fieldMask) {
+        DynamicMessage.Builder builder = DynamicMessage.newBuilder(type);
+        Descriptors.FieldDescriptor paths = type.findFieldByNumber(1);
+        for (String path : fieldMask.getPathsList()) {
+            builder.addRepeatedField(paths, path);
+        }
+        return builder.build();
+    }
+}
@@ -0,0 +1,330 @@
+package com.github.protobufx.spring.gateway.grpc.filter;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.Descriptors;
+import com.google.protobuf.DynamicMessage;
+import com.google.protobuf.ExtensionRegistryLite;
+import com.google.protobuf.WireFormat;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Prints serialized protobuf messages as JSON without parsing them into {@link DynamicMessage}s.
+ * Every message is scanned once to find where its fields are, then the fields are read from the
+ * wire format in field number order and written straight to the {@link JsonGenerator}.
+ * The output is the same as the one of {@link StreamingJsonPrinter}, which is used for the well-known types
+ * and for the rare singular message fields that are split across the wire and have to be merged.
+ */
+class WireJsonPrinter {
+    private static final int INITIAL_ENTRIES = 8;
+
+    private final StreamingJsonPrinter printer;
+
+    WireJsonPrinter(StreamingJsonPrinter printer) {
+        this.printer = printer;
+    }
+
+    /**
+     * Prints the serialized message of the given type into the output stream, which is flushed but not closed.
+     */
+    void print(Descriptors.Descriptor type, byte[] message, OutputStream outputStream) throws IOException {
+        try (JsonGenerator generator = printer.createGenerator(outputStream)) {
+            writeMessage(generator, type, message, 0, message.length);
+        }
+    }
+
+    private void writeMessage(JsonGenerator generator, Descriptors.Descriptor type, byte[] buffer, int offset, int limit) throws IOException {
+        if (WellKnownTypes.isSpecial(type)) {
+            printer.writeMessage(generator, parse(type, buffer, offset, limit));
+            return;
+        }
+        FieldEntries entries = FieldEntries.scan(type, buffer, offset, limit);
+        generator.writeStartObject();
+        for (Descriptors.FieldDescriptor field : printer.fieldsByNumber(type)) {
+            int fieldIndex = field.getIndex();
+            if (field.isRepeated()) {
+                if (entries.last[fieldIndex] < 0 && !printer.isIncludingDefaultValueFields()) {
+                    continue;
+                }
+                generator.writeFieldName(field.getJsonName());
+                if (field.isMapField()) {
+                    writeMap(generator, field, entries, buffer);
+                } else {
+                    writeRepeated(generator, field, entries, buffer);
+                }
+            } else if (entries.last[fieldIndex] < 0 || !entries.isOneofWinner(field)) {
+                if (!field.hasPresence() && printer.isIncludingDefaultValueFields()) {
+                    generator.writeFieldName(field.getJsonName());
+                    printer.writeValue(generator, field, field.getDefaultValue());
+                }
+            } else if (field.getJavaType() == Descriptors.FieldDescriptor.JavaType.MESSAGE) {
+                generator.writeFieldName(field.getJsonName());
+                writeSingularMessage(generator, field, entries, buffer);
+            } else {
+                int entry = entries.last[fieldIndex];
+                Object value = readScalar(field, buffer, entries.start(entry), entries.end(entry));
+                if (value == null) {
+                    continue;
+                }
+                if (!field.hasPresence() && !printer.isIncludingDefaultValueFields() && isDefault(field, value)) {
+                    continue;
+                }
+                generator.writeFieldName(field.getJsonName());
+                printer.writeValue(generator, field, value);
+            }
+        }
+        generator.writeEndObject();
+    }
+
+    private void writeSingularMessage(JsonGenerator generator, Descriptors.FieldDescriptor field, FieldEntries entries,
+                                      byte[] buffer) throws IOException {
+        int fieldIndex = field.getIndex();
+        if (entries.first[fieldIndex] == entries.last[fieldIndex]) {
+            int entry = entries.last[fieldIndex];
+            writeMessage(generator, field.getMessageType(), buffer, entries.start(entry), entries.end(entry));
+            return;
+        }
+        // a singular message split across the wire is merged, like the protobuf parser does
+        DynamicMessage.Builder builder = DynamicMessage.newBuilder(field.getMessageType());
+        for (int entry = entries.first[fieldIndex]; entry <= entries.last[fieldIndex]; entry++) {
+            if (entries.fieldIndex(entry) == fieldIndex) {
+                builder.mergeFrom(CodedInputStream.newInstance(buffer, entries.start(entry), entries.end(entry) - entries.start(entry)),
+                        ExtensionRegistryLite.getEmptyRegistry());
+            }
+        }
+        printer.writeMessage(generator, builder.build());
+    }
+
+    private void writeRepeated(JsonGenerator generator, Descriptors.FieldDescriptor field, FieldEntries entries,
+                               byte[] buffer) throws IOException {
+        int fieldIndex = field.getIndex();
+        generator.writeStartArray();
+        for (int entry = entries.first[fieldIndex]; entry >= 0 && entry <= entries.last[fieldIndex]; entry++) {
+            if (entries.fieldIndex(entry) != fieldIndex) {
+                continue;
+            }
+            int start = entries.start(entry);
+            int end = entries.end(entry);
+            if (field.getJavaType() == Descriptors.FieldDescriptor.JavaType.MESSAGE) {
+                writeMessage(generator, field.getMessageType(), buffer, start, end);
+            } else if (entries.wireType(entry) == WireFormat.WIRETYPE_LENGTH_DELIMITED && field.isPackable()) {
+                CodedInputStream input = CodedInputStream.newInstance(buffer, start, end - start);
+                while (!input.isAtEnd()) {
+                    Object value = readScalar(field, input);
+                    if (value != null) {
+                        printer.writeValue(generator, field, value);
+                    }
+                }
+            } else {
+                Object value = readScalar(field, buffer, start, end);
+                if (value != null) {
+                    printer.writeValue(generator, field, value);
+                }
+            }
+        }
+        generator.writeEndArray();
+    }
+
+    private void writeMap(JsonGenerator generator, Descriptors.FieldDescriptor field, FieldEntries entries,
+                          byte[] buffer) throws IOException {
+        int fieldIndex = field.getIndex();
+        Descriptors.Descriptor entryType = field.getMessageType();
+        Descriptors.FieldDescriptor keyField = entryType.findFieldByNumber(1);
+        Descriptors.FieldDescriptor valueField = entryType.findFieldByNumber(2);
+        generator.writeStartObject();
+        for (int entry = entries.first[fieldIndex]; entry >= 0 && entry <= entries.last[fieldIndex]; entry++) {
+            if (entries.fieldIndex(entry) != fieldIndex) {
+                continue;
+            }
+            FieldEntries mapEntry = FieldEntries.scan(entryType, buffer, entries.start(entry), entries.end(entry));
+            int key = mapEntry.last[keyField.getIndex()];
+            Object keyValue = key < 0
+                    ? keyField.getDefaultValue()
+                    : readScalar(keyField, buffer, mapEntry.start(key), mapEntry.end(key));
+            generator.writeFieldName(StreamingJsonPrinter.mapKey(keyField, keyValue));
+            int value = mapEntry.last[valueField.getIndex()];
+            if (valueField.getJavaType() == Descriptors.FieldDescriptor.JavaType.MESSAGE) {
+                if (value < 0) {
+                    printer.writeMessage(generator, DynamicMessage.getDefaultInstance(valueField.getMessageType()));
+                } else {
+                    writeSingularMessage(generator, valueField, mapEntry, buffer);
+                }
+            } else {
+                Object valueValue = value < 0
+                        ? valueField.getDefaultValue()
+                        : readScalar(valueField, buffer, mapEntry.start(value), mapEntry.end(value));
+                printer.writeValue(generator, valueField, valueValue == null ? valueField.getDefaultValue() : valueValue);
+            }
+        }
+        generator.writeEndObject();
+    }
+
+    /**
+     * Reads a scalar value recorded by {@link FieldEntries}, or returns null if it cannot be represented.
+     */
+    private static Object readScalar(Descriptors.FieldDescriptor field, byte[] buffer, int start, int end) throws IOException {
+        switch (field.getType()) {
+            case STRING:
+                return new String(buffer, start, end - start, StandardCharsets.UTF_8);
+            case BYTES:
+                return ByteString.copyFrom(buffer, start, end - start);
+            default:
+                return readScalar(field, CodedInputStream.newInstance(buffer, start, end - start));
+        }
+    }
+
+    private static Object readScalar(Descriptors.FieldDescriptor field, CodedInputStream input) throws IOException {
+        switch (field.getType()) {
+            case INT32:
+                return input.readInt32();
+            case SINT32:
+                return input.readSInt32();
+            case SFIXED32:
+                return input.readSFixed32();
+            case UINT32:
+                return input.readUInt32();
+            case FIXED32:
+                return input.readFixed32();
+            case INT64:
+                return input.readInt64();
+            case SINT64:
+                return input.readSInt64();
+            case SFIXED64:
+                return input.readSFixed64();
+            case UINT64:
+                return input.readUInt64();
+            case FIXED64:
+                return input.readFixed64();
+            case FLOAT:
+                return input.readFloat();
+            case DOUBLE:
+                return input.readDouble();
+            case BOOL:
+                return input.readBool();
+            case ENUM:
+                int number = input.readEnum();
+                Descriptors.EnumDescriptor enumType = field.getEnumType();
+                // unknown values of a closed enum are unknown fields, which are not printed
+                return enumType.isClosed()
+                        ? enumType.findValueByNumber(number)
+                        : enumType.findValueByNumberCreatingIfUnknown(number);
+            default:
+                throw new IOException("Unexpected field type: " + field.getType());
+        }
+    }
+
+    private static boolean isDefault(Descriptors.FieldDescriptor field, Object value) {
+        return value.equals(field.getDefaultValue());
+    }
+
+    private static DynamicMessage parse(Descriptors.Descriptor type, byte[] buffer, int offset, int limit) throws IOException {
+        return DynamicMessage.newBuilder(type)
+                .mergeFrom(CodedInputStream.newInstance(buffer, offset, limit - offset), ExtensionRegistryLite.getEmptyRegistry())
+                .build();
+    }
+
+    /**
+     * The known fields of a serialized message, in wire order.
+     * Every entry is the field index, the wire type and the [start, end) range of the value,
+     * which is the payload of a length-delimited value.
+     */
+    private static class FieldEntries {
+        final Descriptors.Descriptor type;
+        final int[] first;
+        final int[] last;
+        int[] entries = new int[INITIAL_ENTRIES * 4];
+        int size;
+
+        FieldEntries(Descriptors.Descriptor type) {
+            this.type = type;
+            this.first = new int[type.getFields().size()];
+            this.last = new int[type.getFields().size()];
+            Arrays.fill(first, -1);
+            Arrays.fill(last, -1);
+        }
+
+        static FieldEntries scan(Descriptors.Descriptor type, byte[] buffer, int offset, int limit) throws IOException {
+            FieldEntries fieldEntries = new FieldEntries(type);
+            CodedInputStream input = CodedInputStream.newInstance(buffer, offset, limit - offset);
+            while (!input.isAtEnd()) {
+                int tag = input.readTag();
+                Descriptors.FieldDescriptor field = type.findFieldByNumber(WireFormat.getTagFieldNumber(tag));
+                int wireType = WireFormat.getTagWireType(tag);
+                if (field == null || !isExpectedWireType(field, wireType)) {
+                    // unknown fields are not printed
+                    input.skipField(tag);
+                    continue;
+                }
+                int start;
+                if (wireType == WireFormat.WIRETYPE_LENGTH_DELIMITED) {
+                    int length = input.readRawVarint32();
+                    start = offset + input.getTotalBytesRead();
+                    input.skipRawBytes(length);
+                } else {
+                    start = offset + input.getTotalBytesRead();
+                    input.skipField(tag);
+                }
+                fieldEntries.add(field.getIndex(), wireType, start, offset + input.getTotalBytesRead());
+            }
+            return fieldEntries;
+        }
+
+        private static boolean isExpectedWireType(Descriptors.FieldDescriptor field, int wireType) {
+            return wireType == field.getLiteType().getWireType()
+                    || (wireType == WireFormat.WIRETYPE_LENGTH_DELIMITED && field.isPackable());
+        }
+
+        private void add(int fieldIndex, int wireType, int start, int end) {
+            if (size * 4 == entries.length) {
+                entries = Arrays.copyOf(entries, entries.length * 2);
+            }
+            int i = size * 4;
+            entries[i] = fieldIndex;
+            entries[i + 1] = wireType;
+            entries[i + 2] = start;
+            entries[i + 3] = end;
+            if (first[fieldIndex] < 0) {
+                first[fieldIndex] = size;
+            }
+            last[fieldIndex] = size;
+            size++;
+        }
+
+        int fieldIndex(int entry) {
+            return entries[entry * 4];
+        }
+
+        int wireType(int entry) {
+            return entries[entry * 4 + 1];
+        }
+
+        int start(int entry) {
+            return entries[entry * 4 + 2];
+        }
+
+        int end(int entry) {
+            return entries[entry * 4 + 3];
+        }
+
+        /**
+         * Whether the field is the member of its oneof that is set, which is the last one on the wire.
+         */
+        boolean isOneofWinner(Descriptors.FieldDescriptor field) {
+            Descriptors.OneofDescriptor oneof = field.getContainingOneof();
+            if (oneof == null) {
+                return true;
+            }
+            for (Descriptors.FieldDescriptor member : oneof.getFields()) {
+                if (last[member.getIndex()] > last[field.getIndex()]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
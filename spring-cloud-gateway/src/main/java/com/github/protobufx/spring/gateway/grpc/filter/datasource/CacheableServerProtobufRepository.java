@@ -7,60 +7,299 @@ import com.github.protobufx.spring.gateway.grpc.filter.ChannelRepository;
 import com.github.protobufx.spring.gateway.grpc.filter.FileDescriptorIndex;
 import com.github.protobufx.spring.gateway.grpc.filter.HttpRuleMethodDescriptor;
 import com.github.protobufx.spring.gateway.grpc.filter.ProtobufRepository;
+import com.github.protobufx.spring.gateway.grpc.filter.TranscodingMetrics;
 import com.google.api.AnnotationsProto;
-import com.google.common.cache.Cache;
-import com.google.common.cache.CacheBuilder;
 import com.google.protobuf.ByteString;
 import com.google.protobuf.DescriptorProtos;
 import com.google.protobuf.ExtensionRegistry;
 import com.google.protobuf.InvalidProtocolBufferException;
-import io.grpc.Channel;
-import lombok.SneakyThrows;
+import io.grpc.stub.ClientCallStreamObserver;
+import io.grpc.stub.ClientResponseObserver;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
+import javax.annotation.Nullable;
 import java.io.IOException;
-import java.util.Iterator;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Optional;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+/**
+ * A repository loading the descriptors of each service with the ServerReflectionExtension service of the backend,
+ * and refreshing them every given duration in seconds.
+ * Descriptors are loaded with the async stub, and concurrent lookups of a service share a single in-flight load.
+ * Once loaded, lookups keep being served by the current index while a new one is loaded in the background,
+ * and the current index is kept if the refresh fails. A refresh only receives the files that changed,
+ * and only links them again along with the files depending on them. Refreshes are spread by a random jitter,
+ * so that the services are not refreshed all at once.
+ * With a {@link DescriptorSnapshotStore}, the descriptors also survive a restart of the gateway.
+ */
+@Slf4j
 public class CacheableServerProtobufRepository implements ProtobufRepository {
+    private static final ExtensionRegistry EXTENSION_REGISTRY = createExtensionRegistry();
+    // a refresh happens up to this fraction of the duration early
+    static final double REFRESH_JITTER = 0.2;
+    // a failed refresh is retried after the duration, or after this interval if shorter
+    static final Duration MAX_RETRY_INTERVAL = Duration.ofSeconds(10);
 
     ChannelRepository channelRepository;
-    Cache<String, FileDescriptorIndex> cache;
+    Duration duration;
+    @Nullable
+    DescriptorSnapshotStore snapshotStore;
+    Map<String, CachedIndex> cache = new ConcurrentHashMap<>();
+    TranscodingMetrics metrics = TranscodingMetrics.NOOP;
 
     public CacheableServerProtobufRepository(ChannelRepository channelRepository, long duration) {
         this.channelRepository = channelRepository;
-        this.cache = CacheBuilder.newBuilder()
-                .expireAfterWrite(duration, TimeUnit.SECONDS)
-                .build();
+        this.duration = Duration.ofSeconds(duration);
     }
 
-    @SneakyThrows
+    /**
+     * Creates a repository saving the descriptors of every service to the store.
+     * The descriptors already in the store are indexed right away, and revalidated in the background.
+     */
+    public CacheableServerProtobufRepository(ChannelRepository channelRepository, long duration, DescriptorSnapshotStore snapshotStore) {
+        this(channelRepository, duration);
+        this.snapshotStore = snapshotStore;
+        preload();
+    }
+
+    /**
+     * Records the cache hits and misses and the load times of the descriptors.
+     */
+    public void setMetrics(TranscodingMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    void preload() {
+        Map<String, ReflectServerDescriptorResponse> savedSnapshots;
+        try {
+            savedSnapshots = snapshotStore.loadAll();
+        } catch (IOException e) {
+            log.warn("Unable to read the saved descriptors: {}", e.getMessage(), e);
+            return;
+        }
+        savedSnapshots.forEach((serviceId, saved) -> {
+            try {
+                CachedIndex cachedIndex = new CachedIndex(serviceId);
+                cachedIndex.update(createSnapshot(saved, null));
+                cache.put(serviceId, cachedIndex);
+                cachedIndex.refreshing.set(true);
+                cachedIndex.refresh(cachedIndex.snapshot);
+            } catch (RuntimeException e) {
+                log.warn("Unable to index the saved descriptors of {}: {}", serviceId, e.getMessage(), e);
+            }
+        });
+    }
+
+    /**
+     * Blocks until the descriptors are loaded, so it must not be called on an event loop thread.
+     */
     @Override
     public Optional<HttpRuleMethodDescriptor> findMethodDescriptor(String serviceId, String method, String path) {
-        FileDescriptorIndex index = cache.get(serviceId, () -> {
-            Channel channel = channelRepository.findChannel(serviceId);
-            ServerReflectionExtensionGrpc.ServerReflectionExtensionBlockingStub stub = ServerReflectionExtensionGrpc.newBlockingStub(channel);
-            Iterator<ReflectServerDescriptorResponse> response = stub.reflectServerDescriptor(ReflectServerDescriptorRequest.getDefaultInstance());
-            ByteString.Output output = ByteString.newOutput();
-            while (response.hasNext()) {
-                ReflectServerDescriptorResponse next = response.next();
-                try {
-                    next.getFileDescriptorSet().writeTo(output);
-                } catch (IOException e) {
-                    throw new RuntimeException(e);
-                }
+        return findMethodDescriptorAsync(serviceId, method, path).block();
+    }
+
+    @Override
+    public Mono<Optional<HttpRuleMethodDescriptor>> findMethodDescriptorAsync(String serviceId, String method, String path) {
+        CachedIndex cachedIndex = cache.computeIfAbsent(serviceId, CachedIndex::new);
+        metrics.recordDescriptorCache(serviceId, cachedIndex.snapshot != null);
+        return cachedIndex.get()
+                .map(snapshot -> Optional.ofNullable(snapshot.index.get(method, path)));
+    }
+
+    /**
+     * Loads the files of the service, or only the files that changed since the previous snapshot.
+     */
+    Mono<Snapshot> load(String serviceId, @Nullable Snapshot previous) {
+        ReflectServerDescriptorRequest request = previous == null
+                ? ReflectServerDescriptorRequest.getDefaultInstance()
+                : ReflectServerDescriptorRequest.newBuilder()
+                        .setKnownVersion(previous.version)
+                        .putAllKnownFileHashes(previous.fileHashes)
+                        .build();
+        return Mono.defer(() -> {
+            long loadStart = System.nanoTime();
+            return reflectServerDescriptor(serviceId, request)
+                    // linking the descriptors of a large server takes a while, keep it off the gRPC and Netty threads
+                    .publishOn(Schedulers.boundedElastic())
+                    .map(response -> {
+                        if (previous != null && response.getNotModified()) {
+                            return previous;
+                        }
+                        Snapshot snapshot = createSnapshot(response, previous);
+                        save(serviceId, snapshot);
+                        return snapshot;
+                    })
+                    .doOnNext(loaded -> metrics.recordDescriptorLoad(serviceId, System.nanoTime() - loadStart, true))
+                    .doOnError(e -> metrics.recordDescriptorLoad(serviceId, System.nanoTime() - loadStart, false));
+        });
+    }
+
+    void save(String serviceId, Snapshot snapshot) {
+        if (snapshotStore == null) {
+            return;
+        }
+        try {
+            snapshotStore.save(serviceId, ReflectServerDescriptorResponse.newBuilder()
+                    .setFileDescriptorSet(DescriptorProtos.FileDescriptorSet.newBuilder()
+                            .addAllFile(snapshot.files.values())
+                            .build()
+                            .toByteString())
+                    .setVersion(snapshot.version)
+                    .putAllFileHashes(snapshot.fileHashes)
+                    .build());
+        } catch (IOException e) {
+            log.warn("Unable to save the descriptors of {}: {}", serviceId, e.getMessage(), e);
+        }
+    }
+
+    Mono<ReflectServerDescriptorResponse> reflectServerDescriptor(String serviceId, ReflectServerDescriptorRequest request) {
+        return Mono.create(sink -> ServerReflectionExtensionGrpc.newStub(channelRepository.findChannel(serviceId))
+                .reflectServerDescriptor(request,
+                        new ClientResponseObserver<ReflectServerDescriptorRequest, ReflectServerDescriptorResponse>() {
+                            final ReflectServerDescriptorResponse.Builder merged = ReflectServerDescriptorResponse.newBuilder();
+
+                            @Override
+                            public void beforeStart(ClientCallStreamObserver<ReflectServerDescriptorRequest> requestStream) {
+                                sink.onCancel(() -> requestStream.cancel("Descriptor lookup cancelled", null));
+                            }
+
+                            @Override
+                            public void onNext(ReflectServerDescriptorResponse response) {
+                                // each response holds a part of the serialized FileDescriptorSet
+                                merged.setFileDescriptorSet(merged.getFileDescriptorSet().concat(response.getFileDescriptorSet()))
+                                        .putAllFileHashes(response.getFileHashesMap())
+                                        .setNotModified(merged.getNotModified() || response.getNotModified());
+                                if (!response.getVersion().isEmpty()) {
+                                    merged.setVersion(response.getVersion());
+                                }
+                            }
+
+                            @Override
+                            public void onError(Throwable t) {
+                                sink.error(t);
+                            }
+
+                            @Override
+                            public void onCompleted() {
+                                sink.success(merged.build());
+                            }
+                        }));
+    }
+
+    /**
+     * The index of a service, which is loaded by the first lookups and then refreshed in the background.
+     */
+    class CachedIndex {
+        final String serviceId;
+        // shared by the lookups until the first load succeeds, a failed load is tried again by the next lookup
+        final Mono<Snapshot> initialLoad;
+        final AtomicBoolean refreshing = new AtomicBoolean();
+        @Nullable
+        volatile Snapshot snapshot;
+        volatile long refreshAt;
+
+        CachedIndex(String serviceId) {
+            this.serviceId = serviceId;
+            this.initialLoad = load(serviceId, null)
+                    .doOnNext(this::update)
+                    .cache(loaded -> Duration.ZERO, e -> Duration.ZERO, () -> Duration.ZERO);
+        }
+
+        Mono<Snapshot> get() {
+            Snapshot current = snapshot;
+            if (current == null) {
+                return initialLoad;
             }
-            byte[] bytes = output.toByteString().toByteArray();
-            ExtensionRegistry extensionRegistry = ExtensionRegistry.newInstance();
-            extensionRegistry.add(AnnotationsProto.http);
-            try {
-                DescriptorProtos.FileDescriptorSet fileDescriptorSet = DescriptorProtos.FileDescriptorSet.parseFrom(bytes, extensionRegistry);
-                return new FileDescriptorIndex(fileDescriptorSet);
-            } catch (InvalidProtocolBufferException e) {
-                throw new RuntimeException(e);
+            if (System.nanoTime() - refreshAt >= 0 && refreshing.compareAndSet(false, true)) {
+                refresh(current);
             }
-        });
-        return Optional.ofNullable(index.get(method, path));
+            return Mono.just(current);
+        }
+
+        void refresh(Snapshot current) {
+            load(serviceId, current).subscribe(this::update, e -> {
+                log.warn("Unable to refresh the descriptors of {}, keeping the current ones: {}", serviceId, e.getMessage(), e);
+                refreshAt = nextRefreshAt(duration.compareTo(MAX_RETRY_INTERVAL) < 0 ? duration : MAX_RETRY_INTERVAL);
+                refreshing.set(false);
+            });
+        }
+
+        void update(Snapshot loaded) {
+            refreshAt = nextRefreshAt(duration);
+            snapshot = loaded;
+            refreshing.set(false);
+        }
+    }
+
+    /**
+     * The files of a service as last loaded, with their version and hashes reported by the server.
+     */
+    static class Snapshot {
+        final FileDescriptorIndex index;
+        final Map<String, DescriptorProtos.FileDescriptorProto> files;
+        final String version;
+        final Map<String, String> fileHashes;
+
+        Snapshot(FileDescriptorIndex index, Map<String, DescriptorProtos.FileDescriptorProto> files,
+                 String version, Map<String, String> fileHashes) {
+            this.index = index;
+            this.files = files;
+            this.version = version;
+            this.fileHashes = fileHashes;
+        }
+    }
+
+    static Snapshot createSnapshot(ReflectServerDescriptorResponse response, @Nullable Snapshot previous) {
+        Map<String, DescriptorProtos.FileDescriptorProto> sentFiles = new LinkedHashMap<>();
+        for (DescriptorProtos.FileDescriptorProto file : parseFileDescriptorSet(response.getFileDescriptorSet()).getFileList()) {
+            sentFiles.put(file.getName(), file);
+        }
+        Map<String, DescriptorProtos.FileDescriptorProto> files;
+        if (response.getFileHashesCount() == 0) {
+            // a server without hashes always sends all its files
+            files = sentFiles;
+        } else {
+            // the unchanged files are not sent again, and the files without a hash have been removed
+            files = new LinkedHashMap<>();
+            for (String name : response.getFileHashesMap().keySet()) {
+                DescriptorProtos.FileDescriptorProto file = sentFiles.containsKey(name) || previous == null
+                        ? sentFiles.get(name) : previous.files.get(name);
+                if (file == null) {
+                    throw new IllegalStateException("Missing file from the server: " + name);
+                }
+                files.put(name, file);
+            }
+        }
+        FileDescriptorIndex index = new FileDescriptorIndex(DescriptorProtos.FileDescriptorSet.newBuilder()
+                .addAllFile(files.values())
+                .build(), previous != null ? previous.index : null, ForkJoinPool.commonPool());
+        return new Snapshot(index, files, response.getVersion(), response.getFileHashesMap());
     }
 
+    private static long nextRefreshAt(Duration interval) {
+        long nanos = interval.toNanos();
+        return System.nanoTime() + nanos - (long) (nanos * REFRESH_JITTER * ThreadLocalRandom.current().nextDouble());
+    }
+
+    private static DescriptorProtos.FileDescriptorSet parseFileDescriptorSet(ByteString fileDescriptorSet) {
+        try {
+            return DescriptorProtos.FileDescriptorSet.parseFrom(fileDescriptorSet, EXTENSION_REGISTRY);
+        } catch (InvalidProtocolBufferException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static ExtensionRegistry createExtensionRegistry() {
+        ExtensionRegistry extensionRegistry = ExtensionRegistry.newInstance();
+        extensionRegistry.add(AnnotationsProto.http);
+        return extensionRegistry;
+    }
 }
@@ -0,0 +1,128 @@
+package com.github.protobufx.spring.gateway.grpc.filter.datasource;
+
+import com.github.protobufx.reflection.extension.v1alpha.ReflectServerDescriptorResponse;
+import com.google.common.hash.Hashing;
+import com.google.common.io.BaseEncoding;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * A local directory keeping the last descriptors loaded from each service, so that a restarted gateway
+ * can index them right away instead of calling every backend.
+ * Each snapshot is a file named after the service and the SHA-256 hash of its content,
+ * which is written to a temporary file and then moved in place, and memory-mapped when read.
+ * A snapshot whose content does not match its hash is ignored.
+ */
+@Slf4j
+public class DescriptorSnapshotStore {
+    private static final String SUFFIX = ".pb";
+    // the encoded service ID and the hash of the content
+    private static final Pattern SNAPSHOT_FILE_NAME = Pattern.compile("([A-Za-z0-9_-]*)\\.([0-9a-f]{64})\\.pb");
+
+    Path directory;
+
+    public DescriptorSnapshotStore(Path directory) {
+        this.directory = directory;
+    }
+
+    void save(String serviceId, ReflectServerDescriptorResponse snapshot) throws IOException {
+        Files.createDirectories(directory);
+        byte[] content = snapshot.toByteArray();
+        String prefix = prefix(serviceId);
+        Path target = directory.resolve(prefix + Hashing.sha256().hashBytes(content) + SUFFIX);
+        if (!Files.exists(target)) {
+            Path temporary = Files.createTempFile(directory, prefix, ".tmp");
+            try {
+                Files.write(temporary, content);
+                Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temporary);
+            }
+        }
+        // only the last snapshot of the service is kept
+        for (Path path : list(prefix)) {
+            if (!path.equals(target)) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    Optional<ReflectServerDescriptorResponse> load(String serviceId) throws IOException {
+        Path latest = null;
+        for (Path path : list(prefix(serviceId))) {
+            if (latest == null || Files.getLastModifiedTime(path).compareTo(Files.getLastModifiedTime(latest)) > 0) {
+                latest = path;
+            }
+        }
+        return latest == null ? Optional.empty() : read(latest);
+    }
+
+    /**
+     * @return the last snapshot of every service in the directory
+     */
+    Map<String, ReflectServerDescriptorResponse> loadAll() throws IOException {
+        Map<String, ReflectServerDescriptorResponse> snapshots = new HashMap<>();
+        for (Path path : list("")) {
+            Matcher fileName = SNAPSHOT_FILE_NAME.matcher(path.getFileName().toString());
+            if (!fileName.matches() || !BaseEncoding.base64Url().omitPadding().canDecode(fileName.group(1))) {
+                continue;
+            }
+            String serviceId = new String(BaseEncoding.base64Url().omitPadding().decode(fileName.group(1)), UTF_8);
+            if (!snapshots.containsKey(serviceId)) {
+                load(serviceId).ifPresent(snapshot -> snapshots.put(serviceId, snapshot));
+            }
+        }
+        return snapshots;
+    }
+
+    private Optional<ReflectServerDescriptorResponse> read(Path path) throws IOException {
+        Matcher fileName = SNAPSHOT_FILE_NAME.matcher(path.getFileName().toString());
+        if (!fileName.matches()) {
+            return Optional.empty();
+        }
+        String hash = fileName.group(2);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer content = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (!Hashing.sha256().hashBytes(content.duplicate()).toString().equals(hash)) {
+                log.warn("Ignoring the descriptor snapshot {}, which does not match its hash", path);
+                return Optional.empty();
+            }
+            return Optional.of(ReflectServerDescriptorResponse.parseFrom(content));
+        }
+    }
+
+    private List<Path> list(String prefix) throws IOException {
+        List<Path> paths = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return paths;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, prefix + "*" + SUFFIX)) {
+            stream.forEach(paths::add);
+        }
+        return paths;
+    }
+
+    /**
+     * The service ID is encoded to be a valid file name, and never contains the dot that separates it from the hash.
+     */
+    private static String prefix(String serviceId) {
+        return BaseEncoding.base64Url().omitPadding().encode(serviceId.getBytes(UTF_8)) + ".";
+    }
+}
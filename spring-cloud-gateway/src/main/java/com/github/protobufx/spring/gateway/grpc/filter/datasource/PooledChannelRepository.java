@@ -0,0 +1,243 @@
+package com.github.protobufx.spring.gateway.grpc.filter.datasource;
+
+import com.github.protobufx.spring.gateway.grpc.filter.ChannelRepository;
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ConnectivityState;
+import io.grpc.ManagedChannel;
+import io.grpc.MethodDescriptor;
+import io.grpc.netty.NettyChannelBuilder;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.Disposable;
+import reactor.core.scheduler.Schedulers;
+import reactor.netty.http.HttpResources;
+import reactor.netty.resources.LoopResources;
+
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A repository of pooled channels, which spreads the calls to each target over several channels,
+ * since a single HTTP/2 connection caps the concurrent calls to its MAX_CONCURRENT_STREAMS.
+ * Each channel also balances its calls over the resolved addresses of the target with the configured policy.
+ * The channels use the Netty transport on the event loops of the gateway (epoll when available),
+ * keep their connections alive with pings, and are shut down once the target has not been used
+ * for the idle timeout, or when the repository is closed.
+ */
+@Slf4j
+public class PooledChannelRepository implements ChannelRepository, Closeable, MeterBinder {
+    Config config;
+    EventLoopGroup eventLoopGroup;
+    Class<? extends SocketChannel> channelType;
+    Map<String, PooledChannel> channels = new ConcurrentHashMap<>();
+    Disposable evictionTask;
+
+    /**
+     * Creates a repository sharing the event loops of the Reactor Netty HTTP client and server of the gateway.
+     */
+    public PooledChannelRepository(Config config) {
+        this(config, HttpResources.get());
+    }
+
+    public PooledChannelRepository(Config config, LoopResources loopResources) {
+        if (config.getChannelsPerTarget() < 1) {
+            throw new IllegalArgumentException("channelsPerTarget must be positive: " + config.getChannelsPerTarget());
+        }
+        if (config.getIdleTimeout().isNegative() || config.getIdleTimeout().isZero()) {
+            throw new IllegalArgumentException("idleTimeout must be positive: " + config.getIdleTimeout());
+        }
+        this.config = config;
+        this.eventLoopGroup = loopResources.onClient(LoopResources.DEFAULT_NATIVE);
+        this.channelType = loopResources.onChannelClass(SocketChannel.class, eventLoopGroup);
+        long evictionPeriod = Math.max(config.getIdleTimeout().toMillis() / 2, 1);
+        this.evictionTask = Schedulers.parallel().schedulePeriodically(this::evictIdleChannels,
+                evictionPeriod, evictionPeriod, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public Channel findChannel(String channelTarget) {
+        PooledChannel channel = channels.computeIfAbsent(channelTarget, this::createPooledChannel);
+        channel.lastUsedAt = System.nanoTime();
+        return channel;
+    }
+
+    /**
+     * Shuts down the channels, letting the calls in progress complete within the shutdown timeout.
+     */
+    @Override
+    public void close() {
+        evictionTask.dispose();
+        List<PooledChannel> closed = new ArrayList<>(channels.values());
+        channels.clear();
+        closed.forEach(PooledChannel::shutdown);
+        long deadline = System.nanoTime() + config.getShutdownTimeout().toNanos();
+        for (PooledChannel channel : closed) {
+            channel.awaitTermination(deadline);
+        }
+    }
+
+    /**
+     * Registers the number of channels in each connectivity state.
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        for (ConnectivityState state : ConnectivityState.values()) {
+            Gauge.builder("grpc.gateway.channels", this, repository -> repository.countChannels(state))
+                    .description("The channels to the backends in each connectivity state")
+                    .tag("state", state.name())
+                    .register(registry);
+        }
+    }
+
+    int countChannels(ConnectivityState state) {
+        int count = 0;
+        for (PooledChannel channel : channels.values()) {
+            for (ManagedChannel managedChannel : channel.managedChannels) {
+                if (managedChannel.getState(false) == state) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    void evictIdleChannels() {
+        long idleSince = System.nanoTime() - config.getIdleTimeout().toNanos();
+        channels.forEach((target, channel) -> {
+            if (channel.lastUsedAt - idleSince < 0 && channels.remove(target, channel)) {
+                log.debug("Shutting down the idle channels of {}", target);
+                channel.shutdown();
+            }
+        });
+    }
+
+    PooledChannel createPooledChannel(String target) {
+        ManagedChannel[] managedChannels = new ManagedChannel[config.getChannelsPerTarget()];
+        for (int i = 0; i < managedChannels.length; i++) {
+            managedChannels[i] = createChannel(target);
+        }
+        return new PooledChannel(target, managedChannels);
+    }
+
+    ManagedChannel createChannel(String target) {
+        NettyChannelBuilder builder = NettyChannelBuilder.forTarget(target)
+                .eventLoopGroup(eventLoopGroup)
+                .channelType(channelType)
+                .defaultLoadBalancingPolicy(config.getLoadBalancingPolicy())
+                .keepAliveTime(config.getKeepAliveTime().toNanos(), TimeUnit.NANOSECONDS)
+                .keepAliveTimeout(config.getKeepAliveTimeout().toNanos(), TimeUnit.NANOSECONDS)
+                .keepAliveWithoutCalls(config.isKeepAliveWithoutCalls())
+                .idleTimeout(config.getIdleTimeout().toNanos(), TimeUnit.NANOSECONDS);
+        if (config.getFlowControlWindow() > 0) {
+            builder.flowControlWindow(config.getFlowControlWindow());
+        } else {
+            // the window grows with the bandwidth-delay product of the connection
+            builder.initialFlowControlWindow(NettyChannelBuilder.DEFAULT_FLOW_CONTROL_WINDOW);
+        }
+        if (config.isUsePlaintext()) {
+            builder.usePlaintext();
+        }
+        if (config.isDirectExecutor()) {
+            builder.directExecutor();
+        }
+        return builder.build();
+    }
+
+    /**
+     * The channels of a target, which take new calls in turn.
+     * A call made after the channels were evicted is made on the channels that replace them.
+     */
+    class PooledChannel extends Channel {
+        final String target;
+        final ManagedChannel[] managedChannels;
+        final AtomicInteger next = new AtomicInteger();
+        volatile long lastUsedAt = System.nanoTime();
+
+        PooledChannel(String target, ManagedChannel[] managedChannels) {
+            this.target = target;
+            this.managedChannels = managedChannels;
+        }
+
+        @Override
+        public <ReqT, RespT> ClientCall<ReqT, RespT> newCall(MethodDescriptor<ReqT, RespT> methodDescriptor, CallOptions callOptions) {
+            ManagedChannel channel = managedChannels.length == 1
+                    ? managedChannels[0] : managedChannels[Math.floorMod(next.getAndIncrement(), managedChannels.length)];
+            if (channel.isShutdown()) {
+                return findChannel(target).newCall(methodDescriptor, callOptions);
+            }
+            return channel.newCall(methodDescriptor, callOptions);
+        }
+
+        @Override
+        public String authority() {
+            return managedChannels[0].authority();
+        }
+
+        void shutdown() {
+            for (ManagedChannel channel : managedChannels) {
+                channel.shutdown();
+            }
+        }
+
+        void awaitTermination(long deadline) {
+            for (ManagedChannel channel : managedChannels) {
+                try {
+                    if (!channel.awaitTermination(Math.max(deadline - System.nanoTime(), 0), TimeUnit.NANOSECONDS)) {
+                        channel.shutdownNow();
+                    }
+                } catch (InterruptedException e) {
+                    channel.shutdownNow();
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+    @Data
+    public static class Config {
+        // the channels of each target, each with its own connections; more channels allow more concurrent calls
+        int channelsPerTarget;
+        // the policy balancing the calls of a channel over the resolved addresses, e.g. round_robin or pick_first
+        String loadBalancingPolicy;
+        // the interval of the keepalive pings, and how long to wait for their acknowledgement
+        Duration keepAliveTime;
+        Duration keepAliveTimeout;
+        boolean keepAliveWithoutCalls;
+        // the HTTP/2 flow control window of the connections, or 0 to size it automatically
+        int flowControlWindow;
+        // the channels of a target are shut down once they have not been used for this duration
+        Duration idleTimeout;
+        // how long closing the repository waits for the calls in progress
+        Duration shutdownTimeout;
+        boolean usePlaintext;
+        // runs the callbacks of the calls on the event loops of the connections instead of a thread pool,
+        // which suits callbacks that never block, like the ones of the gateway filter
+        boolean directExecutor;
+
+        public Config() {
+            channelsPerTarget = 1;
+            loadBalancingPolicy = "round_robin";
+            keepAliveTime = Duration.ofMinutes(1);
+            keepAliveTimeout = Duration.ofSeconds(20);
+            keepAliveWithoutCalls = false;
+            flowControlWindow = 0;
+            idleTimeout = Duration.ofMinutes(30);
+            shutdownTimeout = Duration.ofSeconds(10);
+            usePlaintext = true;
+            directExecutor = false;
+        }
+    }
+}
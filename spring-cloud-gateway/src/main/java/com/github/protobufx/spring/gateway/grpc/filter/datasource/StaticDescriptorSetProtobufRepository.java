@@ -0,0 +1,178 @@
+package com.github.protobufx.spring.gateway.grpc.filter.datasource;
+
+import com.github.protobufx.spring.gateway.grpc.filter.FileDescriptorIndex;
+import com.github.protobufx.spring.gateway.grpc.filter.HttpRuleMethodDescriptor;
+import com.github.protobufx.spring.gateway.grpc.filter.ProtobufRepository;
+import com.google.api.AnnotationsProto;
+import com.google.protobuf.DescriptorProtos;
+import com.google.protobuf.ExtensionRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.Resource;
+import reactor.core.publisher.Mono;
+
+import javax.annotation.Nullable;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * A repository of the descriptor sets generated by {@code protoc --descriptor_set_out --include_imports},
+ * given as a resource per route authority, e.g. {@code classpath:echo.pb} or {@code file:/etc/gateway/echo.pb}.
+ * The descriptors of every authority are indexed when the repository is created, so that lookups
+ * never wait for a backend, and the backends do not need to run the ServerReflectionExtension service.
+ * The descriptor sets in the file system can be watched for changes, and are then indexed again
+ * and swapped in, while the lookups keep being served by the current indexes.
+ */
+@Slf4j
+public class StaticDescriptorSetProtobufRepository implements ProtobufRepository, Closeable {
+    private static final ExtensionRegistry EXTENSION_REGISTRY = createExtensionRegistry();
+
+    Map<String, Resource> descriptorSets;
+    volatile Map<String, FileDescriptorIndex> indexes;
+    @Nullable
+    WatchService watchService;
+
+    /**
+     * @param descriptorSets the descriptor set of each route authority
+     * @throws UncheckedIOException if a descriptor set cannot be read
+     */
+    public StaticDescriptorSetProtobufRepository(Map<String, Resource> descriptorSets) {
+        this.descriptorSets = new LinkedHashMap<>(descriptorSets);
+        Map<String, FileDescriptorIndex> loaded = new HashMap<>();
+        this.descriptorSets.forEach((authority, resource) -> {
+            try {
+                loaded.put(authority, load(resource, null));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Unable to read the descriptor set of " + authority + ": " + resource, e);
+            }
+        });
+        this.indexes = loaded;
+    }
+
+    @Override
+    public Optional<HttpRuleMethodDescriptor> findMethodDescriptor(String serviceId, String method, String path) {
+        FileDescriptorIndex index = indexes.get(serviceId);
+        return index == null ? Optional.empty() : Optional.ofNullable(index.get(method, path));
+    }
+
+    @Override
+    public Mono<Optional<HttpRuleMethodDescriptor>> findMethodDescriptorAsync(String serviceId, String method, String path) {
+        return Mono.just(findMethodDescriptor(serviceId, method, path));
+    }
+
+    /**
+     * Starts watching the descriptor sets that are files, and indexes them again when they are written or replaced.
+     * Resources that are not files, such as the ones in a jar, are not watched.
+     */
+    public synchronized void watch() throws IOException {
+        if (watchService != null) {
+            return;
+        }
+        Map<Path, Set<String>> authoritiesByFile = new HashMap<>();
+        descriptorSets.forEach((authority, resource) -> {
+            if (resource.isFile()) {
+                try {
+                    Path file = resource.getFile().toPath().toAbsolutePath().normalize();
+                    authoritiesByFile.computeIfAbsent(file, f -> new HashSet<>()).add(authority);
+                } catch (IOException e) {
+                    log.warn("Unable to watch the descriptor set of {}: {}", authority, e.getMessage(), e);
+                }
+            }
+        });
+        if (authoritiesByFile.isEmpty()) {
+            return;
+        }
+        watchService = FileSystems.getDefault().newWatchService();
+        Map<WatchKey, Path> directories = new HashMap<>();
+        for (Path file : authoritiesByFile.keySet()) {
+            Path directory = file.getParent();
+            if (!directories.containsValue(directory)) {
+                // a file replaced by a move is created again rather than modified
+                directories.put(directory.register(watchService,
+                        StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY), directory);
+            }
+        }
+        WatchService service = watchService;
+        Thread thread = new Thread(() -> watch(service, directories, authoritiesByFile), "descriptor-set-watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (watchService != null) {
+            watchService.close();
+            watchService = null;
+        }
+    }
+
+    private void watch(WatchService service, Map<WatchKey, Path> directories, Map<Path, Set<String>> authoritiesByFile) {
+        try {
+            while (true) {
+                WatchKey key = service.take();
+                Set<String> changed = new HashSet<>();
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        authoritiesByFile.values().forEach(changed::addAll);
+                    } else {
+                        Path file = directories.get(key).resolve((Path) event.context());
+                        changed.addAll(authoritiesByFile.getOrDefault(file, Set.of()));
+                    }
+                }
+                key.reset();
+                changed.forEach(this::reload);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException e) {
+            // closed by close()
+        }
+    }
+
+    /**
+     * Indexes the descriptor set of the authority again, and keeps the current index if it cannot be read,
+     * e.g. while the file is being written.
+     */
+    void reload(String authority) {
+        Resource resource = descriptorSets.get(authority);
+        FileDescriptorIndex index;
+        try {
+            index = load(resource, indexes.get(authority));
+        } catch (IOException | RuntimeException e) {
+            log.warn("Unable to reload the descriptor set of {}: {}", authority, e.getMessage(), e);
+            return;
+        }
+        synchronized (this) {
+            Map<String, FileDescriptorIndex> reloaded = new HashMap<>(indexes);
+            reloaded.put(authority, index);
+            indexes = reloaded;
+        }
+        log.info("Reloaded the descriptor set of {}: {}", authority, resource);
+    }
+
+    private static FileDescriptorIndex load(Resource resource, @Nullable FileDescriptorIndex previous) throws IOException {
+        try (InputStream inputStream = resource.getInputStream()) {
+            return new FileDescriptorIndex(DescriptorProtos.FileDescriptorSet.parseFrom(inputStream, EXTENSION_REGISTRY), previous);
+        }
+    }
+
+    private static ExtensionRegistry createExtensionRegistry() {
+        ExtensionRegistry extensionRegistry = ExtensionRegistry.newInstance();
+        extensionRegistry.add(AnnotationsProto.http);
+        return extensionRegistry;
+    }
+}
@@ -0,0 +1,100 @@
+package com.github.protobufx.spring.gateway.grpc.filter;
+
+import io.grpc.Status;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class AdaptiveConcurrencyLimiterTest {
+
+    static AdaptiveConcurrencyLimiter createLimiter(int initialLimit) {
+        AdaptiveConcurrencyLimiter.Config config = new AdaptiveConcurrencyLimiter.Config();
+        config.setInitialLimit(initialLimit);
+        config.setMaxLimit(4);
+        config.setBackoffRatio(0.5);
+        config.setLatencyThreshold(Duration.ofSeconds(1));
+        return new AdaptiveConcurrencyLimiter(config);
+    }
+
+    @Test
+    @DisplayName("Calls beyond the limit of an authority are rejected, until a call is released")
+    void testTryAcquire() {
+        AdaptiveConcurrencyLimiter limiter = createLimiter(2);
+
+        AdaptiveConcurrencyLimiter.Permit first = limiter.tryAcquire("a:1");
+        assertNotNull(first);
+        assertNotNull(limiter.tryAcquire("a:1"));
+        assertNull(limiter.tryAcquire("a:1"));
+        assertNotNull(limiter.tryAcquire("b:1"));
+
+        first.release();
+        first.release();
+
+        assertEquals(1, limiter.limits.get("a:1").inFlight.get());
+        assertNotNull(limiter.tryAcquire("a:1"));
+    }
+
+    @Test
+    @DisplayName("The limit grows with the successful calls, and shrinks with the dropped ones")
+    void testAdaptLimit() {
+        AdaptiveConcurrencyLimiter limiter = createLimiter(2);
+
+        for (int i = 0; i < 2; i++) {
+            AdaptiveConcurrencyLimiter.Permit first = limiter.tryAcquire("a:1");
+            AdaptiveConcurrencyLimiter.Permit second = limiter.tryAcquire("a:1");
+            first.record(1000, Status.Code.OK);
+            second.record(1000, Status.Code.OK);
+            first.release();
+            second.release();
+        }
+        AdaptiveConcurrencyLimiter.Limit limit = limiter.limits.get("a:1");
+        assertEquals(4, limit.limit.get());
+
+        release(limiter.tryAcquire("a:1"), Duration.ofSeconds(2).toNanos(), Status.Code.OK);
+        assertEquals(2, limit.limit.get());
+
+        release(limiter.tryAcquire("a:1"), 1000, Status.Code.CANCELLED);
+        assertEquals(2, limit.limit.get());
+
+        release(limiter.tryAcquire("a:1"), 1000, Status.Code.UNAVAILABLE);
+        assertEquals(1, limit.limit.get());
+        assertEquals(0, limit.inFlight.get());
+    }
+
+    static void release(AdaptiveConcurrencyLimiter.Permit permit, long nanos, Status.Code code) {
+        permit.record(nanos, code);
+        permit.release();
+    }
+
+    @Test
+    @DisplayName("The limits, the calls in flight and the rejections are published by authority")
+    void testMetrics() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        AdaptiveConcurrencyLimiter limiter = createLimiter(1);
+        limiter.tryAcquire("a:1");
+        limiter.bindTo(registry);
+
+        limiter.tryAcquire("a:1");
+        limiter.tryAcquire("b:1");
+
+        assertEquals(1, registry.get("grpc.gateway.concurrency.limit").tag("authority", "a:1").gauge().value());
+        assertEquals(1, registry.get("grpc.gateway.concurrency.inflight").tag("authority", "b:1").gauge().value());
+        assertEquals(1, registry.get("grpc.gateway.concurrency.rejected").tag("authority", "a:1").counter().count());
+    }
+
+    @Test
+    @DisplayName("The initial limit must be within the bounds")
+    void testInvalidConfig() {
+        AdaptiveConcurrencyLimiter.Config config = new AdaptiveConcurrencyLimiter.Config();
+        config.setInitialLimit(0);
+
+        assertThrows(IllegalArgumentException.class, () -> new AdaptiveConcurrencyLimiter(config));
+    }
+}
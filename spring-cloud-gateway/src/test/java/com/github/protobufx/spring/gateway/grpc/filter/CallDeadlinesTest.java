@@ -0,0 +1,73 @@
+package com.github.protobufx.spring.gateway.grpc.filter;
+
+import io.grpc.Deadline;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.http.HttpHeaders;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CallDeadlinesTest {
+
+    static HttpHeaders timeout(String value) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.add("grpc-timeout", value);
+        return headers;
+    }
+
+    static long remainingMillis(Deadline deadline) {
+        return deadline.timeRemaining(TimeUnit.MILLISECONDS);
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+            "2H, PT2H",
+            "3M, PT3M",
+            "5S, PT5S",
+            "100m, PT0.1S",
+            "250u, PT0.00025S",
+            "42n, PT0.000000042S",
+            "1500, PT1.5S",
+    })
+    @DisplayName("Timeouts are parsed in the grpc-timeout format or as milliseconds")
+    void testParseTimeout(String value, Duration expected) {
+        assertEquals(expected, CallDeadlines.parseTimeout(value));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"", "S", "5s", "-5S", "1.5S", "123456789S"})
+    @DisplayName("Invalid timeouts are rejected")
+    void testInvalidTimeout(String value) {
+        assertThrows(IllegalArgumentException.class, () -> CallDeadlines.parseTimeout(value));
+    }
+
+    @Test
+    @DisplayName("The timeout header overrides the default deadline, within the maximum deadline")
+    void testDeadline() {
+        CallDeadlines callDeadlines = new CallDeadlines(Duration.ofSeconds(10), "grpc-timeout", Duration.ofSeconds(30));
+
+        long defaultDeadline = remainingMillis(callDeadlines.deadline(new HttpHeaders()));
+        long timeout = remainingMillis(callDeadlines.deadline(timeout("100m")));
+        long maxDeadline = remainingMillis(callDeadlines.deadline(timeout("1H")));
+
+        assertTrue(defaultDeadline > 9000 && defaultDeadline <= 10000);
+        assertTrue(timeout <= 100);
+        assertTrue(maxDeadline > 29000 && maxDeadline <= 30000);
+    }
+
+    @Test
+    @DisplayName("Without a default deadline nor a timeout header, the calls have no deadline")
+    void testNoDeadline() {
+        assertNull(new CallDeadlines(null, null, null).deadline(timeout("5S")));
+        assertNull(new CallDeadlines(null, "grpc-timeout", null).deadline(new HttpHeaders()));
+    }
+}
@@ -0,0 +1,124 @@
+package com.github.protobufx.spring.gateway.grpc.filter;
+
+import com.google.api.AnnotationsProto;
+import com.google.api.HttpRule;
+import com.google.protobuf.DescriptorProtos;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class FileDescriptorIndexTest {
+
+    /**
+     * Files where file {@code i} depends on the files {@code i - 1}, {@code i / 2} and {@code i / 3},
+     * each with a service bound to {@code GET /v1/messages<i>/{id}}.
+     */
+    static List<DescriptorProtos.FileDescriptorProto> files(int count) {
+        List<DescriptorProtos.FileDescriptorProto> files = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            DescriptorProtos.FileDescriptorProto.Builder file = DescriptorProtos.FileDescriptorProto.newBuilder()
+                    .setName("file" + i + ".proto")
+                    .setPackage("test")
+                    .setSyntax("proto3");
+            DescriptorProtos.DescriptorProto.Builder message = DescriptorProtos.DescriptorProto.newBuilder()
+                    .setName("Message" + i)
+                    .addField(DescriptorProtos.FieldDescriptorProto.newBuilder()
+                            .setName("id").setNumber(1).setType(DescriptorProtos.FieldDescriptorProto.Type.TYPE_STRING));
+            for (int dependency : new int[]{i - 1, i / 2, i / 3}) {
+                if (dependency >= 0 && dependency != i && !file.getDependencyList().contains("file" + dependency + ".proto")) {
+                    file.addDependency("file" + dependency + ".proto");
+                    message.addField(DescriptorProtos.FieldDescriptorProto.newBuilder()
+                            .setName("message" + dependency).setNumber(message.getFieldCount() + 1)
+                            .setType(DescriptorProtos.FieldDescriptorProto.Type.TYPE_MESSAGE)
+                            .setTypeName(".test.Message" + dependency));
+                }
+            }
+            files.add(file.addMessageType(message)
+                    .addService(DescriptorProtos.ServiceDescriptorProto.newBuilder()
+                            .setName("Service" + i)
+                            .addMethod(DescriptorProtos.MethodDescriptorProto.newBuilder()
+                                    .setName("Get")
+                                    .setInputType(".test.Message" + i)
+                                    .setOutputType(".test.Message" + i)
+                                    .setOptions(DescriptorProtos.MethodOptions.newBuilder().setExtension(AnnotationsProto.http,
+                                            HttpRule.newBuilder().setGet("/v1/messages" + i + "/{id}").build()))))
+                    .build());
+        }
+        return files;
+    }
+
+    static DescriptorProtos.FileDescriptorSet fileSet(List<DescriptorProtos.FileDescriptorProto> files) {
+        return DescriptorProtos.FileDescriptorSet.newBuilder().addAllFile(files).build();
+    }
+
+    @Test
+    @DisplayName("Files are linked once after their dependencies, whatever their order")
+    void testLinkOrder() {
+        List<DescriptorProtos.FileDescriptorProto> files = files(200);
+        Collections.reverse(files);
+
+        for (FileDescriptorIndex index : new FileDescriptorIndex[]{
+                new FileDescriptorIndex(fileSet(files)),
+                new FileDescriptorIndex(fileSet(files), null, ForkJoinPool.commonPool())}) {
+            assertEquals("test.Service199.Get", index.get("GET", "/v1/messages199/abc").getMethodDescriptor().getFullName());
+            // a shared dependency is the same descriptor for all its dependents
+            assertSame(index.fileDescriptors.get("file1.proto"), index.fileDescriptors.get("file2.proto").getDependencies().get(0));
+            assertSame(index.fileDescriptors.get("file1.proto"), index.fileDescriptors.get("file3.proto").getDependencies().get(1));
+        }
+    }
+
+    @Test
+    @DisplayName("The unchanged files of a previous index are reused, and the changed ones are linked again with their dependents")
+    void testPrevious() {
+        List<DescriptorProtos.FileDescriptorProto> files = files(10);
+        FileDescriptorIndex previous = new FileDescriptorIndex(fileSet(files));
+        files.set(8, files.get(8).toBuilder().addMessageType(DescriptorProtos.DescriptorProto.newBuilder().setName("Added")).build());
+
+        FileDescriptorIndex index = new FileDescriptorIndex(fileSet(files), previous);
+
+        assertSame(previous.fileDescriptors.get("file7.proto"), index.fileDescriptors.get("file7.proto"));
+        assertSame(previous.get("GET", "/v1/messages7/abc"), index.get("GET", "/v1/messages7/abc"));
+        assertNotSame(previous.fileDescriptors.get("file8.proto"), index.fileDescriptors.get("file8.proto"));
+        assertNotSame(previous.fileDescriptors.get("file9.proto"), index.fileDescriptors.get("file9.proto"));
+        assertNotSame(previous.get("GET", "/v1/messages9/abc"), index.get("GET", "/v1/messages9/abc"));
+    }
+
+    @Test
+    @DisplayName("Missing and cyclic dependencies are rejected")
+    void testInvalidDependencies() {
+        DescriptorProtos.FileDescriptorProto a = DescriptorProtos.FileDescriptorProto.newBuilder().setName("a.proto").addDependency("b.proto").build();
+        DescriptorProtos.FileDescriptorProto b = DescriptorProtos.FileDescriptorProto.newBuilder().setName("b.proto").addDependency("a.proto").build();
+
+        assertThrows(IllegalArgumentException.class, () -> new FileDescriptorIndex(fileSet(List.of(a))));
+        assertThrows(IllegalArgumentException.class, () -> new FileDescriptorIndex(fileSet(List.of(a, b))));
+    }
+
+    static DescriptorProtos.FileDescriptorProto withBody(DescriptorProtos.FileDescriptorProto file, String body) {
+        DescriptorProtos.FileDescriptorProto.Builder builder = file.toBuilder();
+        builder.getServiceBuilder(0).getMethodBuilder(0).setOptions(DescriptorProtos.MethodOptions.newBuilder()
+                .setExtension(AnnotationsProto.http, HttpRule.newBuilder().setPost("/v1/messages0").setBody(body).build()));
+        return builder.build();
+    }
+
+    @Test
+    @DisplayName("A body field that the request message does not have is rejected when the method is indexed")
+    void testMissingBodyField() {
+        DescriptorProtos.FileDescriptorProto file = files(1).get(0);
+
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> new FileDescriptorIndex(fileSet(List.of(withBody(file, "unknown")))));
+        assertEquals("Body field not found: unknown in test.Message0", e.getMessage());
+
+        FileDescriptorIndex index = new FileDescriptorIndex(fileSet(List.of(withBody(file, "id"))));
+        assertEquals("id", index.get("POST", "/v1/messages0").bodyField.getName());
+    }
+}
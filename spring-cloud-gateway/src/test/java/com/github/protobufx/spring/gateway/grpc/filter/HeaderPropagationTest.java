@@ -0,0 +1,94 @@
+package com.github.protobufx.spring.gateway.grpc.filter;
+
+import com.google.common.io.BaseEncoding;
+import io.grpc.CallOptions;
+import io.grpc.Metadata;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class HeaderPropagationTest {
+
+    static HttpHeaders headers(String... namesAndValues) {
+        HttpHeaders headers = new HttpHeaders();
+        for (int i = 0; i < namesAndValues.length; i += 2) {
+            headers.add(namesAndValues[i], namesAndValues[i + 1]);
+        }
+        return headers;
+    }
+
+    @Test
+    @DisplayName("Allowed headers are sent as ASCII metadata")
+    void testAllowedHeaders() {
+        HeaderPropagation headerPropagation = new HeaderPropagation(List.of("X-Api-Key", "x-user-id"));
+
+        Metadata metadata = headerPropagation.metadata(headers("x-api-key", "my-password", "x-other", "other"));
+
+        assertEquals("Metadata(x-api-key=my-password)", metadata.toString());
+        assertNull(headerPropagation.metadata(headers("x-other", "other")));
+    }
+
+    @Test
+    @DisplayName("Patterns allow the matching headers, except the ones set by the transport")
+    void testPatterns() {
+        HeaderPropagation headerPropagation = new HeaderPropagation(Arrays.asList("x-custom-*", "*"));
+
+        Metadata metadata = headerPropagation.metadata(headers(
+                "X-Custom-Tenant", "t1", "x-request-id", "r1", "content-type", "application/json",
+                "grpc-timeout", "1S", "te", "trailers"));
+
+        assertEquals("t1", metadata.get(Metadata.Key.of("x-custom-tenant", Metadata.ASCII_STRING_MARSHALLER)));
+        assertEquals("r1", metadata.get(Metadata.Key.of("x-request-id", Metadata.ASCII_STRING_MARSHALLER)));
+        assertEquals(2, metadata.keys().size());
+    }
+
+    @Test
+    @DisplayName("Binary headers are decoded from base64, padded or not")
+    void testBinaryHeaders() {
+        HeaderPropagation headerPropagation = new HeaderPropagation(List.of("x-trace-bin", "x-other-*"));
+        byte[] value = "trace".getBytes(StandardCharsets.UTF_8);
+
+        Metadata metadata = headerPropagation.metadata(headers(
+                "x-trace-bin", BaseEncoding.base64().encode(value),
+                "x-other-bin", BaseEncoding.base64().omitPadding().encode(value),
+                "x-other-invalid-bin", "!!!"));
+
+        assertArrayEquals(value, metadata.get(Metadata.Key.of("x-trace-bin", Metadata.BINARY_BYTE_MARSHALLER)));
+        assertArrayEquals(value, metadata.get(Metadata.Key.of("x-other-bin", Metadata.BINARY_BYTE_MARSHALLER)));
+        assertEquals(2, metadata.keys().size());
+    }
+
+    @Test
+    @DisplayName("The metadata is passed in the call options only when there is some")
+    void testCallOptions() {
+        HeaderPropagation headerPropagation = new HeaderPropagation(List.of("x-api-key"));
+
+        assertSame(CallOptions.DEFAULT, HeaderPropagation.callOptions(CallOptions.DEFAULT, headerPropagation.metadata(headers())));
+        assertEquals("Metadata(x-api-key=my-password)", HeaderPropagation.callOptions(CallOptions.DEFAULT,
+                headerPropagation.metadata(headers("x-api-key", "my-password"))).getOption(HeaderPropagation.HEADERS).toString());
+    }
+
+    @Test
+    @DisplayName("The canonical form of the metadata is sorted by name, whatever the order of the request headers")
+    void testCanonical() {
+        HeaderPropagation headerPropagation = new HeaderPropagation(List.of("x-*"));
+        String value = BaseEncoding.base64().encode("trace".getBytes(StandardCharsets.UTF_8));
+
+        String canonical = HeaderPropagation.canonical(headerPropagation.metadata(headers(
+                "x-user-id", "u1", "x-trace-bin", value, "x-api-key", "k")));
+
+        assertEquals("x-api-key:k\nx-trace-bin:" + value + "\nx-user-id:u1\n", canonical);
+        assertEquals(canonical, HeaderPropagation.canonical(headerPropagation.metadata(headers(
+                "x-api-key", "k", "x-user-id", "u1", "x-trace-bin", value.replace("=", "")))));
+        assertEquals("", HeaderPropagation.canonical(null));
+    }
+}
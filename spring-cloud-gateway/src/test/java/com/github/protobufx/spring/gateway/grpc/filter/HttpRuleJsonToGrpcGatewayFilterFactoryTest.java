@@ -1,32 +1,60 @@
 package com.github.protobufx.spring.gateway.grpc.filter;
 
 import com.google.api.AnnotationsProto;
+import com.google.api.HttpRule;
 import com.google.common.io.ByteStreams;
 import com.google.protobuf.*;
 import com.google.protobuf.util.JsonFormat;
 import io.grpc.*;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.reactivestreams.Publisher;
 import org.springframework.cloud.gateway.filter.GatewayFilter;
 import org.springframework.cloud.gateway.filter.GatewayFilterChain;
 import org.springframework.cloud.gateway.route.Route;
 import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
 import org.springframework.core.io.DefaultResourceLoader;
 import org.springframework.core.io.Resource;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
 import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
 import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
 import reactor.test.StepVerifier;
 
+import java.io.ByteArrayInputStream;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.springframework.http.HttpMethod.*;
 
 class HttpRuleJsonToGrpcGatewayFilterFactoryTest {
@@ -44,7 +72,9 @@ class HttpRuleJsonToGrpcGatewayFilterFactoryTest {
         ExtensionRegistry extensionRegistry = ExtensionRegistry.newInstance();
         extensionRegistry.add(AnnotationsProto.http);
         DescriptorProtos.FileDescriptorSet descriptorSet = DescriptorProtos.FileDescriptorSet.parseFrom(protoBinary, extensionRegistry);
-        index = new FileDescriptorIndex(descriptorSet);
+        index = new FileDescriptorIndex(descriptorSet.toBuilder()
+                .addFile(ObjectMother.createStreamingFile())
+                .build());
     }
 
     @Test
@@ -204,6 +234,404 @@ class HttpRuleJsonToGrpcGatewayFilterFactoryTest {
                 .verify();
     }
 
+    @Test
+    @DisplayName("Mapping success - response printed from the wire format")
+    void testWireJsonPrinting() {
+        MockServerWebExchange exchange = ObjectMother.createRequestExchange(GET, "/sounds");
+        String responseBody = "{\n  \"sounds\": [{\n    \"soundId\": \"123\",\n    \"waves\": [{\n      \"waveId\": \"10\",\n      \"value\": \"\"\n    }],\n    \"type\": \"SONG\"\n  }, {\n    \"soundId\": \"\",\n    \"waves\": [],\n    \"type\": \"SOUND_TYPE_UNSPECIFIED\"\n  }]\n}";
+        MockChannel<DynamicMessage> channel = ObjectMother.createResponseChannel(exchange, responseBody);
+        HttpRuleJsonToGrpcGatewayFilterFactory.Config config = new HttpRuleJsonToGrpcGatewayFilterFactory.Config();
+        config.setWireJsonPrinting(true);
+        GatewayFilter filter = ObjectMother.createHttpRuleJsonToGrpcFilter(channel, config);
+
+        StepVerifier.create(filter.filter(exchange, chain))
+                .verifyComplete();
+
+        assertEquals("example.echo.v1.EchoService/ListSound", channel.requestMethodName());
+        assertEquals(responseBody, exchange.getResponse().getBodyAsString().block());
+    }
+
+    @Test
+    @DisplayName("Mapping success - the chunks of a response are emitted as they are requested")
+    void testChunkedPrinting() {
+        MockServerWebExchange exchange = ObjectMother.createRequestExchange(GET, "/sounds/123");
+        MockChannel<DynamicMessage> channel = ObjectMother.createResponseChannel(exchange, "{\"soundId\": \"123\"}");
+        HttpRuleJsonToGrpcGatewayFilterFactory.Config config = new HttpRuleJsonToGrpcGatewayFilterFactory.Config();
+        config.setResponseChunkSize(16);
+        GatewayFilter filter = ObjectMother.createHttpRuleJsonToGrpcFilter(channel, config);
+        CapturingResponse response = new CapturingResponse(exchange.getResponse());
+
+        StepVerifier.create(filter.filter(exchange.mutate().response(response).build(), chain))
+                .verifyComplete();
+
+        // the chunks that are not requested are released on cancel
+        StepVerifier.create(response.body, 1)
+                .consumeNextWith(chunk -> {
+                    assertEquals(16, chunk.readableByteCount());
+                    DataBufferUtils.release(chunk);
+                })
+                .thenCancel()
+                .verify();
+        assertEquals("{\n  \"soundId\": \"123\",\n  \"waves\": [],\n  \"type\": \"SOUND_TYPE_UNSPECIFIED\"\n}",
+                ObjectMother.join(response.body));
+    }
+
+    @Test
+    @DisplayName("Metrics - every stage is recorded by authority and method")
+    void testMetrics() {
+        MockServerWebExchange exchange = ObjectMother.createRequestExchange(POST, "/example.echo.v1.EchoService/CreateSound",
+                "{ \"sound\": { \"soundId\": \"123\" } }");
+        MockChannel<DynamicMessage> channel = ObjectMother.createResponseChannel(exchange, "{\"soundId\": \"123\"}");
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        HttpRuleJsonToGrpcGatewayFilterFactory.Config config = new HttpRuleJsonToGrpcGatewayFilterFactory.Config();
+        config.setMetrics(new TranscodingMetrics(registry));
+        GatewayFilter filter = ObjectMother.createHttpRuleJsonToGrpcFilter(channel, config);
+
+        StepVerifier.create(filter.filter(exchange, chain))
+                .verifyComplete();
+
+        Tags tags = Tags.of("authority", "localhost:8080", "method", "example.echo.v1.EchoService/CreateSound");
+        assertEquals(1, registry.get("grpc.gateway.route.lookup").tags("authority", "localhost:8080", "found", "true").timer().count());
+        assertEquals(1, registry.get("grpc.gateway.request.decode").tags(tags).timer().count());
+        assertEquals(1, registry.get("grpc.gateway.backend.call").tags(tags).tag("status", "OK").timer().count());
+        assertEquals(exchange.getResponse().getBodyAsString().block().length(),
+                registry.get("grpc.gateway.response.size").tags(tags).summary().totalAmount());
+    }
+
+    @Test
+    @DisplayName("Compression - gzip response and gRPC compression")
+    void testCompression() throws Exception {
+        MockServerHttpRequest request = MockServerHttpRequest.method(GET, "http://localhost:8080/sounds/123")
+                .header(HttpHeaders.ACCEPT_ENCODING, "deflate;q=0.5, gzip")
+                .build();
+        MockServerWebExchange exchange = ObjectMother.createExchangeFromRequest(request);
+        MockChannel<DynamicMessage> channel = ObjectMother.createResponseChannel(exchange, "{\"soundId\": \"123\"}");
+        HttpRuleJsonToGrpcGatewayFilterFactory.Config config = new HttpRuleJsonToGrpcGatewayFilterFactory.Config();
+        config.setResponseEncodings(List.of("gzip", "deflate"));
+        config.setResponseCompressionMinSize(0);
+        config.setGrpcCompression("gzip");
+        GatewayFilter filter = ObjectMother.createHttpRuleJsonToGrpcFilter(channel, config);
+
+        StepVerifier.create(filter.filter(exchange, chain))
+                .verifyComplete();
+
+        assertEquals("gzip", channel.callOptions.getCompressor());
+        assertEquals("gzip", exchange.getResponse().getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+        assertEquals(HttpHeaders.ACCEPT_ENCODING, exchange.getResponse().getHeaders().getFirst(HttpHeaders.VARY));
+        try (InputStream inputStream = new GZIPInputStream(new ByteArrayInputStream(ObjectMother.responseBytes(exchange)))) {
+            assertEquals("{\n  \"soundId\": \"123\",\n  \"waves\": [],\n  \"type\": \"SOUND_TYPE_UNSPECIFIED\"\n}",
+                    new String(inputStream.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    @DisplayName("Compression - a response smaller than the minimum size is not compressed")
+    void testCompressionMinSize() {
+        MockServerHttpRequest request = MockServerHttpRequest.method(GET, "http://localhost:8080/sounds/123")
+                .header(HttpHeaders.ACCEPT_ENCODING, "gzip")
+                .build();
+        MockServerWebExchange exchange = ObjectMother.createExchangeFromRequest(request);
+        MockChannel<DynamicMessage> channel = ObjectMother.createResponseChannel(exchange, "{\"soundId\": \"123\"}");
+        HttpRuleJsonToGrpcGatewayFilterFactory.Config config = new HttpRuleJsonToGrpcGatewayFilterFactory.Config();
+        config.setResponseEncodings(List.of("gzip"));
+        GatewayFilter filter = ObjectMother.createHttpRuleJsonToGrpcFilter(channel, config);
+
+        StepVerifier.create(filter.filter(exchange, chain))
+                .verifyComplete();
+
+        assertNull(channel.callOptions.getCompressor());
+        assertNull(exchange.getResponse().getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+        assertEquals("{\n  \"soundId\": \"123\",\n  \"waves\": [],\n  \"type\": \"SOUND_TYPE_UNSPECIFIED\"\n}",
+                exchange.getResponse().getBodyAsString().block());
+    }
+
+    @Test
+    @DisplayName("Deadline - the timeout header bounds the backend call")
+    void testDeadline() {
+        MockServerHttpRequest request = MockServerHttpRequest.method(GET, "http://localhost:8080/sounds/123")
+                .header("grpc-timeout", "100m")
+                .build();
+        MockServerWebExchange exchange = ObjectMother.createExchangeFromRequest(request);
+        MockChannel<DynamicMessage> channel = ObjectMother.createResponseChannel(exchange, "{\"soundId\": \"123\"}");
+        HttpRuleJsonToGrpcGatewayFilterFactory.Config config = new HttpRuleJsonToGrpcGatewayFilterFactory.Config();
+        config.setDeadline(Duration.ofSeconds(10));
+        config.setTimeoutHeader("grpc-timeout");
+        GatewayFilter filter = ObjectMother.createHttpRuleJsonToGrpcFilter(channel, config);
+
+        StepVerifier.create(filter.filter(exchange, chain))
+                .verifyComplete();
+
+        assertTrue(channel.callOptions.getDeadline().timeRemaining(TimeUnit.MILLISECONDS) <= 100);
+    }
+
+    @Test
+    @DisplayName("Deadline fail - invalid timeout header")
+    void testInvalidTimeout() {
+        MockServerHttpRequest request = MockServerHttpRequest.method(GET, "http://localhost:8080/sounds/123")
+                .header("grpc-timeout", "soon")
+                .build();
+        MockServerWebExchange exchange = ObjectMother.createExchangeFromRequest(request);
+        MockChannel<DynamicMessage> channel = ObjectMother.createResponseChannel(exchange, "{\"soundId\": \"123\"}");
+        HttpRuleJsonToGrpcGatewayFilterFactory.Config config = new HttpRuleJsonToGrpcGatewayFilterFactory.Config();
+        config.setTimeoutHeader("grpc-timeout");
+        GatewayFilter filter = ObjectMother.createHttpRuleJsonToGrpcFilter(channel, config);
+
+        StepVerifier.create(filter.filter(exchange, chain))
+                .expectErrorMatches(e -> e instanceof StatusRuntimeException &&
+                                         ((StatusRuntimeException) e).getStatus().getCode() == Status.Code.INVALID_ARGUMENT)
+                .verify();
+    }
+
+    @Test
+    @DisplayName("Concurrency limit - requests beyond the limit are rejected, and the permits released")
+    void testConcurrencyLimit() {
+        AdaptiveConcurrencyLimiter.Config limiterConfig = new AdaptiveConcurrencyLimiter.Config();
+        limiterConfig.setInitialLimit(1);
+        limiterConfig.setMaxLimit(1);
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(limiterConfig);
+        HttpRuleJsonToGrpcGatewayFilterFactory.Config config = new HttpRuleJsonToGrpcGatewayFilterFactory.Config();
+        config.setConcurrencyLimiter(limiter);
+        MockServerWebExchange exchange = ObjectMother.createRequestExchange(GET, "/sounds/123");
+        MockChannel<DynamicMessage> channel = ObjectMother.createResponseChannel(exchange, "{\"soundId\": \"123\"}");
+        GatewayFilter filter = ObjectMother.createHttpRuleJsonToGrpcFilter(channel, config);
+
+        StepVerifier.create(filter.filter(exchange, chain))
+                .verifyComplete();
+        assertEquals(0, limiter.limits.get("localhost:8080").inFlight.get());
+
+        AdaptiveConcurrencyLimiter.Permit inFlight = limiter.tryAcquire("localhost:8080");
+        MockServerWebExchange rejected = ObjectMother.createRequestExchange(GET, "/sounds/123");
+        StepVerifier.create(filter.filter(rejected, chain))
+                .expectErrorMatches(e -> isResponseStatus(e, HttpStatus.TOO_MANY_REQUESTS, Status.Code.RESOURCE_EXHAUSTED))
+                .verify();
+        inFlight.release();
+    }
+
+    @Test
+    @DisplayName("Coalescing - a GET mapping is called through the coalescer")
+    void testCoalescing() {
+        MockServerWebExchange exchange = ObjectMother.createRequestExchange(GET, "/sounds/123");
+        MockChannel<DynamicMessage> channel = ObjectMother.createResponseChannel(exchange, "{\"soundId\": \"123\"}");
+        HttpRuleJsonToGrpcGatewayFilterFactory.Config config = new HttpRuleJsonToGrpcGatewayFilterFactory.Config();
+        config.setCoalescingRequests(true);
+        GatewayFilter filter = ObjectMother.createHttpRuleJsonToGrpcFilter(channel, config);
+
+        StepVerifier.create(filter.filter(exchange, chain))
+                .verifyComplete();
+
+        assertEquals("sound_id: \"123\"\n", channel.requestMessage());
+        assertEquals("{\n  \"soundId\": \"123\",\n  \"waves\": [],\n  \"type\": \"SOUND_TYPE_UNSPECIFIED\"\n}",
+                exchange.getResponse().getBodyAsString().block());
+        assertTrue(index.get("GET", "/sounds/123").isSafe());
+        assertFalse(index.get("PATCH", "/sounds/123").isSafe());
+    }
+
+    @Test
+    @DisplayName("Protobuf - binary request merged with the path variables, and binary response")
+    void testProtobufPassthrough() throws Exception {
+        HttpRuleMethodDescriptor methodDescriptor = index.get("PATCH", "/sounds/123");
+        DynamicMessage.Builder sound = DynamicMessage.newBuilder(methodDescriptor.getInputType().findFieldByName("sound").getMessageType());
+        JsonFormat.parser().merge("{\"type\": \"SONG\", \"waves\": [{\"waveId\": 10}]}", sound);
+        MockServerHttpRequest request = MockServerHttpRequest.method(PATCH, "http://localhost:8080/sounds/123")
+                .contentType(MediaType.parseMediaType("application/x-protobuf"))
+                .body(Flux.just(DefaultDataBufferFactory.sharedInstance.wrap(sound.build().toByteArray())));
+        MockServerWebExchange exchange = ObjectMother.createExchangeFromRequest(request);
+        MockChannel<DynamicMessage> channel = ObjectMother.createResponseChannel(exchange, "{\"soundId\": \"123\", \"type\": \"SONG\"}");
+        GatewayFilter filter = ObjectMother.createHttpRuleJsonToGrpcFilter(channel);
+
+        StepVerifier.create(filter.filter(exchange, chain))
+                .verifyComplete();
+
+        assertEquals("sound {\n  sound_id: \"123\"\n  waves {\n    wave_id: \"10\"\n  }\n  type: SONG\n}\n",
+                DynamicMessage.parseFrom(methodDescriptor.getInputType(), channel.rawRequest).toString());
+        assertEquals("application/x-protobuf", exchange.getResponse().getHeaders().getContentType().toString());
+        assertArrayEquals(channel.response.toByteArray(), ObjectMother.responseBytes(exchange));
+    }
+
+    @Test
+    @DisplayName("Protobuf - JSON request accepting a binary response")
+    void testProtobufResponse() {
+        MockServerHttpRequest request = MockServerHttpRequest.method(GET, "http://localhost:8080/sounds/123")
+                .accept(MediaType.parseMediaType("application/x-protobuf"))
+                .build();
+        MockServerWebExchange exchange = ObjectMother.createExchangeFromRequest(request);
+        MockChannel<DynamicMessage> channel = ObjectMother.createResponseChannel(exchange, "{\"soundId\": \"123\", \"type\": \"SONG\"}");
+        GatewayFilter filter = ObjectMother.createHttpRuleJsonToGrpcFilter(channel);
+
+        StepVerifier.create(filter.filter(exchange, chain))
+                .verifyComplete();
+
+        assertEquals("sound_id: \"123\"\n", channel.requestMessage());
+        assertEquals("application/x-protobuf", exchange.getResponse().getHeaders().getContentType().toString());
+        assertArrayEquals(channel.response.toByteArray(), ObjectMother.responseBytes(exchange));
+    }
+
+    @Test
+    @DisplayName("Server streaming - every message is a line of newline-delimited JSON")
+    void testServerStreamingNdjson() {
+        MockServerWebExchange exchange = ObjectMother.createRequestExchange(GET, "/watch/sounds/123");
+        StreamingMockChannel channel = ObjectMother.createStreamingResponseChannel(exchange,
+                "{\"soundId\": \"1\"}", "{\"soundId\": \"2\", \"type\": \"SONG\"}");
+        GatewayFilter filter = ObjectMother.createHttpRuleJsonToGrpcFilter(channel);
+
+        StepVerifier.create(filter.filter(exchange, chain))
+                .verifyComplete();
+
+        assertEquals("example.stream.v1.StreamService/WatchSound", channel.requestMethodName());
+        assertEquals(MediaType.APPLICATION_NDJSON_VALUE, exchange.getResponse().getHeaders().getFirst(HttpHeaders.CONTENT_TYPE));
+        assertEquals("{\"soundId\":\"1\",\"waves\":[],\"type\":\"SOUND_TYPE_UNSPECIFIED\"}\n"
+                     + "{\"soundId\":\"2\",\"waves\":[],\"type\":\"SONG\"}\n",
+                exchange.getResponse().getBodyAsString().block());
+    }
+
+    @Test
+    @DisplayName("Server streaming - every message is a server-sent event when the client accepts them")
+    void testServerStreamingServerSentEvents() {
+        MockServerHttpRequest request = MockServerHttpRequest.method(GET, "http://localhost:8080/watch/sounds/123")
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                .build();
+        MockServerWebExchange exchange = ObjectMother.createExchangeFromRequest(request);
+        StreamingMockChannel channel = ObjectMother.createStreamingResponseChannel(exchange,
+                "{\"soundId\": \"1\"}", "{\"soundId\": \"2\"}");
+        GatewayFilter filter = ObjectMother.createHttpRuleJsonToGrpcFilter(channel);
+
+        StepVerifier.create(filter.filter(exchange, chain))
+                .verifyComplete();
+
+        assertEquals(MediaType.TEXT_EVENT_STREAM_VALUE, exchange.getResponse().getHeaders().getFirst(HttpHeaders.CONTENT_TYPE));
+        assertEquals("data: {\"soundId\":\"1\",\"waves\":[],\"type\":\"SOUND_TYPE_UNSPECIFIED\"}\n\n"
+                     + "data: {\"soundId\":\"2\",\"waves\":[],\"type\":\"SOUND_TYPE_UNSPECIFIED\"}\n\n",
+                exchange.getResponse().getBodyAsString().block());
+    }
+
+    @Test
+    @DisplayName("Server streaming - messages are requested from the backend as the response is written")
+    void testServerStreamingDemand() {
+        MockServerWebExchange exchange = ObjectMother.createRequestExchange(GET, "/watch/sounds/123");
+        StreamingMockChannel channel = ObjectMother.createStreamingResponseChannel(exchange,
+                "{\"soundId\": \"1\"}", "{\"soundId\": \"2\"}");
+        GatewayFilter filter = ObjectMother.createHttpRuleJsonToGrpcFilter(channel);
+        CapturingResponse response = new CapturingResponse(exchange.getResponse());
+
+        StepVerifier.create(filter.filter(exchange.mutate().response(response).build(), chain))
+                .verifyComplete();
+
+        StepVerifier.create(response.messages, 0)
+                .then(() -> assertEquals(List.of("message sound_id: \"123\"", "halfClose"), channel.events))
+                .thenRequest(1)
+                .assertNext(message -> assertEquals("{\"soundId\":\"1\",\"waves\":[],\"type\":\"SOUND_TYPE_UNSPECIFIED\"}\n",
+                        ObjectMother.join(message)))
+                .then(() -> assertEquals(List.of("message sound_id: \"123\"", "halfClose", "request 1"), channel.events))
+                .thenRequest(1)
+                .assertNext(message -> assertEquals("{\"soundId\":\"2\",\"waves\":[],\"type\":\"SOUND_TYPE_UNSPECIFIED\"}\n",
+                        ObjectMother.join(message)))
+                .verifyComplete();
+        assertEquals(List.of("message sound_id: \"123\"", "halfClose", "request 1", "request 1"), channel.events);
+    }
+
+    @Test
+    @DisplayName("Client streaming - every line is sent as it arrives, and the call is half-closed at the end of the body")
+    void testClientStreamingNdjson() {
+        Sinks.Many<DataBuffer> body = Sinks.many().unicast().onBackpressureBuffer();
+        MockServerHttpRequest request = MockServerHttpRequest.method(POST, "http://localhost:8080/waves/record")
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body.asFlux());
+        MockServerWebExchange exchange = ObjectMother.createExchangeFromRequest(request);
+        StreamingMockChannel channel = ObjectMother.createStreamingResponseChannel(exchange, "{\"soundId\": \"123\"}");
+        GatewayFilter filter = ObjectMother.createHttpRuleJsonToGrpcFilter(channel);
+
+        StepVerifier.create(filter.filter(exchange, chain))
+                .then(() -> body.tryEmitNext(ObjectMother.wrap("{\"waveId\": \"1\", \"value\": \"a\"}\n{\"wave")))
+                .then(() -> assertEquals(List.of("message wave_id: \"1\" value: \"a\""), channel.sentEvents()))
+                .then(() -> body.tryEmitNext(ObjectMother.wrap("Id\": \"2\"}\n")))
+                .then(() -> assertEquals(List.of("message wave_id: \"1\" value: \"a\"", "message wave_id: \"2\""), channel.sentEvents()))
+                .then(body::tryEmitComplete)
+                .verifyComplete();
+
+        assertEquals("example.stream.v1.StreamService/RecordWaves", channel.requestMethodName());
+        assertEquals(List.of("message wave_id: \"1\" value: \"a\"", "message wave_id: \"2\"", "halfClose"), channel.sentEvents());
+        assertEquals("{\n  \"soundId\": \"123\",\n  \"waves\": [],\n  \"type\": \"SOUND_TYPE_UNSPECIFIED\"\n}",
+                exchange.getResponse().getBodyAsString().block());
+    }
+
+    @Test
+    @DisplayName("Bidi streaming - a JSON array split across chunks is sent element by element, and the responses are streamed")
+    void testBidiStreamingArray() {
+        MockServerHttpRequest request = MockServerHttpRequest.method(POST, "http://localhost:8080/waves/echo")
+                .body(Flux.just(ObjectMother.wrap("[{\"waveId\": \"1\", \"val"), ObjectMother.wrap("ue\": \"a\"},"),
+                        ObjectMother.wrap(" {\"waveId\": \"2\"}]")));
+        MockServerWebExchange exchange = ObjectMother.createExchangeFromRequest(request);
+        StreamingMockChannel channel = ObjectMother.createStreamingResponseChannel(exchange,
+                "{\"waveId\": \"1\", \"value\": \"a\"}", "{\"waveId\": \"2\", \"value\": \"b\"}");
+        GatewayFilter filter = ObjectMother.createHttpRuleJsonToGrpcFilter(channel);
+
+        StepVerifier.create(filter.filter(exchange, chain))
+                .verifyComplete();
+
+        assertEquals("example.stream.v1.StreamService/EchoWaves", channel.requestMethodName());
+        assertEquals(List.of("message wave_id: \"1\" value: \"a\"", "message wave_id: \"2\"", "halfClose"), channel.sentEvents());
+        assertEquals(MediaType.APPLICATION_NDJSON_VALUE, exchange.getResponse().getHeaders().getFirst(HttpHeaders.CONTENT_TYPE));
+        assertEquals("{\"waveId\":\"1\",\"value\":\"a\"}\n{\"waveId\":\"2\",\"value\":\"b\"}\n",
+                exchange.getResponse().getBodyAsString().block());
+    }
+
+    @ParameterizedTest(name = "Client streaming fail - {0}")
+    @ValueSource(strings = {"[{\"waveId\": \"1\"}, {\"waveId\": }]", "[{\"waveId\": \"1\"},]", "{\"waveId\": \"1\"}\n\"text\""})
+    void testClientStreamingMalformedElement(String body) {
+        MockServerWebExchange exchange = ObjectMother.createRequestExchange(POST, "/waves/record", body);
+        StreamingMockChannel channel = ObjectMother.createStreamingResponseChannel(exchange, "{\"soundId\": \"123\"}");
+        GatewayFilter filter = ObjectMother.createHttpRuleJsonToGrpcFilter(channel);
+
+        StepVerifier.create(filter.filter(exchange, chain))
+                .expectErrorMatches(e -> e instanceof StatusRuntimeException &&
+                                         ((StatusRuntimeException) e).getStatus().getCode() == Status.Code.INVALID_ARGUMENT)
+                .verify();
+
+        // the call is cancelled instead of half-closed, so the backend does not take the body as complete
+        assertTrue(channel.sentEvents().contains("cancel"));
+        assertFalse(channel.sentEvents().contains("halfClose"));
+    }
+
+    @Test
+    @DisplayName("Mapping fail - request body exceeds the limit")
+    void testRequestBodyLimit() {
+        MockServerWebExchange exchange = ObjectMother.createRequestExchange(POST, "/sounds",
+                "{ \"sound\": { \"soundId\": \"123\", \"waves\": [{\"waveId\": 10}] } }");
+        MockChannel<DynamicMessage> channel = ObjectMother.createResponseChannel(exchange, "{}");
+        HttpRuleJsonToGrpcGatewayFilterFactory.Config config = new HttpRuleJsonToGrpcGatewayFilterFactory.Config();
+        config.setMaxRequestMessageSize(16);
+        GatewayFilter filter = ObjectMother.createHttpRuleJsonToGrpcFilter(channel, config);
+
+        StepVerifier.create(filter.filter(exchange, chain))
+                .expectErrorMatches(e -> isResponseStatus(e, HttpStatus.PAYLOAD_TOO_LARGE, Status.Code.RESOURCE_EXHAUSTED))
+                .verify();
+    }
+
+    @ParameterizedTest(name = "Backend error - {0} is {1}")
+    @CsvSource({
+            "DEADLINE_EXCEEDED,GATEWAY_TIMEOUT",
+            "RESOURCE_EXHAUSTED,TOO_MANY_REQUESTS"
+    })
+    void testBackendErrorHttpStatus(Status.Code code, HttpStatus httpStatus) {
+        MockServerWebExchange exchange = ObjectMother.createRequestExchange(POST, "/example.echo.v1.EchoService/CreateSound", "{}");
+        Channel channel = ObjectMother.createErrorResponseChannel(code.toStatus().withDescription("backend error"));
+        GatewayFilter filter = ObjectMother.createHttpRuleJsonToGrpcFilter(channel);
+
+        StepVerifier.create(filter.filter(exchange, chain))
+                .expectErrorMatches(e -> isResponseStatus(e, httpStatus, code)
+                                         && "backend error".equals(((ResponseStatusException) e).getReason()))
+                .verify();
+    }
+
+    /**
+     * @return whether the error is the HTTP status, caused by the gRPC status
+     */
+    static boolean isResponseStatus(Throwable e, HttpStatus httpStatus, Status.Code code) {
+        return e instanceof ResponseStatusException
+               && ((ResponseStatusException) e).getStatusCode() == httpStatus
+               && Status.fromThrowable(e.getCause()).getCode() == code;
+    }
+
     @Test
     @DisplayName("When gRPC server returns error code, it should be handled with ResponseStatusException")
     void testGrpcErrorHandling() {
@@ -237,8 +665,36 @@ class HttpRuleJsonToGrpcGatewayFilterFactoryTest {
             return exchange;
         }
 
+        static DataBuffer wrap(String chunk) {
+            return DefaultDataBufferFactory.sharedInstance.wrap(chunk.getBytes(StandardCharsets.UTF_8));
+        }
+
+        static String join(Publisher<? extends DataBuffer> body) {
+            return DataBufferUtils.join(body)
+                    .map(dataBuffer -> {
+                        String string = dataBuffer.toString(StandardCharsets.UTF_8);
+                        DataBufferUtils.release(dataBuffer);
+                        return string;
+                    })
+                    .block();
+        }
+
+        static byte[] responseBytes(MockServerWebExchange exchange) {
+            return DataBufferUtils.join(exchange.getResponse().getBody())
+                    .map(dataBuffer -> {
+                        byte[] bytes = new byte[dataBuffer.readableByteCount()];
+                        dataBuffer.read(bytes);
+                        DataBufferUtils.release(dataBuffer);
+                        return bytes;
+                    })
+                    .block();
+        }
+
         static GatewayFilter createHttpRuleJsonToGrpcFilter(Channel channel) {
-            HttpRuleJsonToGrpcGatewayFilterFactory.Config config = new HttpRuleJsonToGrpcGatewayFilterFactory.Config();
+            return createHttpRuleJsonToGrpcFilter(channel, new HttpRuleJsonToGrpcGatewayFilterFactory.Config());
+        }
+
+        static GatewayFilter createHttpRuleJsonToGrpcFilter(Channel channel, HttpRuleJsonToGrpcGatewayFilterFactory.Config config) {
             config.setMappingAllowedHeaders(Collections.singletonList("x-api-key"));
             return new HttpRuleJsonToGrpcGatewayFilterFactory(
                     target -> channel,
@@ -263,7 +719,62 @@ class HttpRuleJsonToGrpcGatewayFilterFactoryTest {
             return new MockChannel<>(builder.build());
         }
 
+        /**
+         * A file with streaming methods of the messages of echo.proto, which has none.
+         */
+        static DescriptorProtos.FileDescriptorProto createStreamingFile() {
+            return DescriptorProtos.FileDescriptorProto.newBuilder()
+                    .setName("stream.proto")
+                    .setPackage("example.stream.v1")
+                    .setSyntax("proto3")
+                    .addDependency("echo.proto")
+                    .addDependency("google/api/annotations.proto")
+                    .addService(DescriptorProtos.ServiceDescriptorProto.newBuilder()
+                            .setName("StreamService")
+                            .addMethod(createStreamingMethod("WatchSound", "GetSoundRequest", "Sound", false, true,
+                                    HttpRule.newBuilder().setGet("/watch/sounds/{sound_id}")))
+                            .addMethod(createStreamingMethod("RecordWaves", "Wave", "Sound", true, false,
+                                    HttpRule.newBuilder().setPost("/waves/record").setBody("*")))
+                            .addMethod(createStreamingMethod("EchoWaves", "Wave", "Wave", true, true,
+                                    HttpRule.newBuilder().setPost("/waves/echo").setBody("*"))))
+                    .build();
+        }
+
+        static DescriptorProtos.MethodDescriptorProto createStreamingMethod(String name, String inputType, String outputType,
+                                                                            boolean clientStreaming, boolean serverStreaming,
+                                                                            HttpRule.Builder httpRule) {
+            return DescriptorProtos.MethodDescriptorProto.newBuilder()
+                    .setName(name)
+                    .setInputType(".example.echo.v1." + inputType)
+                    .setOutputType(".example.echo.v1." + outputType)
+                    .setClientStreaming(clientStreaming)
+                    .setServerStreaming(serverStreaming)
+                    .setOptions(DescriptorProtos.MethodOptions.newBuilder()
+                            .setExtension(AnnotationsProto.http, httpRule.build()))
+                    .build();
+        }
+
+        static StreamingMockChannel createStreamingResponseChannel(MockServerWebExchange exchange, String... responseBodies) {
+            org.springframework.http.server.reactive.ServerHttpRequest request = exchange.getRequest();
+            Descriptors.Descriptor responseType = index.get(request.getMethod().name(), request.getPath().value()).getOutputType();
+            List<DynamicMessage> responses = new ArrayList<>();
+            for (String responseBody : responseBodies) {
+                DynamicMessage.Builder builder = DynamicMessage.newBuilder(responseType);
+                try {
+                    JsonFormat.parser().merge(responseBody, builder);
+                } catch (InvalidProtocolBufferException e) {
+                    throw new RuntimeException(e);
+                }
+                responses.add(builder.build());
+            }
+            return new StreamingMockChannel(responses);
+        }
+
         public static Channel createInvalidErrorResponseChannel() {
+            return createErrorResponseChannel(Status.INVALID_ARGUMENT.withDescription("invalid argument request."));
+        }
+
+        public static Channel createErrorResponseChannel(Status status) {
             return new Channel() {
                 @Override
                 public <ReqT, RespT> ClientCall<ReqT, RespT> newCall(io.grpc.MethodDescriptor<ReqT, RespT> methodDescriptor, CallOptions callOptions) {
@@ -277,7 +788,7 @@ class HttpRuleJsonToGrpcGatewayFilterFactoryTest {
 
                         @Override
                         public void request(int numMessages) {
-                            responseListener.onClose(Status.INVALID_ARGUMENT.withDescription("invalid argument request."), new Metadata());
+                            responseListener.onClose(status, new Metadata());
                         }
 
                         @Override
@@ -302,9 +813,124 @@ class HttpRuleJsonToGrpcGatewayFilterFactoryTest {
         }
     }
 
+    /**
+     * A response that keeps the response body instead of writing it, so that a test controls the demand.
+     */
+    static class CapturingResponse extends ServerHttpResponseDecorator {
+        Flux<DataBuffer> body;
+        Flux<Flux<DataBuffer>> messages;
+
+        CapturingResponse(ServerHttpResponse delegate) {
+            super(delegate);
+        }
+
+        @Override
+        public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
+            this.body = Flux.from(body);
+            return Mono.empty();
+        }
+
+        @Override
+        public Mono<Void> writeAndFlushWith(Publisher<? extends Publisher<? extends DataBuffer>> body) {
+            messages = Flux.from(body).map(message -> Flux.<DataBuffer>from(message));
+            return Mono.empty();
+        }
+    }
+
+    /**
+     * A channel of streaming calls, which sends a response message only when one is requested.
+     */
+    static class StreamingMockChannel extends Channel {
+        final List<DynamicMessage> responses;
+        // what the backend received in order: the request messages, the requests for response messages and the half-close
+        final List<String> events = new ArrayList<>();
+        MethodDescriptor<?, ?> requestMethodDescriptor;
+
+        StreamingMockChannel(List<DynamicMessage> responses) {
+            this.responses = responses;
+        }
+
+        @Override
+        public <RequestT, ResponseT> ClientCall<RequestT, ResponseT> newCall(MethodDescriptor<RequestT, ResponseT> methodDescriptor, CallOptions callOptions) {
+            requestMethodDescriptor = methodDescriptor;
+            return new ClientCall<RequestT, ResponseT>() {
+                ClientCall.Listener<ResponseT> listener;
+                long pending;
+                int sent;
+                boolean halfClosed;
+                boolean closed;
+
+                @Override
+                public void start(ClientCall.Listener<ResponseT> listener, Metadata headers) {
+                    this.listener = listener;
+                }
+
+                @Override
+                public void request(int numMessages) {
+                    events.add("request " + numMessages);
+                    pending += numMessages;
+                    respond();
+                }
+
+                @Override
+                public void cancel(String message, Throwable cause) {
+                    // a real call closes the listener later on its executor, so the cause of the cancellation wins
+                    events.add("cancel");
+                }
+
+                @Override
+                public void halfClose() {
+                    events.add("halfClose");
+                    halfClosed = true;
+                    respond();
+                }
+
+                @Override
+                public void sendMessage(RequestT message) {
+                    events.add("message " + TextFormat.printer().shortDebugString((MessageOrBuilder) message));
+                }
+
+                void respond() {
+                    // a client streaming method responds once all the request messages are sent
+                    if (methodDescriptor.getType() == MethodDescriptor.MethodType.CLIENT_STREAMING && !halfClosed) {
+                        return;
+                    }
+                    while (pending > 0 && sent < responses.size()) {
+                        pending--;
+                        listener.onMessage(methodDescriptor.parseResponse(responses.get(sent++).toByteString().newInput()));
+                    }
+                    if (sent == responses.size() && halfClosed && !closed) {
+                        closed = true;
+                        listener.onClose(Status.OK, new Metadata());
+                    }
+                }
+            };
+        }
+
+        @Override
+        public String authority() {
+            return "";
+        }
+
+        String requestMethodName() {
+            return requestMethodDescriptor.getFullMethodName();
+        }
+
+        /**
+         * @return the events without the requests for response messages, whose order depends on the subscriber
+         */
+        List<String> sentEvents() {
+            return events.stream()
+                    .filter(event -> !event.startsWith("request "))
+                    .collect(Collectors.toList());
+        }
+    }
+
     static class MockChannel<RES extends Message> extends Channel {
         MethodDescriptor<?, ?> requestMethodDescriptor;
         DynamicMessage request;
+        byte[] rawRequest;
+        CallOptions callOptions;
         Metadata requestHeaders;
         RES response;
 
@@ -315,6 +941,7 @@ class HttpRuleJsonToGrpcGatewayFilterFactoryTest {
         @Override
         public <RequestT, ResponseT> ClientCall<RequestT, ResponseT> newCall(MethodDescriptor<RequestT, ResponseT> methodDescriptor, CallOptions callOptions) {
             requestMethodDescriptor = methodDescriptor;
+            this.callOptions = callOptions;
             return new ClientCall<RequestT, ResponseT>() {
                 ClientCall.Listener<ResponseT> listener;
 
@@ -339,11 +966,14 @@ class HttpRuleJsonToGrpcGatewayFilterFactoryTest {
                     listener.onClose(Status.OK, new Metadata());
                 }
 
-                @SuppressWarnings("unchecked")
                 @Override
                 public void sendMessage(RequestT message) {
-                    request = (DynamicMessage) message;
-                    listener.onMessage((ResponseT) DynamicMessage.newBuilder(response).build());
+                    if (message instanceof byte[]) {
+                        rawRequest = (byte[]) message;
+                    } else {
+                        request = (DynamicMessage) message;
+                    }
+                    listener.onMessage(methodDescriptor.parseResponse(response.toByteString().newInput()));
                 }
             };
         }
@@ -0,0 +1,58 @@
+package com.github.protobufx.spring.gateway.grpc.filter;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class JsonStreamTokenizerTest {
+
+    static List<String> tokenize(JsonStreamTokenizer tokenizer, String... chunks) {
+        List<String> elements = new ArrayList<>();
+        for (String chunk : chunks) {
+            byte[] bytes = chunk.getBytes(StandardCharsets.UTF_8);
+            for (byte[] element : tokenizer.tokenize(DefaultDataBufferFactory.sharedInstance.wrap(bytes))) {
+                elements.add(new String(element, StandardCharsets.UTF_8));
+            }
+        }
+        tokenizer.complete();
+        return elements;
+    }
+
+    @Test
+    @DisplayName("Newline-delimited JSON split across chunks")
+    void testNdjson() {
+        List<String> elements = tokenize(new JsonStreamTokenizer(1024),
+                "{\"soundId\": \"1\"}\n{\"soundId\"", ": \"}{\\\"\"}\n", "\n{\"waves\": [{\"waveId\": 1}]}");
+
+        assertEquals(3, elements.size());
+        assertEquals("{\"soundId\": \"1\"}", elements.get(0));
+        assertEquals("{\"soundId\": \"}{\\\"\"}", elements.get(1));
+        assertEquals("{\"waves\": [{\"waveId\": 1}]}", elements.get(2));
+    }
+
+    @Test
+    @DisplayName("JSON array split across chunks")
+    void testArray() {
+        List<String> elements = tokenize(new JsonStreamTokenizer(1024),
+                " [ {\"soundId\": \"1\"}", ",", "{\"soundId\": \"2\"} ]\n");
+
+        assertEquals(2, elements.size());
+        assertEquals("{\"soundId\": \"1\"}", elements.get(0));
+        assertEquals("{\"soundId\": \"2\"}", elements.get(1));
+    }
+
+    @ParameterizedTest(name = "Invalid stream - {0}")
+    @ValueSource(strings = {"{\"soundId\": \"1\"", "[{}", "[{} {}]", "[{}] {}", "[{},]", "[{}, ]", "[,{}]", "\"text\"", "{\"soundId\": \"too long for the limit\"}"})
+    void testInvalid(String body) {
+        assertThrows(IllegalArgumentException.class, () -> tokenize(new JsonStreamTokenizer(32), body));
+    }
+}
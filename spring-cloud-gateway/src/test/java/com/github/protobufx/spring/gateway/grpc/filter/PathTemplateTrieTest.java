@@ -0,0 +1,77 @@
+package com.github.protobufx.spring.gateway.grpc.filter;
+
+import com.google.api.AnnotationsProto;
+import com.google.api.HttpRule;
+import com.google.common.io.ByteStreams;
+import com.google.protobuf.DescriptorProtos;
+import com.google.protobuf.Descriptors;
+import com.google.protobuf.ExtensionRegistry;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.core.io.Resource;
+
+import java.io.InputStream;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class PathTemplateTrieTest {
+
+    static PathTemplateTrie trie;
+
+    @BeforeAll
+    static void beforeAll() throws Exception {
+        byte[] protoBinary;
+        Resource resource = new DefaultResourceLoader().getResource("classpath:descriptors.pb");
+        try (InputStream inputStream = resource.getInputStream()) {
+            protoBinary = ByteStreams.toByteArray(inputStream);
+        }
+        ExtensionRegistry extensionRegistry = ExtensionRegistry.newInstance();
+        extensionRegistry.add(AnnotationsProto.http);
+        FileDescriptorIndex index = new FileDescriptorIndex(DescriptorProtos.FileDescriptorSet.parseFrom(protoBinary, extensionRegistry));
+        Descriptors.MethodDescriptor method = index.get("POST", "/sounds").getMethodDescriptor();
+
+        trie = new PathTemplateTrie(Arrays.asList(
+                new HttpRuleMethodDescriptor(method, HttpRule.newBuilder().setGet("/v1/shelves").build()),
+                new HttpRuleMethodDescriptor(method, HttpRule.newBuilder().setGet("/v1/shelves/{shelf}").build()),
+                new HttpRuleMethodDescriptor(method, HttpRule.newBuilder().setGet("/v1/shelves/default").build()),
+                new HttpRuleMethodDescriptor(method, HttpRule.newBuilder().setGet("/v1/shelves/*/books/{book.id}").build()),
+                new HttpRuleMethodDescriptor(method, HttpRule.newBuilder().setPost("/v1/shelves/{shelf}:archive").build()),
+                new HttpRuleMethodDescriptor(method, HttpRule.newBuilder().setGet("/v1/files/{path=**}").build()),
+                new HttpRuleMethodDescriptor(method, HttpRule.newBuilder().setPost("/v1/files/**:upload").build()),
+                new HttpRuleMethodDescriptor(method, HttpRule.newBuilder().setGet("/v1/{name=shelves/*}/unsupported").build())
+        ));
+    }
+
+    @ParameterizedTest(name = "{0} {1} -> {2}")
+    @CsvSource({
+            "GET,/v1/shelves,/v1/shelves",
+            "GET,/v1/shelves/123,/v1/shelves/{shelf}",
+            "GET,/v1/shelves/default,/v1/shelves/default",
+            "GET,/v1/shelves/1/books/2,/v1/shelves/*/books/{book.id}",
+            "POST,/v1/shelves/1:archive,/v1/shelves/{shelf}:archive",
+            "GET,/v1/shelves/12:34,/v1/shelves/{shelf}",
+            "GET,/v1/files,/v1/files/{path=**}",
+            "GET,/v1/files/a/b/c.txt,/v1/files/{path=**}",
+            "POST,/v1/files/a/b:upload,/v1/files/**:upload"
+    })
+    void testFind(String method, String path, String expectedTemplate) {
+        assertEquals(expectedTemplate, trie.find(method, path).getPathPattern());
+    }
+
+    @ParameterizedTest(name = "{0} {1} -> not found")
+    @CsvSource({
+            "POST,/v1/shelves",
+            "GET,/v1/shelves/",
+            "GET,/v1/shelves/1/books",
+            "POST,/v1/shelves/1:unknown",
+            "POST,/v1/files/a/b",
+            "GET,/v1/shelves/1/unsupported"
+    })
+    void testNotFound(String method, String path) {
+        assertNull(trie.find(method, path));
+    }
+}
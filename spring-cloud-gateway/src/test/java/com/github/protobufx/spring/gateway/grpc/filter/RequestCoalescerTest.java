@@ -0,0 +1,104 @@
+package com.github.protobufx.spring.gateway.grpc.filter;
+
+import com.google.protobuf.Struct;
+import com.google.protobuf.Value;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RequestCoalescerTest {
+
+    static RequestCoalescer.Key key(String soundId) {
+        return RequestCoalescer.key("localhost:6565", "example.echo.v1.EchoService/GetSound",
+                soundId.getBytes(StandardCharsets.UTF_8), "", "application/json");
+    }
+
+    static Flux<DataBuffer> response(Mono<String> json) {
+        return json.<DataBuffer>map(value -> DefaultDataBufferFactory.sharedInstance.wrap(value.getBytes(StandardCharsets.UTF_8)))
+                .flux();
+    }
+
+    @Test
+    @DisplayName("Concurrent identical requests share a single call, and later ones make a new call")
+    void testExecute() {
+        RequestCoalescer coalescer = new RequestCoalescer();
+        AtomicInteger calls = new AtomicInteger();
+        Sinks.One<String> backend = Sinks.one();
+
+        Mono<byte[]> first = coalescer.execute(key("123"), () -> {
+            calls.incrementAndGet();
+            return response(backend.asMono());
+        }).cache();
+        Mono<byte[]> second = coalescer.execute(key("123"), () -> {
+            calls.incrementAndGet();
+            return response(Mono.just("{}"));
+        }).cache();
+        first.subscribe();
+        second.subscribe();
+        backend.tryEmitValue("{\"soundId\": \"123\"}");
+
+        byte[] expected = "{\"soundId\": \"123\"}".getBytes(StandardCharsets.UTF_8);
+        assertArrayEquals(expected, first.block());
+        assertArrayEquals(expected, second.block());
+        assertEquals(1, calls.get());
+        assertTrue(coalescer.calls.isEmpty());
+
+        coalescer.execute(key("123"), () -> {
+            calls.incrementAndGet();
+            return response(Mono.just("{}"));
+        }).block();
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    @DisplayName("Different requests make their own calls, and a failed call fails all its requests")
+    void testDifferentRequests() {
+        RequestCoalescer coalescer = new RequestCoalescer();
+        Sinks.One<String> backend = Sinks.one();
+
+        Mono<byte[]> failed = coalescer.execute(key("123"), () -> response(backend.asMono())).cache();
+        Mono<byte[]> shared = coalescer.execute(key("123"), () -> response(Mono.just("{}"))).cache();
+        failed.subscribe(bytes -> { }, e -> { });
+        shared.subscribe(bytes -> { }, e -> { });
+
+        assertArrayEquals("{}".getBytes(StandardCharsets.UTF_8),
+                coalescer.execute(key("456"), () -> response(Mono.just("{}"))).block());
+
+        backend.tryEmitError(new IllegalStateException("unavailable"));
+        assertEquals("unavailable", failed.onErrorResume(e -> Mono.just(e.getMessage().getBytes(StandardCharsets.UTF_8)))
+                .map(bytes -> new String(bytes, StandardCharsets.UTF_8)).block());
+        assertEquals("unavailable", shared.onErrorResume(e -> Mono.just(e.getMessage().getBytes(StandardCharsets.UTF_8)))
+                .map(bytes -> new String(bytes, StandardCharsets.UTF_8)).block());
+        assertTrue(coalescer.calls.isEmpty());
+    }
+
+    @Test
+    @DisplayName("Equal messages have the same key, whatever the order of their map entries")
+    void testKey() {
+        Struct first = Struct.newBuilder()
+                .putFields("a", Value.newBuilder().setNumberValue(1).build())
+                .putFields("b", Value.newBuilder().setNumberValue(2).build())
+                .build();
+        Struct second = Struct.newBuilder()
+                .putFields("b", Value.newBuilder().setNumberValue(2).build())
+                .putFields("a", Value.newBuilder().setNumberValue(1).build())
+                .build();
+
+        assertEquals(RequestCoalescer.key("a:1", "s/M", first, "", "application/json"),
+                RequestCoalescer.key("a:1", "s/M", second, "", "application/json"));
+        assertNotEquals(RequestCoalescer.key("a:1", "s/M", first, "", "application/json"),
+                RequestCoalescer.key("a:1", "s/M", first, "x-api-key:k\n", "application/json"));
+    }
+}
@@ -0,0 +1,124 @@
+package com.github.protobufx.spring.gateway.grpc.filter;
+
+import io.netty.buffer.PooledByteBufAllocator;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.NettyDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import reactor.core.publisher.Flux;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ResponseCompressionTest {
+
+    static final NettyDataBufferFactory DATA_BUFFER_FACTORY = new NettyDataBufferFactory(PooledByteBufAllocator.DEFAULT);
+
+    static HttpHeaders acceptEncoding(String value) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.add(HttpHeaders.ACCEPT_ENCODING, value);
+        return headers;
+    }
+
+    static Flux<DataBuffer> body(String... chunks) {
+        return Flux.fromArray(chunks)
+                .map(chunk -> DATA_BUFFER_FACTORY.wrap(chunk.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    static byte[] join(Flux<DataBuffer> body) {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        body.doOnNext(dataBuffer -> {
+                    byte[] bytes = new byte[dataBuffer.readableByteCount()];
+                    dataBuffer.read(bytes);
+                    outputStream.writeBytes(bytes);
+                    DataBufferUtils.release(dataBuffer);
+                })
+                .blockLast();
+        return outputStream.toByteArray();
+    }
+
+    static String decompress(InputStream inputStream) throws IOException {
+        try (inputStream) {
+            return new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    @Test
+    @DisplayName("The preferred encoding with the highest quality is negotiated")
+    void testNegotiate() {
+        ResponseCompression compression = new ResponseCompression(DATA_BUFFER_FACTORY, List.of("gzip", "deflate"), 0);
+
+        assertEquals("gzip", compression.negotiate(acceptEncoding("deflate, gzip")));
+        assertEquals("deflate", compression.negotiate(acceptEncoding("gzip;q=0.5, deflate")));
+        assertEquals("deflate", compression.negotiate(acceptEncoding("gzip;q=0, *")));
+        assertEquals("gzip", compression.negotiate(acceptEncoding("identity, *;q=0.1")));
+        assertNull(compression.negotiate(acceptEncoding("identity")));
+        assertNull(compression.negotiate(new HttpHeaders()));
+        assertNull(new ResponseCompression(DATA_BUFFER_FACTORY, List.of(), 0).negotiate(acceptEncoding("gzip")));
+    }
+
+    @Test
+    @DisplayName("An unknown encoding is rejected")
+    void testUnsupportedEncoding() {
+        assertThrows(IllegalArgumentException.class, () -> new ResponseCompression(DATA_BUFFER_FACTORY, List.of("lzma"), 0));
+    }
+
+    @Test
+    @DisplayName("A body reaching the minimum size is compressed, in its chunks")
+    void testCompress() throws IOException {
+        ResponseCompression compression = new ResponseCompression(DATA_BUFFER_FACTORY, List.of("gzip"), 8);
+        HttpHeaders responseHeaders = new HttpHeaders();
+
+        byte[] compressed = join(compression.compress(body("{\"soundId\": ", "\"123\"}"), "gzip", responseHeaders));
+
+        assertEquals("gzip", responseHeaders.getFirst(HttpHeaders.CONTENT_ENCODING));
+        assertEquals("{\"soundId\": \"123\"}", decompress(new GZIPInputStream(new ByteArrayInputStream(compressed))));
+    }
+
+    @Test
+    @DisplayName("A body smaller than the minimum size is left as it is")
+    void testCompressMinSize() {
+        ResponseCompression compression = new ResponseCompression(DATA_BUFFER_FACTORY, List.of("gzip"), 1024);
+        HttpHeaders responseHeaders = new HttpHeaders();
+
+        byte[] body = join(compression.compress(body("{\"soundId\": ", "\"123\"}"), "gzip", responseHeaders));
+
+        assertNull(responseHeaders.getFirst(HttpHeaders.CONTENT_ENCODING));
+        assertEquals("{\"soundId\": \"123\"}", new String(body, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    @DisplayName("Every message of a stream is flushed, and the stream is a single deflate body")
+    void testCompressStream() throws IOException {
+        ResponseCompression compression = new ResponseCompression(DATA_BUFFER_FACTORY, List.of("deflate"), 1024);
+        HttpHeaders responseHeaders = new HttpHeaders();
+
+        List<Flux<DataBuffer>> messages = compression.compressStream(
+                        Flux.just(body("{\"soundId\": \"1\"}\n"), body("{\"soundId\": ", "\"2\"}\n")), "deflate", responseHeaders)
+                .collectList()
+                .block();
+
+        assertEquals("deflate", responseHeaders.getFirst(HttpHeaders.CONTENT_ENCODING));
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        for (Flux<DataBuffer> message : messages) {
+            byte[] bytes = join(message);
+            assertTrue(bytes.length > 0);
+            outputStream.writeBytes(bytes);
+        }
+        assertEquals("{\"soundId\": \"1\"}\n{\"soundId\": \"2\"}\n",
+                decompress(new InflaterInputStream(new ByteArrayInputStream(outputStream.toByteArray()))));
+    }
+}
@@ -0,0 +1,104 @@
+package com.github.protobufx.spring.gateway.grpc.filter;
+
+import com.google.api.AnnotationsProto;
+import com.google.common.io.ByteStreams;
+import com.google.protobuf.DescriptorProtos;
+import com.google.protobuf.Descriptors;
+import com.google.protobuf.DynamicMessage;
+import com.google.protobuf.ExtensionRegistry;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.util.JsonFormat;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.core.io.Resource;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class StreamingJsonParserTest {
+
+    static Descriptors.Descriptor createSoundRequest;
+    static Descriptors.Descriptor soundCustomTypeRequest;
+    static StreamingJsonParser parser = new StreamingJsonParser(JsonFormat.parser().ignoringUnknownFields(), true);
+
+    @BeforeAll
+    static void beforeAll() throws Exception {
+        byte[] protoBinary;
+        Resource resource = new DefaultResourceLoader().getResource("classpath:descriptors.pb");
+        try (InputStream inputStream = resource.getInputStream()) {
+            protoBinary = ByteStreams.toByteArray(inputStream);
+        }
+        ExtensionRegistry extensionRegistry = ExtensionRegistry.newInstance();
+        extensionRegistry.add(AnnotationsProto.http);
+        FileDescriptorIndex index = new FileDescriptorIndex(DescriptorProtos.FileDescriptorSet.parseFrom(protoBinary, extensionRegistry));
+        createSoundRequest = index.get("POST", "/sounds").getInputType();
+        soundCustomTypeRequest = index.get("GET", "/soundCustomTypes").getInputType();
+    }
+
+    static DynamicMessage parse(StreamingJsonParser parser, Descriptors.Descriptor descriptor, String json) throws Exception {
+        DynamicMessage.Builder builder = DynamicMessage.newBuilder(descriptor);
+        parser.merge(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)), builder);
+        return builder.build();
+    }
+
+    static DynamicMessage parseWithJsonFormat(Descriptors.Descriptor descriptor, String json) throws Exception {
+        DynamicMessage.Builder builder = DynamicMessage.newBuilder(descriptor);
+        JsonFormat.parser().ignoringUnknownFields().merge(json, builder);
+        return builder.build();
+    }
+
+    @ParameterizedTest(name = "Same as JsonFormat - {0}")
+    @ValueSource(strings = {
+            "{}",
+            "{\"sound\": {\"soundId\": \"123\", \"waves\": [{\"waveId\": \"10\"}, {\"wave_id\": 11, \"value\": \"v\"}], \"type\": \"SONG\"}}",
+            "{\"sound\": {\"sound_id\": \"123\", \"type\": 2, \"unknown\": {\"nested\": [1, 2]}}}",
+            "{\"sound\": {\"waves\": null, \"type\": null}}",
+            "{\"sound\": null}"
+    })
+    void testSound(String json) throws Exception {
+        assertEquals(parseWithJsonFormat(createSoundRequest, json), parse(parser, createSoundRequest, json));
+    }
+
+    @Test
+    @DisplayName("Well-known types are parsed from their JSON values")
+    void testWellKnownTypes() throws Exception {
+        String json = "{\"soundType\": \"VOICE\", \"fieldMask\": \"soundId,waves.waveId\", "
+                + "\"createTime\": \"2023-01-02T03:04:05.123Z\", \"playTime\": \"1.5s\", "
+                + "\"releaseDate\": {\"year\": 2023, \"month\": 1, \"day\": 2}}";
+
+        assertEquals(parseWithJsonFormat(soundCustomTypeRequest, json), parse(parser, soundCustomTypeRequest, json));
+    }
+
+    @Test
+    @DisplayName("Only the body field is merged")
+    void testMergeField() throws Exception {
+        String json = "{\"ignored\": [{}], \"sound\": {\"soundId\": \"123\"}}";
+        DynamicMessage.Builder builder = DynamicMessage.newBuilder(createSoundRequest);
+        parser.mergeField(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)), createSoundRequest.findFieldByName("sound"), builder);
+
+        assertEquals(parseWithJsonFormat(createSoundRequest, "{\"sound\": {\"soundId\": \"123\"}}"), builder.build());
+    }
+
+    @ParameterizedTest(name = "Invalid JSON - {0}")
+    @ValueSource(strings = {
+            "[]",
+            "{\"sound\": {\"waves\": {}}}",
+            "{\"sound\": {\"soundId\": \"1\", \"sound_id\": \"2\"}}",
+            "{\"sound\": {\"soundId\": \"1\"}} {}",
+            "{\"sound\": {\"unknown\": 1}}",
+            "{\"sound\": {\"type\": \"UNKNOWN\"}}"
+    })
+    void testInvalid(String json) {
+        StreamingJsonParser strictParser = new StreamingJsonParser(JsonFormat.parser(), false);
+
+        assertThrows(InvalidProtocolBufferException.class, () -> parse(strictParser, createSoundRequest, json));
+    }
+}
@@ -0,0 +1,111 @@
+package com.github.protobufx.spring.gateway.grpc.filter;
+
+import com.google.api.AnnotationsProto;
+import com.google.common.io.ByteStreams;
+import com.google.protobuf.DescriptorProtos;
+import com.google.protobuf.Descriptors;
+import com.google.protobuf.DynamicMessage;
+import com.google.protobuf.ExtensionRegistry;
+import com.google.protobuf.util.JsonFormat;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.core.io.Resource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StreamingJsonPrinterTest {
+
+    static Descriptors.Descriptor listSoundResponse;
+    static Descriptors.Descriptor soundCustomType;
+
+    @BeforeAll
+    static void beforeAll() throws Exception {
+        byte[] protoBinary;
+        Resource resource = new DefaultResourceLoader().getResource("classpath:descriptors.pb");
+        try (InputStream inputStream = resource.getInputStream()) {
+            protoBinary = ByteStreams.toByteArray(inputStream);
+        }
+        ExtensionRegistry extensionRegistry = ExtensionRegistry.newInstance();
+        extensionRegistry.add(AnnotationsProto.http);
+        FileDescriptorIndex index = new FileDescriptorIndex(DescriptorProtos.FileDescriptorSet.parseFrom(protoBinary, extensionRegistry));
+        listSoundResponse = index.get("GET", "/sounds").getMethodDescriptor().getOutputType();
+        soundCustomType = index.get("GET", "/soundCustomTypes").getMethodDescriptor().getOutputType();
+    }
+
+    static DynamicMessage message(Descriptors.Descriptor descriptor, String json) throws Exception {
+        DynamicMessage.Builder builder = DynamicMessage.newBuilder(descriptor);
+        JsonFormat.parser().merge(json, builder);
+        return builder.build();
+    }
+
+    static String print(StreamingJsonPrinter printer, DynamicMessage message) throws Exception {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        printer.print(message, outputStream);
+        return outputStream.toString(StandardCharsets.UTF_8);
+    }
+
+    @ParameterizedTest(name = "Same as JsonFormat - {0}")
+    @ValueSource(strings = {
+            "{}",
+            "{\"sounds\": [{}]}",
+            "{\"sounds\": [{\"soundId\": \"123\", \"waves\": [{\"waveId\": \"10\"}, {\"waveId\": \"11\", \"value\": \"<a href='x'>&amp;</a>\\n\\u0001\\u2028é\"}], \"type\": \"SONG\"}, {\"type\": \"VOICE\"}]}"
+    })
+    void testListSoundResponse(String json) throws Exception {
+        DynamicMessage message = message(listSoundResponse, json);
+
+        assertEquals(JsonFormat.printer().includingDefaultValueFields().print(message),
+                print(new StreamingJsonPrinter(JsonFormat.printer(), true, true), message));
+        assertEquals(JsonFormat.printer().print(message),
+                print(new StreamingJsonPrinter(JsonFormat.printer(), false, true), message));
+        assertEquals(JsonFormat.printer().includingDefaultValueFields().omittingInsignificantWhitespace().print(message),
+                print(new StreamingJsonPrinter(JsonFormat.printer(), true, false), message));
+    }
+
+    @Test
+    @DisplayName("Well-known types are printed as their JSON values")
+    void testWellKnownTypes() throws Exception {
+        DynamicMessage message = message(soundCustomType, "{\"soundType\": \"NOISE\", \"fieldMask\": \"soundId,waves.waveId\", "
+                + "\"createTime\": \"2023-01-02T03:04:05.123Z\", \"playTime\": \"1.500s\", "
+                + "\"releaseDate\": {\"year\": 2023, \"month\": 1, \"day\": 2}}");
+
+        assertEquals(JsonFormat.printer().includingDefaultValueFields().print(message),
+                print(new StreamingJsonPrinter(JsonFormat.printer(), true, true), message));
+    }
+
+    @Test
+    @DisplayName("Large documents are written in chunks")
+    void testChunks() throws Exception {
+        StringBuilder json = new StringBuilder("{\"sounds\": [");
+        for (int i = 0; i < 100; i++) {
+            json.append(i == 0 ? "" : ",").append("{\"soundId\": \"").append(i).append("\"}");
+        }
+        DynamicMessage message = message(listSoundResponse, json.append("]}").toString());
+        List<ByteBuf> chunks = new ArrayList<>();
+
+        ChunkedByteBufOutputStream outputStream = new ChunkedByteBufOutputStream(UnpooledByteBufAllocator.DEFAULT, 512, chunks::add);
+        new StreamingJsonPrinter(JsonFormat.printer(), true, true).print(message, outputStream);
+        outputStream.close();
+
+        StringBuilder printed = new StringBuilder();
+        for (ByteBuf chunk : chunks) {
+            assertTrue(chunk.readableBytes() <= 512);
+            printed.append(chunk.toString(StandardCharsets.UTF_8));
+            chunk.release();
+        }
+        assertTrue(chunks.size() > 1);
+        assertEquals(JsonFormat.printer().includingDefaultValueFields().print(message), printed.toString());
+    }
+}
@@ -0,0 +1,79 @@
+package com.github.protobufx.spring.gateway.grpc.filter;
+
+import io.grpc.Status;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class TranscodingMetricsTest {
+
+    @Test
+    @DisplayName("Stages are recorded by authority, method and status")
+    void testRecord() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        TranscodingMetrics metrics = new TranscodingMetrics(registry);
+        TranscodingMetrics.MethodMeters meters = metrics.method("localhost:6565", "example.echo.v1.EchoService/GetSound");
+
+        meters.recordDecode(1000, 10);
+        meters.recordCall(2000, Status.Code.OK);
+        meters.recordCall(3000, Status.Code.NOT_FOUND);
+        meters.recordCall(4000, Status.Code.OK);
+        meters.recordEncode(5000, 20);
+        metrics.recordLookup("localhost:6565", 6000, true);
+        metrics.recordDescriptorCache("localhost:6565", false);
+
+        assertSame(meters, metrics.method("localhost:6565", "example.echo.v1.EchoService/GetSound"));
+        assertEquals(2, registry.get("grpc.gateway.backend.call")
+                .tags("authority", "localhost:6565", "method", "example.echo.v1.EchoService/GetSound", "status", "OK")
+                .timer().count());
+        assertEquals(1, registry.get("grpc.gateway.backend.call").tag("status", "NOT_FOUND").timer().count());
+        assertEquals(10, registry.get("grpc.gateway.request.size").summary().totalAmount());
+        assertEquals(20, registry.get("grpc.gateway.response.size").summary().totalAmount());
+        assertEquals(1, registry.get("grpc.gateway.route.lookup").tag("found", "true").timer().count());
+        assertEquals(1, registry.get("grpc.gateway.descriptor.cache").tag("result", "miss").counter().count());
+    }
+
+    @Test
+    @DisplayName("Authorities and methods beyond the bounds share the meters of the other tag value")
+    void testCardinality() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        TranscodingMetrics metrics = new TranscodingMetrics(registry, 1, 2, false);
+
+        metrics.method("a:1", "s/M1").recordCall(1, Status.Code.OK);
+        metrics.method("a:1", "s/M2").recordCall(1, Status.Code.OK);
+        metrics.method("a:1", "s/M3").recordCall(1, Status.Code.OK);
+        metrics.method("b:1", "s/M1").recordCall(1, Status.Code.OK);
+
+        assertEquals(1, registry.get("grpc.gateway.backend.call").tags("authority", "a:1", "method", "s/M1").timer().count());
+        assertEquals(1, registry.get("grpc.gateway.backend.call").tags("authority", "a:1", "method", "other").timer().count());
+        assertEquals(1, registry.get("grpc.gateway.backend.call").tags("authority", "other", "method", "other").timer().count());
+        assertEquals(4, registry.find("grpc.gateway.backend.call").timers().size());
+        // the methods beyond the bound are kept under their name, and do not count towards it
+        assertSame(metrics.method("a:1", "s/M3"), metrics.method("a:1", "s/M4"));
+        assertSame(metrics.authorities.get("a:1").otherMethods, metrics.authorities.get("a:1").methods.get("s/M3"));
+        assertEquals(2, metrics.methodCount.get());
+    }
+
+    @Test
+    @DisplayName("A response written as it is received only records its size")
+    void testResponseSize() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        TranscodingMetrics metrics = new TranscodingMetrics(registry);
+
+        metrics.method("a:1", "s/M1").recordResponseSize(20);
+
+        assertEquals(20, registry.get("grpc.gateway.response.size").summary().totalAmount());
+        assertEquals(0, registry.get("grpc.gateway.response.encode").timer().count());
+    }
+
+    @Test
+    @DisplayName("Nothing is recorded without a registry")
+    void testNoop() {
+        assertSame(TranscodingMetrics.MethodMeters.NOOP, TranscodingMetrics.NOOP.method("a:1", "s/M1"));
+        TranscodingMetrics.MethodMeters.NOOP.recordCall(1, Status.Code.OK);
+        TranscodingMetrics.NOOP.recordLookup("a:1", 1, true);
+    }
+}
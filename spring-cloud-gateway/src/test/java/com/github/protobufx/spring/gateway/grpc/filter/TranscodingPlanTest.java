@@ -0,0 +1,96 @@
+package com.github.protobufx.spring.gateway.grpc.filter;
+
+import com.google.protobuf.Descriptors;
+import com.google.protobuf.DynamicMessage;
+import com.google.protobuf.util.JsonFormat;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TranscodingPlanTest {
+
+    static Descriptors.Descriptor soundCustomType;
+    static TranscodingPlans plans = new TranscodingPlans();
+
+    @BeforeAll
+    static void beforeAll() throws Exception {
+        StreamingJsonPrinterTest.beforeAll();
+        soundCustomType = StreamingJsonPrinterTest.soundCustomType;
+    }
+
+    @ParameterizedTest(name = "Resolved - {0}")
+    @ValueSource(strings = {"releaseDate.year", "release_date.year"})
+    void testBinding(String name) throws Exception {
+        TranscodingPlan.FieldBinding binding = plans.of(soundCustomType).binding(name);
+
+        assertEquals(2, binding.fieldPath.length);
+        assertEquals("release_date", binding.fieldPath[0].getName());
+        assertEquals("year", binding.leaf().getName());
+        assertEquals(2023, binding.converter.convert("2023", JsonFormat.parser()));
+        assertSame(binding, plans.of(soundCustomType).binding(name));
+        assertNotSame(binding, new TranscodingPlans().of(soundCustomType).binding(name));
+    }
+
+    @Test
+    @DisplayName("Fields are found by their JSON name and by their original proto name")
+    void testField() {
+        TranscodingPlan plan = plans.of(soundCustomType);
+
+        assertEquals("release_date", plan.field("releaseDate").getName());
+        assertSame(plan.field("releaseDate"), plan.field("release_date"));
+        assertNull(plan.field("unknown"));
+    }
+
+    @Test
+    @DisplayName("Fields are printed in the order of their numbers")
+    void testFieldsByNumber() {
+        Descriptors.FieldDescriptor[] fields = plans.of(soundCustomType).fieldsByNumber();
+
+        assertEquals(soundCustomType.getFields().size(), fields.length);
+        for (int i = 1; i < fields.length; i++) {
+            assertTrue(fields[i - 1].getNumber() < fields[i].getNumber());
+        }
+    }
+
+    @ParameterizedTest(name = "Not resolved - {0}")
+    @ValueSource(strings = {"unknown", "releaseDate.unknown", "soundType.name", "fieldMask.paths.value"})
+    void testUnresolved(String name) {
+        assertNull(plans.of(soundCustomType).binding(name));
+    }
+
+    @Test
+    @DisplayName("Well-known types and enums are converted from their JSON values")
+    void testConverters() throws Exception {
+        TranscodingPlan plan = plans.of(soundCustomType);
+        DynamicMessage expected = StreamingJsonPrinterTest.message(soundCustomType,
+                "{\"createTime\": \"2020-10-05T12:34:56Z\", \"playTime\": \"186s\", \"fieldMask\": \"f1,f2\"}");
+
+        for (String name : new String[]{"createTime", "playTime", "fieldMask"}) {
+            TranscodingPlan.FieldBinding binding = plan.binding(name);
+            Descriptors.FieldDescriptor field = binding.leaf();
+            String value = name.equals("createTime") ? "2020-10-05T12:34:56Z" : name.equals("playTime") ? "186s" : "f1,f2";
+            assertEquals(expected.getField(field), binding.converter.convert(value, JsonFormat.parser()));
+        }
+        assertEquals("VOICE", ((Descriptors.EnumValueDescriptor) plan.binding("soundType").converter.convert("VOICE", JsonFormat.parser())).getName());
+        assertThrows(IllegalArgumentException.class, () -> plan.binding("soundType").converter.convert("INVALID", JsonFormat.parser()));
+    }
+
+    @Test
+    @DisplayName("Enums are also converted from the number of their values")
+    void testEnumNumber() throws Exception {
+        TranscodingPlan.ValueConverter converter = plans.of(soundCustomType).binding("soundType").converter;
+
+        assertEquals("VOICE", ((Descriptors.EnumValueDescriptor) converter.convert("2", JsonFormat.parser())).getName());
+        assertThrows(IllegalArgumentException.class, () -> converter.convert("99", JsonFormat.parser()));
+        assertThrows(IllegalArgumentException.class, () -> converter.convert("2.0", JsonFormat.parser()));
+    }
+}
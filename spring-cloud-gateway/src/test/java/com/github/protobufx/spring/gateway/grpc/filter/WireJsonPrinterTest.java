@@ -0,0 +1,67 @@
+package com.github.protobufx.spring.gateway.grpc.filter;
+
+import com.google.protobuf.Descriptors;
+import com.google.protobuf.DynamicMessage;
+import com.google.protobuf.util.JsonFormat;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class WireJsonPrinterTest {
+
+    static Descriptors.Descriptor listSoundResponse;
+    static Descriptors.Descriptor soundCustomType;
+
+    @BeforeAll
+    static void beforeAll() throws Exception {
+        StreamingJsonPrinterTest.beforeAll();
+        listSoundResponse = StreamingJsonPrinterTest.listSoundResponse;
+        soundCustomType = StreamingJsonPrinterTest.soundCustomType;
+    }
+
+    static String print(boolean includingDefaultValueFields, boolean prettyPrinting, Descriptors.Descriptor type, byte[] message) throws Exception {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        new WireJsonPrinter(new StreamingJsonPrinter(JsonFormat.printer(), includingDefaultValueFields, prettyPrinting))
+                .print(type, message, outputStream);
+        return outputStream.toString(StandardCharsets.UTF_8);
+    }
+
+    @ParameterizedTest(name = "Same as JsonFormat - {0}")
+    @ValueSource(strings = {
+            "{}",
+            "{\"sounds\": [{}]}",
+            "{\"sounds\": [{\"soundId\": \"123\", \"waves\": [{\"waveId\": \"10\"}, {\"waveId\": \"11\", \"value\": \"<é>\"}], \"type\": \"SONG\"}, {\"type\": \"VOICE\"}]}"
+    })
+    void testListSoundResponse(String json) throws Exception {
+        DynamicMessage message = StreamingJsonPrinterTest.message(listSoundResponse, json);
+
+        assertEquals(JsonFormat.printer().includingDefaultValueFields().print(message),
+                print(true, true, listSoundResponse, message.toByteArray()));
+        assertEquals(JsonFormat.printer().print(message),
+                print(false, true, listSoundResponse, message.toByteArray()));
+        assertEquals(JsonFormat.printer().includingDefaultValueFields().omittingInsignificantWhitespace().print(message),
+                print(true, false, listSoundResponse, message.toByteArray()));
+    }
+
+    @Test
+    @DisplayName("Well-known types and split messages are printed like parsed messages")
+    void testWellKnownTypesAndMergedFields() throws Exception {
+        DynamicMessage first = StreamingJsonPrinterTest.message(soundCustomType, "{\"soundType\": \"NOISE\", \"fieldMask\": \"soundId\", "
+                + "\"createTime\": \"2023-01-02T03:04:05.123Z\", \"releaseDate\": {\"year\": 2023}}");
+        DynamicMessage second = StreamingJsonPrinterTest.message(soundCustomType, "{\"soundType\": \"VOICE\", \"fieldMask\": \"waves.waveId\", "
+                + "\"playTime\": \"1.500s\", \"releaseDate\": {\"month\": 1, \"day\": 2}}");
+        // concatenated messages are merged: the last scalar wins, and messages and repeated fields are merged
+        byte[] wire = first.toByteString().concat(second.toByteString()).toByteArray();
+        DynamicMessage merged = DynamicMessage.parseFrom(soundCustomType, wire);
+
+        assertEquals(JsonFormat.printer().includingDefaultValueFields().print(merged),
+                print(true, true, soundCustomType, wire));
+    }
+}
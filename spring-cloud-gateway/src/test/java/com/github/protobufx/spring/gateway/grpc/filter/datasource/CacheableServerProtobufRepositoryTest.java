@@ -0,0 +1,325 @@
+package com.github.protobufx.spring.gateway.grpc.filter.datasource;
+
+import com.github.protobufx.reflection.extension.v1alpha.ReflectServerDescriptorRequest;
+import com.github.protobufx.reflection.extension.v1alpha.ReflectServerDescriptorResponse;
+import com.github.protobufx.reflection.extension.v1alpha.ServerReflectionExtensionGrpc;
+import com.github.protobufx.spring.gateway.grpc.filter.HttpRuleMethodDescriptor;
+import com.google.common.io.ByteStreams;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.DescriptorProtos;
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.Status;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.StreamObserver;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.io.InputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CacheableServerProtobufRepositoryTest {
+
+    ReflectionService reflectionService;
+    Server server;
+    ManagedChannel channel;
+    CacheableServerProtobufRepository repository;
+
+    @BeforeEach
+    void beforeEach() throws Exception {
+        byte[] protoBinary;
+        try (InputStream inputStream = getClass().getResourceAsStream("/descriptors.pb")) {
+            protoBinary = ByteStreams.toByteArray(inputStream);
+        }
+        reflectionService = new ReflectionService(ByteString.copyFrom(protoBinary));
+        String serverName = InProcessServerBuilder.generateName();
+        server = InProcessServerBuilder.forName(serverName)
+                .addService(reflectionService)
+                .build()
+                .start();
+        channel = InProcessChannelBuilder.forName(serverName).build();
+        repository = new CacheableServerProtobufRepository(target -> channel, 60);
+    }
+
+    @AfterEach
+    void afterEach() throws Exception {
+        channel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+        server.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    @DisplayName("Concurrent lookups share a single load")
+    void testCoalescedLoad() {
+        StepVerifier.create(Mono.zip(
+                        repository.findMethodDescriptorAsync("backend", "GET", "/sounds/123"),
+                        repository.findMethodDescriptorAsync("backend", "GET", "/unknown")))
+                .then(() -> reflectionService.release.complete(null))
+                .assertNext(found -> {
+                    assertEquals("/sounds/{sound_id}", found.getT1().orElseThrow().getHttpPath());
+                    assertFalse(found.getT2().isPresent());
+                })
+                .verifyComplete();
+        StepVerifier.create(repository.findMethodDescriptorAsync("backend", "GET", "/sounds/123/waves/456"))
+                .assertNext(found -> assertEquals("/sounds/{sound_id}/waves/{wave_id}", found.orElseThrow().getHttpPath()))
+                .verifyComplete();
+
+        assertEquals(1, reflectionService.calls.get());
+    }
+
+    @Test
+    @DisplayName("A failed load is tried again by the next lookup")
+    void testFailedLoad() {
+        reflectionService.failures.set(1);
+        reflectionService.release.complete(null);
+
+        StepVerifier.create(repository.findMethodDescriptorAsync("backend", "GET", "/sounds/123"))
+                .expectError()
+                .verify();
+        assertTrue(repository.findMethodDescriptor("backend", "GET", "/sounds/123").isPresent());
+
+        assertEquals(2, reflectionService.calls.get());
+    }
+
+    @Test
+    @DisplayName("Lookups are served by the current index while it is refreshed, which is kept if the refresh fails")
+    void testRefresh() {
+        repository = new CacheableServerProtobufRepository(target -> channel, 0);
+        reflectionService.release.complete(null);
+        HttpRuleMethodDescriptor loaded = repository.findMethodDescriptor("backend", "GET", "/sounds/123").orElseThrow();
+        CacheableServerProtobufRepository.Snapshot snapshot = repository.cache.get("backend").snapshot;
+
+        // the refresh is due, but the lookup does not wait for it
+        reflectionService.failures.set(1);
+        assertSame(loaded, repository.findMethodDescriptor("backend", "GET", "/sounds/123").orElseThrow());
+        awaitRefresh(2);
+        assertSame(snapshot, repository.cache.get("backend").snapshot);
+
+        // the files are sent again, but the unchanged descriptors are reused
+        reflectionService.version = "v2";
+        assertSame(loaded, repository.findMethodDescriptor("backend", "GET", "/sounds/123").orElseThrow());
+        awaitRefresh(3);
+        assertNotSame(snapshot, repository.cache.get("backend").snapshot);
+        assertSame(loaded, repository.findMethodDescriptor("backend", "GET", "/sounds/123").orElseThrow());
+    }
+
+    @Test
+    @DisplayName("A refresh of the same version is not modified")
+    void testNotModified() {
+        repository = new CacheableServerProtobufRepository(target -> channel, 0);
+        reflectionService.release.complete(null);
+        repository.findMethodDescriptor("backend", "GET", "/sounds/123");
+        CacheableServerProtobufRepository.Snapshot snapshot = repository.cache.get("backend").snapshot;
+
+        repository.findMethodDescriptor("backend", "GET", "/sounds/123");
+        awaitRefresh(2);
+
+        assertSame(snapshot, repository.cache.get("backend").snapshot);
+        assertEquals("v1", reflectionService.knownVersion);
+    }
+
+    @Test
+    @DisplayName("A refresh only receives the changed files, and reuses the unchanged ones")
+    void testChangedFiles() {
+        repository = new CacheableServerProtobufRepository(target -> channel, 0);
+        reflectionService.fileHashes = reflectionService.hashes("v1");
+        reflectionService.release.complete(null);
+        repository.findMethodDescriptor("backend", "GET", "/sounds/123");
+        CacheableServerProtobufRepository.Snapshot snapshot = repository.cache.get("backend").snapshot;
+        assertEquals(reflectionService.files.keySet(), snapshot.files.keySet());
+
+        Map<String, String> fileHashes = new LinkedHashMap<>(snapshot.fileHashes);
+        fileHashes.put("echo.proto", "v2");
+        reflectionService.fileHashes = fileHashes;
+        reflectionService.version = "v2";
+        repository.findMethodDescriptor("backend", "GET", "/sounds/123");
+        awaitRefresh(2);
+
+        CacheableServerProtobufRepository.Snapshot refreshed = repository.cache.get("backend").snapshot;
+        assertEquals(snapshot.fileHashes, reflectionService.knownFileHashes);
+        assertEquals(1, reflectionService.sentFiles);
+        assertEquals(fileHashes, refreshed.fileHashes);
+        assertEquals("v2", refreshed.version);
+        snapshot.files.forEach((name, file) -> {
+            if (!name.equals("echo.proto")) {
+                assertSame(file, refreshed.files.get(name));
+            }
+        });
+        assertEquals("/sounds/{sound_id}", repository.findMethodDescriptor("backend", "GET", "/sounds/123").orElseThrow().getHttpPath());
+    }
+
+    @Test
+    @DisplayName("A refresh of the same version keeps the index, without receiving any file")
+    void testNotModifiedWithHashes() {
+        repository = new CacheableServerProtobufRepository(target -> channel, 0);
+        reflectionService.fileHashes = reflectionService.hashes("v1");
+        reflectionService.release.complete(null);
+        HttpRuleMethodDescriptor loaded = repository.findMethodDescriptor("backend", "GET", "/sounds/123").orElseThrow();
+        CacheableServerProtobufRepository.Snapshot snapshot = repository.cache.get("backend").snapshot;
+
+        repository.findMethodDescriptor("backend", "GET", "/sounds/123");
+        awaitRefresh(2);
+
+        assertSame(snapshot, repository.cache.get("backend").snapshot);
+        assertSame(snapshot.index, repository.cache.get("backend").snapshot.index);
+        assertEquals(0, reflectionService.sentFiles);
+        assertSame(loaded, repository.findMethodDescriptor("backend", "GET", "/sounds/123").orElseThrow());
+    }
+
+    @Test
+    @DisplayName("A file with a hash that is neither sent nor known is an error")
+    void testMissingFile() {
+        reflectionService.release.complete(null);
+        repository.findMethodDescriptor("backend", "GET", "/sounds/123");
+        CacheableServerProtobufRepository.Snapshot snapshot = repository.cache.get("backend").snapshot;
+        Map<String, String> fileHashes = new LinkedHashMap<>(reflectionService.hashes("v1"));
+        fileHashes.put("unknown.proto", "v1");
+
+        IllegalStateException e = assertThrows(IllegalStateException.class, () -> CacheableServerProtobufRepository.createSnapshot(
+                ReflectServerDescriptorResponse.newBuilder()
+                        .setVersion("v2")
+                        .putAllFileHashes(fileHashes)
+                        .build(), snapshot));
+        assertEquals("Missing file from the server: unknown.proto", e.getMessage());
+    }
+
+    @Test
+    @DisplayName("Saved descriptors are indexed on startup and revalidated in the background")
+    void testSnapshotStore(@TempDir Path directory) throws Exception {
+        DescriptorSnapshotStore snapshotStore = new DescriptorSnapshotStore(directory);
+        repository = new CacheableServerProtobufRepository(target -> channel, 60, snapshotStore);
+        reflectionService.release.complete(null);
+        repository.findMethodDescriptor("backend", "GET", "/sounds/123");
+        assertTrue(snapshotStore.load("backend").isPresent());
+
+        repository = new CacheableServerProtobufRepository(target -> channel, 60, snapshotStore);
+        assertNotNull(repository.cache.get("backend").snapshot);
+        assertEquals("/sounds/{sound_id}", repository.findMethodDescriptor("backend", "GET", "/sounds/123").orElseThrow().getHttpPath());
+        awaitRefresh(2);
+        assertEquals("v1", reflectionService.knownVersion);
+    }
+
+    @Test
+    @DisplayName("A corrupted snapshot is ignored")
+    void testCorruptedSnapshot(@TempDir Path directory) throws Exception {
+        DescriptorSnapshotStore snapshotStore = new DescriptorSnapshotStore(directory);
+        snapshotStore.save("backend", ReflectServerDescriptorResponse.newBuilder().setVersion("v1").build());
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path path : stream) {
+                Files.write(path, new byte[]{1, 2, 3});
+            }
+        }
+
+        assertFalse(snapshotStore.load("backend").isPresent());
+        assertTrue(snapshotStore.loadAll().isEmpty());
+        assertTrue(new CacheableServerProtobufRepository(target -> channel, 60, snapshotStore).cache.isEmpty());
+    }
+
+    void awaitRefresh(int calls) {
+        await().atMost(5, TimeUnit.SECONDS).until(() -> reflectionService.calls.get() == calls
+                && !repository.cache.get("backend").refreshing.get());
+    }
+
+    static class ReflectionService extends ServerReflectionExtensionGrpc.ServerReflectionExtensionImplBase {
+        final ByteString fileDescriptorSet;
+        final Map<String, DescriptorProtos.FileDescriptorProto> files = new LinkedHashMap<>();
+        final AtomicInteger calls = new AtomicInteger();
+        final AtomicInteger failures = new AtomicInteger();
+        final CompletableFuture<Void> release = new CompletableFuture<>();
+        volatile String version = "v1";
+        volatile String knownVersion;
+        volatile Map<String, String> knownFileHashes;
+        // the hashes of the files like a current server, or null like an older server that always sends all its files
+        volatile Map<String, String> fileHashes;
+        volatile int sentFiles;
+
+        ReflectionService(ByteString fileDescriptorSet) throws Exception {
+            this.fileDescriptorSet = fileDescriptorSet;
+            for (DescriptorProtos.FileDescriptorProto file : DescriptorProtos.FileDescriptorSet.parseFrom(fileDescriptorSet).getFileList()) {
+                files.put(file.getName(), file);
+            }
+        }
+
+        /**
+         * @return the files whose hash is not known to the client
+         */
+        ByteString changedFiles(Map<String, String> currentFileHashes, Map<String, String> knownFileHashes) {
+            DescriptorProtos.FileDescriptorSet.Builder changed = DescriptorProtos.FileDescriptorSet.newBuilder();
+            currentFileHashes.forEach((name, hash) -> {
+                if (!hash.equals(knownFileHashes.get(name))) {
+                    changed.addFile(files.get(name));
+                }
+            });
+            sentFiles = changed.getFileCount();
+            return changed.build().toByteString();
+        }
+
+        Map<String, String> hashes(String hash) {
+            Map<String, String> hashes = new LinkedHashMap<>();
+            files.keySet().forEach(name -> hashes.put(name, hash));
+            return hashes;
+        }
+
+        @Override
+        public void reflectServerDescriptor(ReflectServerDescriptorRequest request, StreamObserver<ReflectServerDescriptorResponse> responseObserver) {
+            calls.incrementAndGet();
+            knownVersion = request.getKnownVersion();
+            knownFileHashes = request.getKnownFileHashesMap();
+            if (failures.getAndDecrement() > 0) {
+                responseObserver.onError(Status.UNAVAILABLE.asRuntimeException());
+                return;
+            }
+            String currentVersion = version;
+            if (currentVersion.equals(request.getKnownVersion())) {
+                sentFiles = 0;
+                responseObserver.onNext(ReflectServerDescriptorResponse.newBuilder()
+                        .setVersion(currentVersion)
+                        .setNotModified(true)
+                        .build());
+                responseObserver.onCompleted();
+                return;
+            }
+            Map<String, String> currentFileHashes = fileHashes;
+            sentFiles = files.size();
+            ByteString sent = currentFileHashes == null
+                    ? fileDescriptorSet
+                    : changedFiles(currentFileHashes, request.getKnownFileHashesMap());
+            // sent in two parts, like a server splitting a large descriptor set
+            int half = sent.size() / 2;
+            release.thenRun(() -> {
+                responseObserver.onNext(ReflectServerDescriptorResponse.newBuilder()
+                        .setFileDescriptorSet(sent.substring(0, half))
+                        .build());
+                ReflectServerDescriptorResponse.Builder last = ReflectServerDescriptorResponse.newBuilder()
+                        .setFileDescriptorSet(sent.substring(half))
+                        .setVersion(currentVersion);
+                if (currentFileHashes != null) {
+                    last.putAllFileHashes(currentFileHashes);
+                }
+                responseObserver.onNext(last.build());
+                responseObserver.onCompleted();
+            });
+        }
+    }
+}
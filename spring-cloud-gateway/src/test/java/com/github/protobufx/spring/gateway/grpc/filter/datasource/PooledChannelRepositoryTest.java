@@ -0,0 +1,151 @@
+package com.github.protobufx.spring.gateway.grpc.filter.datasource;
+
+import com.github.protobufx.reflection.extension.v1alpha.ReflectServerDescriptorRequest;
+import com.github.protobufx.reflection.extension.v1alpha.ReflectServerDescriptorResponse;
+import com.github.protobufx.reflection.extension.v1alpha.ServerReflectionExtensionGrpc;
+import com.google.protobuf.ByteString;
+import io.grpc.Channel;
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.netty.NettyServerBuilder;
+import io.grpc.stub.StreamObserver;
+import io.netty.util.concurrent.EventExecutor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PooledChannelRepositoryTest {
+
+    CacheableServerProtobufRepositoryTest.ReflectionService reflectionService;
+    Server server;
+    String target;
+    PooledChannelRepository repository;
+
+    @BeforeEach
+    void beforeEach() throws Exception {
+        reflectionService = new CacheableServerProtobufRepositoryTest.ReflectionService(ByteString.EMPTY);
+        server = NettyServerBuilder.forPort(0)
+                .addService(reflectionService)
+                .build()
+                .start();
+        target = "localhost:" + server.getPort();
+        PooledChannelRepository.Config config = new PooledChannelRepository.Config();
+        config.setChannelsPerTarget(2);
+        repository = new PooledChannelRepository(config);
+    }
+
+    @AfterEach
+    void afterEach() throws Exception {
+        repository.close();
+        server.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    static void call(Channel channel) {
+        Iterator<ReflectServerDescriptorResponse> responses = ServerReflectionExtensionGrpc.newBlockingStub(channel)
+                .reflectServerDescriptor(ReflectServerDescriptorRequest.newBuilder().setKnownVersion("v1").build());
+        assertTrue(responses.next().getNotModified());
+        assertFalse(responses.hasNext());
+    }
+
+    @Test
+    @DisplayName("Calls to a target are spread over its channels")
+    void testFindChannel() {
+        Channel channel = repository.findChannel(target);
+        assertSame(channel, repository.findChannel(target));
+        assertEquals(target, channel.authority());
+
+        for (int i = 0; i < 4; i++) {
+            call(channel);
+        }
+
+        assertEquals(4, reflectionService.calls.get());
+        for (ManagedChannel managedChannel : repository.channels.get(target).managedChannels) {
+            assertFalse(managedChannel.isShutdown());
+        }
+    }
+
+    @Test
+    @DisplayName("Idle channels are shut down, and replaced by the next call")
+    void testEvictIdleChannels() {
+        PooledChannelRepository.PooledChannel channel = (PooledChannelRepository.PooledChannel) repository.findChannel(target);
+        call(channel);
+        channel.lastUsedAt -= repository.config.getIdleTimeout().plusSeconds(1).toNanos();
+
+        repository.evictIdleChannels();
+
+        assertTrue(repository.channels.isEmpty());
+        for (ManagedChannel managedChannel : channel.managedChannels) {
+            assertTrue(managedChannel.isShutdown());
+        }
+        call(channel);
+        assertNotSame(channel, repository.channels.get(target));
+    }
+
+    @Test
+    @DisplayName("Closing the repository shuts down its channels")
+    void testClose() {
+        PooledChannelRepository.PooledChannel channel = (PooledChannelRepository.PooledChannel) repository.findChannel(target);
+        call(channel);
+
+        repository.close();
+
+        for (ManagedChannel managedChannel : channel.managedChannels) {
+            assertTrue(managedChannel.isTerminated());
+        }
+    }
+
+    @Test
+    @DisplayName("With a direct executor, the callbacks run on the event loops of the gateway")
+    void testDirectExecutor() throws Exception {
+        repository.close();
+        PooledChannelRepository.Config config = new PooledChannelRepository.Config();
+        config.setDirectExecutor(true);
+        repository = new PooledChannelRepository(config);
+        CompletableFuture<Boolean> inEventLoop = new CompletableFuture<>();
+
+        ServerReflectionExtensionGrpc.newStub(repository.findChannel(target)).reflectServerDescriptor(
+                ReflectServerDescriptorRequest.newBuilder().setKnownVersion("v1").build(),
+                new StreamObserver<>() {
+                    @Override
+                    public void onNext(ReflectServerDescriptorResponse value) {
+                    }
+
+                    @Override
+                    public void onError(Throwable t) {
+                        inEventLoop.completeExceptionally(t);
+                    }
+
+                    @Override
+                    public void onCompleted() {
+                        boolean found = false;
+                        for (EventExecutor eventLoop : repository.eventLoopGroup) {
+                            found |= eventLoop.inEventLoop();
+                        }
+                        inEventLoop.complete(found);
+                    }
+                });
+
+        assertTrue(inEventLoop.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    @DisplayName("A target needs at least one channel")
+    void testInvalidConfig() {
+        PooledChannelRepository.Config config = new PooledChannelRepository.Config();
+        config.setChannelsPerTarget(0);
+
+        assertThrows(IllegalArgumentException.class, () -> new PooledChannelRepository(config));
+    }
+}
@@ -0,0 +1,66 @@
+package com.github.protobufx.spring.gateway.grpc.filter.datasource;
+
+import com.google.protobuf.DescriptorProtos;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.FileSystemResource;
+import reactor.test.StepVerifier;
+
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class StaticDescriptorSetProtobufRepositoryTest {
+
+    @Test
+    @DisplayName("Descriptor sets are looked up by route authority")
+    void testFindMethodDescriptor() {
+        StaticDescriptorSetProtobufRepository repository = new StaticDescriptorSetProtobufRepository(
+                Map.of("localhost:6565", new ClassPathResource("descriptors.pb")));
+
+        assertEquals("/sounds/{sound_id}", repository.findMethodDescriptor("localhost:6565", "GET", "/sounds/123").orElseThrow().getHttpPath());
+        assertFalse(repository.findMethodDescriptor("localhost:6565", "GET", "/unknown").isPresent());
+        assertFalse(repository.findMethodDescriptor("localhost:6566", "GET", "/sounds/123").isPresent());
+        StepVerifier.create(repository.findMethodDescriptorAsync("localhost:6565", "GET", "/sounds/123/waves/456"))
+                .assertNext(found -> assertEquals("/sounds/{sound_id}/waves/{wave_id}", found.orElseThrow().getHttpPath()))
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("A missing descriptor set fails on startup")
+    void testMissingDescriptorSet() {
+        assertThrows(UncheckedIOException.class, () -> new StaticDescriptorSetProtobufRepository(
+                Map.of("localhost:6565", new ClassPathResource("missing.pb"))));
+    }
+
+    @Test
+    @DisplayName("A replaced descriptor set is indexed again")
+    void testWatch(@TempDir Path directory) throws Exception {
+        Path file = directory.resolve("descriptors.pb");
+        try (InputStream inputStream = getClass().getResourceAsStream("/descriptors.pb")) {
+            Files.copy(inputStream, file);
+        }
+        try (StaticDescriptorSetProtobufRepository repository = new StaticDescriptorSetProtobufRepository(
+                Map.of("localhost:6565", new FileSystemResource(file)))) {
+            repository.watch();
+            assertEquals("/sounds/{sound_id}", repository.findMethodDescriptor("localhost:6565", "GET", "/sounds/123").orElseThrow().getHttpPath());
+
+            Path temporary = directory.resolve("descriptors.pb.tmp");
+            Files.write(temporary, DescriptorProtos.FileDescriptorSet.getDefaultInstance().toByteArray());
+            Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+            await().atMost(30, TimeUnit.SECONDS).until(() -> repository.findMethodDescriptor("localhost:6565", "GET", "/sounds/123").isEmpty());
+        }
+    }
+}